@@ -0,0 +1,65 @@
+package com.capable.physiciandss.benchmarks;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.util.BundleUtil;
+import com.capable.physiciandss.utils.Constants;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a searchset Bundle page into resources the way HapiRequestService.getObservations does: parsing the
+ * response and extracting the Observations with BundleUtil.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BundleExtractionBenchmark {
+
+    @Param({"20", "200"})
+    public int pageSize;
+
+    private FhirContext ctx;
+    private IParser parser;
+    private String bundleJson;
+    private Bundle bundle;
+
+    @Setup
+    public void setUp() {
+        ctx = FhirContext.forR4();
+        parser = ctx.newJsonParser();
+        Random random = new Random(42);
+        bundle = new Bundle();
+        bundle.setType(Bundle.BundleType.SEARCHSET);
+        bundle.setTotal(pageSize);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < pageSize; i++) {
+            Observation observation = Fixtures.observation("Patient/1", Constants.DIARRHEA_SYMPTOMS_CODE,
+                    now - random.nextInt(Integer.MAX_VALUE), "Observation/" + i);
+            bundle.addEntry()
+                    .setFullUrl("http://localhost:8080/fhir/Observation/" + i)
+                    .setResource(observation)
+                    .getSearch().setMode(Bundle.SearchEntryMode.MATCH);
+        }
+        bundleJson = parser.encodeResourceToString(bundle);
+    }
+
+    @Benchmark
+    public List<Observation> parseAndExtract() {
+        Bundle parsed = parser.parseResource(Bundle.class, bundleJson);
+        return BundleUtil.toListOfResourcesOfType(ctx, parsed, Observation.class);
+    }
+
+    @Benchmark
+    public List<Observation> extractOnly() {
+        return BundleUtil.toListOfResourcesOfType(ctx, bundle, Observation.class);
+    }
+}
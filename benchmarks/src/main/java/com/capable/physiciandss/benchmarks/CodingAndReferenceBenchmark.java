@@ -0,0 +1,44 @@
+package com.capable.physiciandss.benchmarks;
+
+import com.capable.physiciandss.utils.OntologyCodingHandlingDeontics;
+import com.capable.physiciandss.utils.ReferenceHandling;
+import com.capable.physiciandss.utils.Utils;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.Reference;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small helpers called for every data item and task: Deontics ontology coding parsing, FHIR reference
+ * handling and the date helpers of {@link Utils}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodingAndReferenceBenchmark {
+
+    public String ontologyCoding = "SCT:386661006 Diarrhea";
+    public String reference = "Patient/8f14e45f-ceea-467f-a0e6-0a0b1c2d3e4f";
+    private final DateTimeType date = new DateTimeType(new Date());
+
+    @Benchmark
+    public Coding ontologyCodingParsing() {
+        return new OntologyCodingHandlingDeontics(ontologyCoding).getCoding();
+    }
+
+    @Benchmark
+    public Reference referenceHandling() {
+        return new ReferenceHandling(reference).getReference();
+    }
+
+    @Benchmark
+    public boolean isBetweenDates() {
+        return Utils.isBetweenDates(date, Utils.getDateBeforeCurrentDate(1), Utils.getDateBeforeCurrentDate(2));
+    }
+}
@@ -0,0 +1,44 @@
+package com.capable.physiciandss.benchmarks;
+
+import com.capable.physiciandss.model.deontics.get.ItemData;
+import com.capable.physiciandss.model.deontics.get.PlanTask;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson deserialization of Deontics GetData and GetPlanTasks responses with nested metaprops, using an
+ * ObjectMapper configured like the one of WebClient.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeonticsPayloadBenchmark {
+
+    private ObjectMapper objectMapper;
+    private String itemDataJson;
+    private String planTasksJson;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        itemDataJson = Fixtures.read("item-data.json");
+        planTasksJson = Fixtures.read("plan-tasks.json");
+    }
+
+    @Benchmark
+    public ItemData[] itemData() throws JsonProcessingException {
+        return objectMapper.readValue(itemDataJson, ItemData[].class);
+    }
+
+    @Benchmark
+    public PlanTask[] planTasks() throws JsonProcessingException {
+        return objectMapper.readValue(planTasksJson, PlanTask[].class);
+    }
+}
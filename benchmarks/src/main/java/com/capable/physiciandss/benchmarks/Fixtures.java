@@ -0,0 +1,113 @@
+package com.capable.physiciandss.benchmarks;
+
+import com.capable.physiciandss.rules.AbstractedDataRuleProperties;
+import com.capable.physiciandss.rules.AbstractedDataRules;
+import com.capable.physiciandss.utils.Constants;
+import org.hl7.fhir.r4.model.*;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recorded Deontics payloads and generated FHIR resources shared by the benchmarks.
+ */
+public class Fixtures {
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+
+    public static String read(String name) {
+        try (InputStream stream = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (stream == null) {
+                throw new IllegalStateException("Missing fixture " + name);
+            }
+            Scanner scanner = new Scanner(stream, StandardCharsets.UTF_8.name()).useDelimiter("\\A");
+            return scanner.hasNext() ? scanner.next() : "";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Abstracted data rules as configured in the application.properties of the application jar.
+     */
+    public static AbstractedDataRules configuredRules() {
+        try {
+            Properties properties = PropertiesLoaderUtils.loadAllProperties("application.properties");
+            AbstractedDataRuleProperties ruleProperties = new Binder(new MapConfigurationPropertySource(properties))
+                    .bind("phdss.rules", AbstractedDataRuleProperties.class)
+                    .orElseGet(AbstractedDataRuleProperties::new);
+            return new AbstractedDataRules(ruleProperties);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Observation observation(String patientId, String code, long effectiveMillis, String id) {
+        Observation observation = new Observation();
+        observation.setId(id);
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+        observation.setSubject(new Reference(patientId));
+        observation.getCode().addCoding(new Coding(Constants.SNOMED_CODING_HAPI, code, null));
+        observation.setEffective(new DateTimeType(new Date(effectiveMillis)));
+        observation.setValue(new Quantity(1));
+        return observation;
+    }
+
+    public static MedicationRequest activeMedicationRequest(String patientId, String code, long startMillis, String id) {
+        MedicationRequest medicationRequest = new MedicationRequest();
+        medicationRequest.setId(id);
+        medicationRequest.setStatus(MedicationRequest.MedicationRequestStatus.ACTIVE);
+        medicationRequest.setIntent(MedicationRequest.MedicationRequestIntent.ORDER);
+        medicationRequest.setSubject(new Reference(patientId));
+        medicationRequest.setAuthoredOn(new Date(startMillis));
+        medicationRequest.setMedication(new CodeableConcept().addCoding(new Coding(Constants.SNOMED_CODING_HAPI, code, null)));
+        medicationRequest.addDosageInstruction().getTiming().getRepeat().setBounds(new Period()
+                .setStart(new Date(startMillis))
+                .setEnd(new Date(startMillis + 90 * DAY_MS)));
+        return medicationRequest;
+    }
+
+    /**
+     * Fills the gateway with the resources of {@link #patientHistory}.
+     */
+    public static void seedPatient(InMemoryFhirGateway gateway, String patientId, int historyDays, Random random) {
+        for (Resource resource : patientHistory(patientId, historyDays, random)) {
+            if (resource instanceof Observation) {
+                gateway.addObservation(patientId, (Observation) resource);
+            } else {
+                gateway.addMedicationRequest(patientId, (MedicationRequest) resource);
+            }
+        }
+    }
+
+    /**
+     * A patient history of historyDays days of diarrhea symptom Observations (some of them strong) and an active
+     * immunotherapy MedicationRequest, with ids derived from the patient id.
+     */
+    public static List<Resource> patientHistory(String patientId, int historyDays, Random random) {
+        long now = System.currentTimeMillis();
+        String idPart = patientId.substring(patientId.indexOf('/') + 1);
+        List<Resource> resources = new ArrayList<>(historyDays + 1);
+        for (int day = 0; day < historyDays; day++) {
+            long effective = now - day * DAY_MS - random.nextInt((int) TimeUnit.HOURS.toMillis(12));
+            String code = random.nextInt(4) == 0 ? Constants.STRONG_DIARRHEA_SYMPTOMS_CODE : Constants.DIARRHEA_SYMPTOMS_CODE;
+            resources.add(observation(patientId, code, effective, "Observation/" + idPart + "-" + day));
+        }
+        resources.add(activeMedicationRequest(patientId,
+                random.nextBoolean() ? Constants.SUNITIB_CODE : Constants.NIVOLUMAB_CODE,
+                now - 10 * DAY_MS, "MedicationRequest/" + idPart));
+        return resources;
+    }
+}
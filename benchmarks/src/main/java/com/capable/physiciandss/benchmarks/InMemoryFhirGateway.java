@@ -0,0 +1,156 @@
+package com.capable.physiciandss.benchmarks;
+
+import com.capable.physiciandss.hapi.FhirViews;
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import com.capable.physiciandss.services.FhirGateway;
+import com.capable.physiciandss.utils.TemporalSelection;
+import org.hl7.fhir.r4.model.*;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * {@link FhirGateway} over resources held in memory, so flow code can be measured without a HAPI FHIR server.
+ * Searches filter the stored resources the way the HAPI searches do; writes only allocate ids.
+ */
+public class InMemoryFhirGateway implements FhirGateway {
+
+    private final Map<String, List<Observation>> observationsBySubject = new ConcurrentHashMap<>();
+    private final Map<String, List<MedicationRequest>> medicationRequestsBySubject = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    public void addObservation(String subjectId, Observation observation) {
+        observationsBySubject.computeIfAbsent(subjectId, k -> Collections.synchronizedList(new ArrayList<>())).add(observation);
+    }
+
+    public void addMedicationRequest(String subjectId, MedicationRequest medicationRequest) {
+        medicationRequestsBySubject.computeIfAbsent(subjectId, k -> Collections.synchronizedList(new ArrayList<>()))
+                .add(medicationRequest);
+    }
+
+    @Override
+    public Mono<Observation> getObservation(String id) {
+        return Mono.justOrEmpty(observationsBySubject.values().stream()
+                .flatMap(List::stream)
+                .filter(observation -> id.equals(observation.getIdElement().toUnqualifiedVersionless().getValue()))
+                .findFirst());
+    }
+
+    @Override
+    public Mono<MedicationRequest> getMedicationRequest(String id) {
+        return Mono.justOrEmpty(medicationRequestsBySubject.values().stream()
+                .flatMap(List::stream)
+                .filter(medicationRequest -> id.equals(medicationRequest.getIdElement().toUnqualifiedVersionless().getValue()))
+                .findFirst());
+    }
+
+    @Override
+    public Mono<Communication> getCommunication(String id) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Observation> getLatestObservation(String subjectId, String system, String ontologyCoding, Date notBefore) {
+        return observations(subjectId, Collections.singletonList(new Coding(system, ontologyCoding, null)))
+                .flatMap(observations -> Mono.justOrEmpty(TemporalSelection.newest(
+                        TemporalSelection.within(observations, TemporalSelection::effectiveMillis,
+                                notBefore == null ? Long.MIN_VALUE + 1 : notBefore.getTime(), System.currentTimeMillis() + 1),
+                        TemporalSelection::effectiveMillis)));
+    }
+
+    @Override
+    public Mono<List<ObservationView>> getObservationViews(String subjectId, Collection<Coding> codings,
+                                                           Date notBefore) {
+        return observations(subjectId, codings).map(observations -> observations.stream()
+                .map(FhirViews::toObservationView)
+                .filter(observation -> notBefore == null
+                        || (observation.getEffective() != null && !observation.getEffective().before(notBefore)))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Mono<List<MedicationRequestView>> getMedicationRequestViews(String subjectId, Collection<Coding> codings,
+                                                                       MedicationRequest.MedicationRequestStatus status) {
+        return medicationRequests(subjectId, codings, status).map(medicationRequests -> medicationRequests.stream()
+                .map(FhirViews::toMedicationRequestView)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Mono<List<Task>> getTaskListWithFocus(String patientId, Task.TaskStatus status, String focusType) {
+        return Mono.just(Collections.emptyList());
+    }
+
+    @Override
+    public Mono<String> createObservation(String system, String ontologyCoding, Observation.ObservationStatus status) {
+        return Mono.fromSupplier(() -> "Observation/" + ids.incrementAndGet());
+    }
+
+    @Override
+    public Mono<String> createMedicationRequest(MedicationRequest medicationRequest,
+                                                MedicationRequest.MedicationRequestStatus status,
+                                                MedicationRequest.MedicationRequestIntent medicationRequestIntent,
+                                                String patientId) {
+        return Mono.fromSupplier(() -> "MedicationRequest/" + ids.incrementAndGet());
+    }
+
+    @Override
+    public Mono<String> createCommunication(Communication.CommunicationStatus status, String referenceId) {
+        return Mono.fromSupplier(() -> "Communication/" + ids.incrementAndGet());
+    }
+
+    @Override
+    public Mono<Boolean> updateCommunication(Communication communication, Communication.CommunicationStatus status) {
+        return Mono.just(true);
+    }
+
+    @Override
+    public Mono<List<EntryOutcome>> updateCommunications(List<Communication> communications,
+                                                         Communication.CommunicationStatus status) {
+        return Mono.fromSupplier(() -> communications.stream()
+                .map(communication -> new EntryOutcome(communication.getIdElement().toUnqualifiedVersionless().getValue(),
+                        "200 OK", true, null))
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public Mono<Void> createTask(Reference patient, Reference resource) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> updateTask(Task task, Task.TaskStatus status) {
+        return Mono.empty();
+    }
+
+    private Mono<List<Observation>> observations(String subjectId, Collection<Coding> codings) {
+        return Mono.fromSupplier(() -> observationsBySubject.getOrDefault(subjectId, Collections.emptyList()).stream()
+                .filter(observation -> matches(observation.getCode(), codings))
+                .collect(Collectors.toList()));
+    }
+
+    private Mono<List<MedicationRequest>> medicationRequests(String subjectId, Collection<Coding> codings,
+                                                             MedicationRequest.MedicationRequestStatus status) {
+        return Mono.fromSupplier(() -> medicationRequestsBySubject.getOrDefault(subjectId, Collections.emptyList()).stream()
+                .filter(medicationRequest -> medicationRequest.getStatus() == status
+                        && matches(medicationRequest.getMedicationCodeableConcept(), codings))
+                .collect(Collectors.toList()));
+    }
+
+    private static boolean matches(CodeableConcept concept, Collection<Coding> codings) {
+        for (Coding resourceCoding : concept.getCoding()) {
+            for (Coding coding : codings) {
+                if (Objects.equals(resourceCoding.getSystem(), coding.getSystem())
+                        && Objects.equals(resourceCoding.getCode(), coding.getCode())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
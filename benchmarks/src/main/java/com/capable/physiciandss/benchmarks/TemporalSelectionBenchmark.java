@@ -0,0 +1,84 @@
+package com.capable.physiciandss.benchmarks;
+
+import com.capable.physiciandss.utils.TemporalSelection;
+import com.capable.physiciandss.utils.Utils;
+import org.hl7.fhir.r4.model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.capable.physiciandss.utils.Constants.HAPI_DATETIMETYPE_FORMAT_MR;
+
+/**
+ * Newest-resource selection over long histories: the previous approach (copy, sort with a comparator which
+ * parses date strings, take one element) against {@link TemporalSelection}'s single pass over epoch keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemporalSelectionBenchmark {
+
+    @Param({"10000"})
+    public int historySize;
+
+    private List<Observation> observations;
+    private List<MedicationRequest> medicationRequests;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        observations = new ArrayList<>(historySize);
+        medicationRequests = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            Observation observation = new Observation();
+            observation.setEffective(new DateTimeType(new Date(now - (long) random.nextInt(3650) * 86_400_000L)));
+            observations.add(observation);
+
+            LocalDate start = LocalDate.now().minusDays(random.nextInt(3650));
+            MedicationRequest medicationRequest = new MedicationRequest();
+            medicationRequest.addDosageInstruction().getTiming().getRepeat().setBounds(new Period()
+                    .setStartElement(new DateTimeType(start.toString()))
+                    .setEndElement(new DateTimeType(start.plusDays(random.nextInt(60)).toString())));
+            medicationRequests.add(medicationRequest);
+        }
+    }
+
+    @Benchmark
+    public Observation sortedCopyObservation() {
+        List<Observation> copy = new ArrayList<>(observations);
+        copy.sort(Comparator.comparing(o -> new DateTimeType(o.getEffectiveDateTimeType().asStringValue()).getValue()));
+        return copy.get(copy.size() - 1);
+    }
+
+    @Benchmark
+    public Optional<Observation> temporalSelectionObservation() {
+        return TemporalSelection.newest(observations, TemporalSelection::effectiveMillis);
+    }
+
+    @Benchmark
+    public MedicationRequest sortedCopyMedicationRequest() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(HAPI_DATETIMETYPE_FORMAT_MR);
+        List<MedicationRequest> copy = new ArrayList<>(medicationRequests);
+        copy.sort(Comparator.comparing(mR -> LocalDate.parse(mR.getDosageInstruction()
+                .get(0).getTiming().getRepeat().getBoundsPeriod()
+                .getEndElement().asStringValue(), formatter)));
+        return copy.get(copy.size() - 1);
+    }
+
+    @Benchmark
+    public Optional<MedicationRequest> temporalSelectionMedicationRequest() {
+        return TemporalSelection.newest(medicationRequests, TemporalSelection::dosageEndMillis);
+    }
+
+    @Benchmark
+    public Optional<MedicationRequest> utilsNewestMedicationRequest() {
+        return Utils.getNewestMedicationRequestFromList(medicationRequests);
+    }
+}
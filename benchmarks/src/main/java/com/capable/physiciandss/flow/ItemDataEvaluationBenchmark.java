@@ -0,0 +1,62 @@
+package com.capable.physiciandss.flow;
+
+import com.capable.physiciandss.benchmarks.Fixtures;
+import com.capable.physiciandss.benchmarks.InMemoryFhirGateway;
+import com.capable.physiciandss.model.deontics.get.ItemData;
+import com.capable.physiciandss.rules.AbstractedDataRules;
+import com.capable.physiciandss.rules.TemporalSymptomState;
+import com.capable.physiciandss.tracing.Tracer;
+import com.capable.physiciandss.tracing.ZipkinSpanExporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answering the data items of an enquiry (ProcessFlow.handleItemData for every item, with the snapshot, rules
+ * and day buckets it needs) against patients held in memory. Lives in the flow package to reach the
+ * package-private entry point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemDataEvaluationBenchmark {
+
+    @Param({"30", "365"})
+    public int historyDays;
+
+    private static final int PATIENTS = 200;
+    private ProcessFlow processFlow;
+    private ItemData[] itemDataList;
+    private int nextPatient;
+
+    @Setup
+    public void setUp() throws IOException {
+        InMemoryFhirGateway gateway = new InMemoryFhirGateway();
+        Random random = new Random(42);
+        for (int i = 0; i < PATIENTS; i++) {
+            Fixtures.seedPatient(gateway, "Patient/" + i, historyDays, random);
+        }
+        AbstractedDataRules rules = Fixtures.configuredRules();
+        TemporalSymptomState temporalSymptomState = new TemporalSymptomState(gateway, rules, PATIENTS, TimeUnit.DAYS.toMillis(1));
+        processFlow = new ProcessFlow(gateway, null, null, null, null, rules, temporalSymptomState,
+                new FlowMetrics(new SimpleMeterRegistry()), new Tracer(new ZipkinSpanExporter("", 1), 0),
+                null, 0);
+        itemDataList = Jackson2ObjectMapperBuilder.json().build()
+                .readValue(Fixtures.read("item-data.json"), ItemData[].class);
+    }
+
+    @Benchmark
+    public HashMap<String, String> evaluateEnquiry() {
+        String patientId = "Patient/" + nextPatient;
+        nextPatient = (nextPatient + 1) % PATIENTS;
+        return processFlow.evaluateItemData(patientId, itemDataList).block();
+    }
+}
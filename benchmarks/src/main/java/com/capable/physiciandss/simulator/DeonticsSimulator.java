@@ -0,0 +1,315 @@
+package com.capable.physiciandss.simulator;
+
+import com.capable.physiciandss.model.deontics.get.*;
+import com.capable.physiciandss.model.deontics.post.EnactBody;
+import com.capable.physiciandss.model.deontics.post.EnactOutput;
+import com.capable.physiciandss.model.deontics.put.ConfirmTaskBody;
+import com.capable.physiciandss.model.deontics.put.ConfirmTaskOutput;
+import com.capable.physiciandss.model.deontics.put.DataValueBody;
+import com.capable.physiciandss.model.deontics.put.DataValueOutput;
+import com.capable.physiciandss.model.deontics.put.EnactmentDeleteOutput;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embeddable stand-in for the Deontics PRS and DRE endpoints used by DeonticsRequestService, so the flow can be
+ * load tested without the hosted service. Enactments follow a {@link GuidelineScript}: the tasks of a pathway
+ * are put in progress one after another, confirming the task in progress moves the enactment to the next one
+ * and an enactment without tasks in progress is finished. Responses are delayed and failed at random as set in
+ * {@link SimulatorOptions}.
+ * <p>
+ * Requests are matched by the part of the path starting at /prsapi or /dreapi, so any base path works; point
+ * phdss.deontics.base-url at {@link #getBaseUrl()}. Run standalone with
+ * {@code java -cp target/benchmarks.jar com.capable.physiciandss.simulator.DeonticsSimulator [script]},
+ * options are taken from {@link SimulatorOptions#fromSystemProperties()}.
+ */
+public class DeonticsSimulator {
+
+    private static final Logger log = LoggerFactory.getLogger(DeonticsSimulator.class);
+    private static final String SESSION_HEADER = "x-dresessionid";
+    private static final String PRS_API = "/prsapi/";
+    private static final String DRE_API = "/dreapi/";
+
+    private final GuidelineScript script;
+    private final SimulatorOptions options;
+    private final ObjectMapper objectMapper;
+    private final Map<String, SimulatedEnactment> enactments = new ConcurrentHashMap<>();
+    /**
+     * Enactment id of every open DRE session, keyed by session id.
+     */
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requestCounts = new ConcurrentSkipListMap<>();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final AtomicLong nextId = new AtomicLong();
+    private DisposableServer server;
+
+    public DeonticsSimulator(GuidelineScript script, SimulatorOptions options) {
+        this.script = script;
+        this.options = options;
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    public DeonticsSimulator(SimulatorOptions options) {
+        this(GuidelineScript.fromResource(GuidelineScript.DEFAULT_SCRIPT, Jackson2ObjectMapperBuilder.json().build()),
+                options);
+    }
+
+    public static void main(String[] args) {
+        GuidelineScript script = GuidelineScript.fromResource(
+                args.length > 0 ? args[0] : GuidelineScript.DEFAULT_SCRIPT, Jackson2ObjectMapperBuilder.json().build());
+        DeonticsSimulator simulator = new DeonticsSimulator(script, SimulatorOptions.fromSystemProperties()).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+        simulator.server.onDispose().block();
+    }
+
+    public synchronized DeonticsSimulator start() {
+        if (server == null) {
+            server = HttpServer.create()
+                    .host(options.getHost())
+                    .port(options.getPort())
+                    .handle(this::handle)
+                    .bindNow();
+            log.info("DeonticsSimulator is listening on " + getBaseUrl() + " with pathways " + script.getPathwayNames());
+        }
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.host() + ":" + server.port();
+    }
+
+    /**
+     * Number of requests received per endpoint, including the ones failed on purpose.
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        requestCounts.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+        return counts;
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.sum();
+    }
+
+    public int getEnactmentCount() {
+        return enactments.size();
+    }
+
+    /**
+     * Drops all DRE sessions as a restart of DRE would; requests with them are answered with 404 afterwards.
+     */
+    public void dropSessions() {
+        sessions.clear();
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+        String endpoint = endpointOf(uri.path());
+        requestCounts.computeIfAbsent(endpoint, ignored -> new LongAdder()).increment();
+        String sessionId = request.requestHeaders().get(SESSION_HEADER);
+        return request.receive().aggregate().asString().defaultIfEmpty("")
+                .delayUntil(body -> delay())
+                .map(body -> {
+                    if (options.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < options.getErrorRate()) {
+                        injectedErrors.increment();
+                        throw new ResponseStatusException(HttpStatus.valueOf(options.getErrorStatus()), "Injected failure");
+                    }
+                    return route(endpoint, uri.parameters(), sessionId, body);
+                })
+                .map(this::toJson)
+                .map(json -> new AbstractMap.SimpleImmutableEntry<>(HttpResponseStatus.OK, json))
+                .onErrorResume(ResponseStatusException.class, e -> Mono.just(new AbstractMap.SimpleImmutableEntry<>(
+                        HttpResponseStatus.valueOf(e.getStatus().value()), errorJson(e.getReason()))))
+                .flatMap(reply -> response
+                        .status(reply.getKey())
+                        .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .sendString(Mono.just(reply.getValue()))
+                        .then());
+    }
+
+    private Mono<Long> delay() {
+        long delayMs = options.getLatency().toMillis();
+        long jitterMs = options.getLatencyJitter().toMillis();
+        if (jitterMs > 0) {
+            delayMs += ThreadLocalRandom.current().nextLong(jitterMs + 1);
+        }
+        return delayMs > 0 ? Mono.delay(Duration.ofMillis(delayMs)) : Mono.just(0L);
+    }
+
+    private Object route(String endpoint, Map<String, List<String>> parameters, String sessionId, String body) {
+        try {
+            switch (endpoint) {
+                case PRS_API + "Pathways":
+                    return getPathways(parameter(parameters, "name"), parameter(parameters, "temp"));
+                case PRS_API + "Enactments":
+                    return enactments.values().stream().map(SimulatedEnactment::toEnactment).toArray(Enactment[]::new);
+                case PRS_API + "EnactmentsExtended":
+                    return getEnactments(parameter(parameters, "id"), parameter(parameters, "groupid"));
+                case PRS_API + "EnactmentDelete":
+                    return deleteEnactment(requiredParameter(parameters, "id"));
+                case DRE_API + "Enact":
+                    return enact(objectMapper.readValue(body, EnactBody.class));
+                case DRE_API + "Connect":
+                    return connect(requiredParameter(parameters, "enactmentid"));
+                case DRE_API + "PlanTasks":
+                    return parameters.containsKey("name")
+                            ? new PlanTask[0]
+                            : enactmentOf(sessionId).getTasks(parameter(parameters, "state")).toArray(new PlanTask[0]);
+                case DRE_API + "Task":
+                    return enactmentOf(sessionId)
+                            .getTask(Integer.parseInt(requiredParameter(parameters, "runtimeid")))
+                            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown task"));
+                case DRE_API + "Data":
+                    return enactmentOf(sessionId).getData(requiredParameter(parameters, "enquiryname"));
+                case DRE_API + "DataValue":
+                    return putDataValues(enactmentOf(sessionId), objectMapper.readTree(body));
+                case DRE_API + "QueryConfirmTask":
+                    return queryConfirmTask(enactmentOf(sessionId), requiredParameter(parameters, "name"));
+                case DRE_API + "ConfirmTask":
+                    return new ConfirmTaskOutput(enactmentOf(sessionId)
+                            .confirmTask(objectMapper.readValue(body, ConfirmTaskBody.class).getName()));
+                default:
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown endpoint " + endpoint);
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed body: " + e.getMessage());
+        }
+    }
+
+    private Pathway[] getPathways(String name, String temp) {
+        if ("true".equals(temp)) {
+            return new Pathway[0];
+        }
+        return script.getPathwayNames().stream()
+                .filter(pathway -> name == null || name.equals(pathway))
+                .map(pathway -> new Pathway(pathway, pathway, pathway + ".pf", "1", "1", null, null, null,
+                        false, false, 0L, pathway))
+                .toArray(Pathway[]::new);
+    }
+
+    private Enactment[] getEnactments(String enactmentId, String patientId) {
+        return enactments.values().stream()
+                .filter(enactment -> enactmentId == null || enactmentId.equals(enactment.getId()))
+                .filter(enactment -> patientId == null || patientId.equals(enactment.getPatientId()))
+                .map(SimulatedEnactment::toEnactment)
+                .toArray(Enactment[]::new);
+    }
+
+    private EnactmentDeleteOutput deleteEnactment(String enactmentId) {
+        boolean deleted = enactments.remove(enactmentId) != null;
+        sessions.values().removeIf(enactmentId::equals);
+        return new EnactmentDeleteOutput(enactmentId, String.valueOf(deleted));
+    }
+
+    private EnactOutput enact(EnactBody enactBody) {
+        String pathway = enactBody.getPathwayuri() == null ? "" : enactBody.getPathwayuri().replaceFirst("\\.pf$", "");
+        if (!script.hasPathway(pathway)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown pathway " + enactBody.getPathwayuri());
+        }
+        String enactmentId = "enactment-" + nextId.incrementAndGet();
+        enactments.put(enactmentId, new SimulatedEnactment(enactmentId, enactBody.getGroupid(), pathway,
+                script.getSteps(pathway)));
+        return new EnactOutput(enactmentId, connect(enactmentId).getDresessionid());
+    }
+
+    private Connect connect(String enactmentId) {
+        if (!enactments.containsKey(enactmentId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown enactment " + enactmentId);
+        }
+        String sessionId = "session-" + nextId.incrementAndGet();
+        sessions.put(sessionId, enactmentId);
+        return new Connect(sessionId);
+    }
+
+    private Object putDataValues(SimulatedEnactment enactment, JsonNode body) throws IOException {
+        if (!body.isArray()) {
+            return putDataValue(enactment, objectMapper.treeToValue(body, DataValueBody.class));
+        }
+        List<DataValueOutput> outputs = new ArrayList<>();
+        for (DataValueBody dataValue : objectMapper.treeToValue(body, DataValueBody[].class)) {
+            outputs.add(putDataValue(enactment, dataValue));
+        }
+        return outputs;
+    }
+
+    private DataValueOutput putDataValue(SimulatedEnactment enactment, DataValueBody dataValue) {
+        enactment.putDataValue(dataValue.getName(), dataValue.getValue());
+        return new DataValueOutput(dataValue.getName(), true, dataValue.getValue(), null, null);
+    }
+
+    private QueryConfirmTask queryConfirmTask(SimulatedEnactment enactment, String taskName) {
+        return enactment.getConfirmPrecondition(taskName)
+                .map(reason -> new QueryConfirmTask(new Precondition(reason, null),
+                        new Cause[]{new Cause(reason, null, null)}))
+                .orElseGet(QueryConfirmTask::new);
+    }
+
+    private SimulatedEnactment enactmentOf(String sessionId) {
+        String enactmentId = sessionId == null ? null : sessions.get(sessionId);
+        SimulatedEnactment enactment = enactmentId == null ? null : enactments.get(enactmentId);
+        if (enactment == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown DRE session " + sessionId);
+        }
+        return enactment;
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    private String errorJson(String message) {
+        return objectMapper.createObjectNode().put("error", message).toString();
+    }
+
+    private static String endpointOf(String path) {
+        int apiStart = Math.max(path.indexOf(PRS_API), path.indexOf(DRE_API));
+        return apiStart < 0 ? path : path.substring(apiStart);
+    }
+
+    private static String parameter(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static String requiredParameter(Map<String, List<String>> parameters, String name) {
+        String value = parameter(parameters, name);
+        if (value == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing parameter " + name);
+        }
+        return value;
+    }
+}
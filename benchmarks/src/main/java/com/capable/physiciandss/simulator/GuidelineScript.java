@@ -0,0 +1,73 @@
+package com.capable.physiciandss.simulator;
+
+import com.capable.physiciandss.model.deontics.get.ItemData;
+import com.capable.physiciandss.model.deontics.get.PlanTask;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Pathways known to the {@link DeonticsSimulator}, keyed by pathway name. Each pathway is an ordered list of
+ * steps, one task per step; enquiry steps carry the data items returned for the task.
+ * <p>
+ * Scripts are JSON objects of the form {"pathway_name": [{"task": PlanTask, "data": [ItemData]}]}, see
+ * /simulator/guidelines.json for the default one.
+ */
+public class GuidelineScript {
+
+    public static final String DEFAULT_SCRIPT = "/simulator/guidelines.json";
+    private final Map<String, List<Step>> pathways;
+
+    public GuidelineScript(Map<String, List<Step>> pathways) {
+        this.pathways = new LinkedHashMap<>(pathways);
+    }
+
+    public static GuidelineScript fromResource(String name, ObjectMapper objectMapper) {
+        try (InputStream in = GuidelineScript.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing guideline script " + name);
+            }
+            return new GuidelineScript(objectMapper.readValue(in, new TypeReference<Map<String, List<Step>>>() {
+            }));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Set<String> getPathwayNames() {
+        return Collections.unmodifiableSet(pathways.keySet());
+    }
+
+    public boolean hasPathway(String name) {
+        return pathways.containsKey(name);
+    }
+
+    public List<Step> getSteps(String pathway) {
+        return pathways.getOrDefault(pathway, Collections.emptyList());
+    }
+
+    public static class Step {
+        private PlanTask task;
+        private ItemData[] data = new ItemData[0];
+
+        public PlanTask getTask() {
+            return task;
+        }
+
+        public void setTask(PlanTask task) {
+            this.task = task;
+        }
+
+        public ItemData[] getData() {
+            return data;
+        }
+
+        public void setData(ItemData[] data) {
+            this.data = data;
+        }
+    }
+}
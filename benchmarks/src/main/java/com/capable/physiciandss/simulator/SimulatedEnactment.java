@@ -0,0 +1,142 @@
+package com.capable.physiciandss.simulator;
+
+import com.capable.physiciandss.model.deontics.get.Enactment;
+import com.capable.physiciandss.model.deontics.get.ItemData;
+import com.capable.physiciandss.model.deontics.get.PlanTask;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * State of one enactment in the {@link DeonticsSimulator}: the step of its pathway currently in progress and
+ * the data values sent for it. Steps before the current one are completed, steps after it dormant.
+ */
+class SimulatedEnactment {
+
+    static final String IN_PROGRESS = "in_progress";
+    static final String COMPLETED = "completed";
+    static final String DORMANT = "dormant";
+
+    private final String id;
+    private final String patientId;
+    private final String pathway;
+    private final List<GuidelineScript.Step> steps;
+    private final String ctime = Instant.now().toString();
+    private final Map<String, String> dataValues = new HashMap<>();
+    private int currentStep;
+
+    SimulatedEnactment(String id, String patientId, String pathway, List<GuidelineScript.Step> steps) {
+        this.id = id;
+        this.patientId = patientId;
+        this.pathway = pathway;
+        this.steps = steps;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getPatientId() {
+        return patientId;
+    }
+
+    synchronized Enactment toEnactment() {
+        Enactment enactment = new Enactment();
+        enactment.setId(id);
+        enactment.setPatientid(patientId);
+        enactment.setGroupid(patientId);
+        enactment.setPathwayid(pathway);
+        enactment.setReference(pathway + ".pf");
+        enactment.setCtime(ctime);
+        enactment.setStatus(isFinished() ? COMPLETED : IN_PROGRESS);
+        enactment.setLatestCycle(currentStep);
+        return enactment;
+    }
+
+    synchronized List<PlanTask> getTasks(String state) {
+        List<PlanTask> tasks = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            String taskState = stateOf(i);
+            if (state == null || state.equals(taskState)) {
+                tasks.add(withState(steps.get(i).getTask(), taskState));
+            }
+        }
+        return tasks;
+    }
+
+    synchronized Optional<PlanTask> getTask(int runtimeId) {
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).getTask().getRuntimeid() == runtimeId) {
+                return Optional.of(withState(steps.get(i).getTask(), stateOf(i)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    ItemData[] getData(String enquiryName) {
+        return steps.stream()
+                .filter(step -> step.getTask().getName().equals(enquiryName))
+                .findFirst()
+                .map(GuidelineScript.Step::getData)
+                .orElse(new ItemData[0]);
+    }
+
+    synchronized void putDataValue(String name, String value) {
+        dataValues.put(name, value);
+    }
+
+    /**
+     * Reason why the task cannot be confirmed now, empty when it can: the task has to be in progress and
+     * every requested data item of an enquiry needs a value or a default value.
+     */
+    synchronized Optional<String> getConfirmPrecondition(String taskName) {
+        if (isFinished() || !steps.get(currentStep).getTask().getName().equals(taskName)) {
+            return Optional.of("Task " + taskName + " is not in progress");
+        }
+        for (ItemData itemData : steps.get(currentStep).getData()) {
+            if ("true".equals(itemData.getRequested()) && !dataValues.containsKey(itemData.getName())
+                    && itemData.getDefaultvalue() == null) {
+                return Optional.of("Data item " + itemData.getName() + " has no value");
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Completes the task when it is the one in progress and returns the state of the task afterwards.
+     */
+    synchronized String confirmTask(String taskName) {
+        if (!getConfirmPrecondition(taskName).isPresent()) {
+            currentStep++;
+            return COMPLETED;
+        }
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).getTask().getName().equals(taskName)) {
+                return stateOf(i);
+            }
+        }
+        return DORMANT;
+    }
+
+    private boolean isFinished() {
+        return currentStep >= steps.size();
+    }
+
+    private String stateOf(int step) {
+        if (step < currentStep) {
+            return COMPLETED;
+        }
+        return step == currentStep ? IN_PROGRESS : DORMANT;
+    }
+
+    private static PlanTask withState(PlanTask task, String state) {
+        return new PlanTask(task.getName(), task.getRuntimeid(), task.getCaption(), task.getDescription(),
+                task.getMetaprops(), task.getType(), state, task.getContext(), task.isCanconfirm(), task.isOptional(),
+                task.isAutonomous(), task.getParentid(), task.getIn_progresstime(), task.getCompletedstime(),
+                task.getDiscardedtime(), task.getProcedure());
+    }
+}
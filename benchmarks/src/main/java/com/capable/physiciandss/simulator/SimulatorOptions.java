@@ -0,0 +1,92 @@
+package com.capable.physiciandss.simulator;
+
+import java.time.Duration;
+
+/**
+ * Address and fault injection of a {@link DeonticsSimulator}. Every response is delayed by latency plus a
+ * uniformly distributed part of latency-jitter, and a share error-rate of requests is answered with
+ * error-status instead.
+ */
+public class SimulatorOptions {
+
+    private String host = "localhost";
+    private int port;
+    private Duration latency = Duration.ZERO;
+    private Duration latencyJitter = Duration.ZERO;
+    private double errorRate;
+    private int errorStatus = 503;
+
+    /**
+     * Options from the system properties simulator.host, simulator.port, simulator.latency-ms,
+     * simulator.latency-jitter-ms, simulator.error-rate and simulator.error-status.
+     */
+    public static SimulatorOptions fromSystemProperties() {
+        return new SimulatorOptions()
+                .host(System.getProperty("simulator.host", "localhost"))
+                .port(Integer.getInteger("simulator.port", 8090))
+                .latency(Duration.ofMillis(Long.getLong("simulator.latency-ms", 0L)))
+                .latencyJitter(Duration.ofMillis(Long.getLong("simulator.latency-jitter-ms", 0L)))
+                .errorRate(Double.parseDouble(System.getProperty("simulator.error-rate", "0")))
+                .errorStatus(Integer.getInteger("simulator.error-status", 503));
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public SimulatorOptions host(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Port to listen on, 0 picks a free one.
+     */
+    public SimulatorOptions port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public Duration getLatency() {
+        return latency;
+    }
+
+    public SimulatorOptions latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public Duration getLatencyJitter() {
+        return latencyJitter;
+    }
+
+    public SimulatorOptions latencyJitter(Duration latencyJitter) {
+        this.latencyJitter = latencyJitter;
+        return this;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public SimulatorOptions errorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate has to be between 0 and 1, got " + errorRate);
+        }
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public int getErrorStatus() {
+        return errorStatus;
+    }
+
+    public SimulatorOptions errorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+        return this;
+    }
+}
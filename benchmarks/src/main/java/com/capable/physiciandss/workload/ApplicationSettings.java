@@ -0,0 +1,66 @@
+package com.capable.physiciandss.workload;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Settings of PhDSS as deployed, so a {@link WorkloadGenerator} run measures the configuration of the application:
+ * the application.properties of the application jar, each overridden by a system property of the same name,
+ * e.g. -Dphdss.scheduler.chunk-size=50.
+ */
+class ApplicationSettings {
+
+    private final Binder binder;
+
+    ApplicationSettings() {
+        try {
+            Properties properties = PropertiesLoaderUtils.loadAllProperties("application.properties");
+            System.getProperties().stringPropertyNames().stream()
+                    .filter(name -> name.startsWith("phdss."))
+                    .forEach(name -> properties.setProperty(name, System.getProperty(name)));
+            binder = new Binder(new MapConfigurationPropertySource(properties));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int getInt(String name) {
+        return get(name, Integer.class);
+    }
+
+    long getLong(String name) {
+        return get(name, Long.class);
+    }
+
+    double getDouble(String name) {
+        return get(name, Double.class);
+    }
+
+    String getString(String name) {
+        return get(name, String.class);
+    }
+
+    /**
+     * Binds the properties under the prefix like @ConfigurationProperties does; without any the defaults of
+     * the type apply.
+     */
+    <T> T bind(String prefix, Class<T> type) {
+        return binder.bind(prefix, type).orElseGet(() -> {
+            try {
+                return type.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create " + type.getName(), e);
+            }
+        });
+    }
+
+    private <T> T get(String name, Class<T> type) {
+        return binder.bind(name, type).orElseThrow(() -> new IllegalStateException(
+                "Missing " + name + " in application.properties"));
+    }
+}
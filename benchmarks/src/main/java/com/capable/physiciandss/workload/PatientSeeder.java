@@ -0,0 +1,80 @@
+package com.capable.physiciandss.workload;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import com.capable.physiciandss.benchmarks.Fixtures;
+import com.capable.physiciandss.hapi.FhirResources;
+import com.capable.physiciandss.utils.Constants;
+import org.hl7.fhir.r4.model.*;
+
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Writes synthetic patients and their new data to HAPI FHIR: the history of a patient in one transaction
+ * (stage "seed.patient") and each arrival of new data as an in-progress Communication pointing at the patient
+ * or at a new Observation (stage "seed.arrival").
+ */
+class PatientSeeder {
+
+    private final IGenericClient client;
+    private final StageRecorder recorder;
+
+    PatientSeeder(IGenericClient client, StageRecorder recorder) {
+        this.client = client;
+        this.recorder = recorder;
+    }
+
+    void seedPatient(String patientId, int historyDays, Random random) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Bundle transaction = new Bundle();
+            transaction.setType(Bundle.BundleType.TRANSACTION);
+            Patient patient = new Patient();
+            patient.setId(patientId);
+            patient.addName().setFamily("Synthetic").addGiven(patientId);
+            addUpdate(transaction, patient);
+            for (Resource resource : Fixtures.patientHistory(patientId, historyDays, random)) {
+                addUpdate(transaction, resource);
+            }
+            client.transaction().withBundle(transaction).execute();
+            failed = false;
+        } finally {
+            recorder.record("seed.patient", System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Sends an in-progress Communication about the patient: the patient itself for its first arrival, a new
+     * diarrhea symptom Observation afterwards.
+     */
+    void sendArrival(String patientId, boolean firstArrival, Random random) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            String referenceId = patientId;
+            if (!firstArrival) {
+                String code = random.nextInt(4) == 0
+                        ? Constants.STRONG_DIARRHEA_SYMPTOMS_CODE
+                        : Constants.DIARRHEA_SYMPTOMS_CODE;
+                Observation observation = Fixtures.observation(patientId, code, System.currentTimeMillis(), null);
+                referenceId = client.create().resource(observation).execute().getId().toUnqualifiedVersionless().getValue();
+            }
+            Communication communication = FhirResources.newCommunication(
+                    Communication.CommunicationStatus.INPROGRESS, referenceId);
+            communication.setSent(new Date());
+            client.create().resource(communication).execute();
+            failed = false;
+        } finally {
+            recorder.record("seed.arrival", System.nanoTime() - start, failed);
+        }
+    }
+
+    private static void addUpdate(Bundle transaction, Resource resource) {
+        transaction.addEntry()
+                .setResource(resource)
+                .getRequest()
+                .setMethod(Bundle.HTTPVerb.PUT)
+                .setUrl(resource.getIdElement().toUnqualifiedVersionless().getValue());
+    }
+}
@@ -0,0 +1,114 @@
+package com.capable.physiciandss.workload;
+
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies of the stages of a workload run, kept in full so exact percentiles can be reported. Stages are
+ * created on first use and reported in name order.
+ */
+public class StageRecorder {
+
+    private final Map<String, Stage> stages = new ConcurrentSkipListMap<>();
+
+    public void record(String stage, long nanos, boolean failed) {
+        stages.computeIfAbsent(stage, ignored -> new Stage()).add(nanos, failed);
+    }
+
+    public void record(String stage, long nanos) {
+        record(stage, nanos, false);
+    }
+
+    /**
+     * Times every subscription of the Mono, from subscribe until it completes, fails or is cancelled.
+     */
+    public <T> Mono<T> time(String stage, Mono<T> mono) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doFinally(signal -> record(stage, System.nanoTime() - start, signal == SignalType.ON_ERROR));
+        });
+    }
+
+    /**
+     * WebClient filter timing each exchange until the response status is known, as stage prefix + "." + the
+     * last path segment of the request.
+     */
+    public ExchangeFilterFunction exchangeFilter(String prefix) {
+        return (request, next) -> {
+            String path = request.url().getPath();
+            String stage = prefix + "." + path.substring(path.lastIndexOf('/') + 1);
+            long start = System.nanoTime();
+            return next.exchange(request)
+                    .doOnNext(response -> record(stage, System.nanoTime() - start, response.statusCode().isError()))
+                    .doOnError(exception -> record(stage, System.nanoTime() - start, true));
+        };
+    }
+
+    public long getCount(String stage) {
+        Stage recorded = stages.get(stage);
+        return recorded == null ? 0 : recorded.snapshot().length;
+    }
+
+    /**
+     * Table of count, failures, rate over the wall time and latency percentiles (ms) of every stage.
+     */
+    public String report(long wallNanos) {
+        double wallSeconds = wallNanos / 1e9;
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "%-40s %8s %6s %9s %9s %9s %9s %9s %9s%n",
+                "stage", "count", "failed", "per s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        stages.forEach((name, stage) -> {
+            long[] samples = stage.snapshot();
+            Arrays.sort(samples);
+            report.append(String.format(Locale.ROOT, "%-40s %8d %6d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    name, samples.length, stage.getFailed(), samples.length / wallSeconds,
+                    millis(percentile(samples, 0.5)), millis(percentile(samples, 0.9)),
+                    millis(percentile(samples, 0.99)), millis(percentile(samples, 0.999)),
+                    millis(samples.length == 0 ? 0 : samples[samples.length - 1])));
+        });
+        return report.toString();
+    }
+
+    private static long percentile(long[] sortedSamples, double quantile) {
+        if (sortedSamples.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, Math.min(index, sortedSamples.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static class Stage {
+        private long[] samples = new long[1024];
+        private int size;
+        private long failed;
+
+        synchronized void add(long nanos, boolean failed) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+            if (failed) {
+                this.failed++;
+            }
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, size);
+        }
+
+        synchronized long getFailed() {
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.capable.physiciandss.workload;
+
+import com.capable.physiciandss.services.FhirGateway;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+/**
+ * Wraps a {@link FhirGateway} so that every call is recorded as stage "hapi." + method name.
+ */
+public class TimedFhirGateway {
+
+    public static FhirGateway wrap(FhirGateway delegate, StageRecorder recorder) {
+        return (FhirGateway) Proxy.newProxyInstance(FhirGateway.class.getClassLoader(), new Class<?>[]{FhirGateway.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    return result instanceof Mono
+                            ? recorder.time("hapi." + method.getName(), (Mono<?>) result)
+                            : result;
+                });
+    }
+}
@@ -0,0 +1,32 @@
+package com.capable.physiciandss.workload;
+
+import com.capable.physiciandss.flow.PatientPartitionedExecutor;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Records the processing of a patient twice: "patient" from submission (including the wait in the lane) and
+ * "patient.processing" from the start of the processing until it completes.
+ */
+class TimedPatientPartitionedExecutor extends PatientPartitionedExecutor {
+
+    private final StageRecorder recorder;
+
+    TimedPatientPartitionedExecutor(StageRecorder recorder, int laneCount, int queueDepth, long patientTimeoutMs,
+                                    String flowMode) {
+        super(laneCount, queueDepth, patientTimeoutMs, flowMode);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public CompletableFuture<Void> submitProcessing(String patientId, Supplier<Mono<Void>> processing) {
+        long submitted = System.nanoTime();
+        CompletableFuture<Void> result = super.submitProcessing(patientId,
+                () -> recorder.time("patient.processing", processing.get()));
+        result.whenComplete((ignored, exception) ->
+                recorder.record("patient", System.nanoTime() - submitted, exception != null));
+        return result;
+    }
+}
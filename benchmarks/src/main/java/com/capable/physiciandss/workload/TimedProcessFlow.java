@@ -0,0 +1,62 @@
+package com.capable.physiciandss.workload;
+
+import com.capable.physiciandss.flow.FlowMetrics;
+import com.capable.physiciandss.flow.PatientPartitionedExecutor;
+import com.capable.physiciandss.flow.ProcessFlow;
+import com.capable.physiciandss.hapi.MedicationRequestTemplateCache;
+import com.capable.physiciandss.rules.AbstractedDataRules;
+import com.capable.physiciandss.rules.TemporalSymptomState;
+import com.capable.physiciandss.services.DeonticsRequestService;
+import com.capable.physiciandss.services.DreSessionManager;
+import com.capable.physiciandss.services.FhirGateway;
+import com.capable.physiciandss.services.GoComService;
+import com.capable.physiciandss.tracing.Tracer;
+import org.hl7.fhir.r4.model.Communication;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records each chunk of a tick as stage "tick.chunk" and each processed Communication as stage "communication",
+ * from the time it was sent until the processing of its chunk has finished.
+ */
+class TimedProcessFlow extends ProcessFlow {
+
+    private final StageRecorder recorder;
+    private final AtomicLong processedCommunications = new AtomicLong();
+
+    TimedProcessFlow(StageRecorder recorder, FhirGateway fhirGateway, DeonticsRequestService deonticsRequestService,
+                     GoComService goComService, PatientPartitionedExecutor executor,
+                     DreSessionManager dreSessionManager, AbstractedDataRules abstractedDataRules,
+                     TemporalSymptomState temporalSymptomState, FlowMetrics flowMetrics, Tracer tracer,
+                     MedicationRequestTemplateCache medicationRequestTemplates, int storedDataLookbackDays) {
+        super(fhirGateway, deonticsRequestService, goComService, executor, dreSessionManager, abstractedDataRules,
+                temporalSymptomState, flowMetrics, tracer, medicationRequestTemplates, storedDataLookbackDays);
+        this.recorder = recorder;
+    }
+
+    @Override
+    public List<Communication> processCommunications(List<Communication> communicationList) {
+        long start = System.nanoTime();
+        List<Communication> failed = super.processCommunications(communicationList);
+        long finished = System.nanoTime();
+        recorder.record("tick.chunk", finished - start, !failed.isEmpty());
+        long finishedMillis = System.currentTimeMillis();
+        for (Communication communication : communicationList) {
+            if (failed.contains(communication)) {
+                continue;
+            }
+            processedCommunications.incrementAndGet();
+            if (communication.getSent() != null) {
+                recorder.record("communication", TimeUnit.MILLISECONDS.toNanos(
+                        finishedMillis - communication.getSent().getTime()));
+            }
+        }
+        return failed;
+    }
+
+    long getProcessedCommunicationCount() {
+        return processedCommunications.get();
+    }
+}
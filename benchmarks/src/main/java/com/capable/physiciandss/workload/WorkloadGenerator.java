@@ -0,0 +1,219 @@
+package com.capable.physiciandss.workload;
+
+import com.capable.physiciandss.configuration.HttpClientProperties;
+import com.capable.physiciandss.configuration.WebClientConfig;
+import com.capable.physiciandss.flow.FlowMetrics;
+import com.capable.physiciandss.hapi.Connection;
+import com.capable.physiciandss.hapi.MedicationRequestTemplateCache;
+import com.capable.physiciandss.resilience.ResiliencePolicies;
+import com.capable.physiciandss.resilience.ResilienceProperties;
+import com.capable.physiciandss.rules.AbstractedDataRuleProperties;
+import com.capable.physiciandss.rules.AbstractedDataRules;
+import com.capable.physiciandss.rules.TemporalSymptomState;
+import com.capable.physiciandss.schedulers.TickCoordinator;
+import com.capable.physiciandss.schedulers.WatermarkStore;
+import com.capable.physiciandss.services.*;
+import com.capable.physiciandss.simulator.DeonticsSimulator;
+import com.capable.physiciandss.simulator.SimulatorOptions;
+import com.capable.physiciandss.tracing.Tracer;
+import com.capable.physiciandss.tracing.TracingClientInterceptor;
+import com.capable.physiciandss.tracing.ZipkinSpanExporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many active patients one PhDSS instance sustains. Seeds HAPI FHIR with synthetic patients
+ * (Observation histories of diarrhea symptoms and an active immunotherapy MedicationRequest each), then sends
+ * in-progress Communications about them at a fixed arrival rate while the scheduler tick processes them with
+ * ProcessFlow against Deontics (by default an embedded {@link DeonticsSimulator}). When every Communication has
+ * been processed it prints a table of throughput and latency percentiles per stage: seeding, end to end
+ * Communication latency, tick chunks, patient processing and every HAPI FHIR and Deontics call. PhDSS itself is
+ * configured by its application.properties, see {@link ApplicationSettings}.
+ * <p>
+ * Run with {@code java -Dworkload.patients=1000 -cp target/benchmarks.jar
+ * com.capable.physiciandss.workload.WorkloadGenerator}, see {@link WorkloadOptions} for all settings.
+ */
+public class WorkloadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkloadGenerator.class);
+    private static final String PATIENT_ID_PREFIX = "Patient/synthetic-";
+    private final WorkloadOptions options;
+    private final ApplicationSettings settings;
+    private final StageRecorder recorder = new StageRecorder();
+
+    WorkloadGenerator(WorkloadOptions options, ApplicationSettings settings) {
+        this.options = options;
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ApplicationSettings settings = new ApplicationSettings();
+        WorkloadOptions options = new WorkloadOptions(settings);
+        String report = new WorkloadGenerator(options, settings).run();
+        System.out.println(report);
+        if (!options.reportFile.isEmpty()) {
+            Files.write(Paths.get(options.reportFile), report.getBytes(StandardCharsets.UTF_8));
+        }
+        System.exit(0);
+    }
+
+    String run() throws IOException, InterruptedException {
+        log.info("Starting workload: " + options);
+        DeonticsSimulator simulator = options.deonticsBaseUrl.isEmpty()
+                ? new DeonticsSimulator(SimulatorOptions.fromSystemProperties().port(0)).start()
+                : null;
+        String deonticsBaseUrl = simulator != null ? simulator.getBaseUrl() : options.deonticsBaseUrl;
+
+        ZipkinSpanExporter spanExporter = new ZipkinSpanExporter(options.zipkinEndpoint, 100000);
+        Tracer tracer = new Tracer(spanExporter, options.traceSampleRate);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ResiliencePolicies resiliencePolicies = new ResiliencePolicies(
+                settings.bind("phdss.resilience", ResilienceProperties.class), meterRegistry);
+        WebClientConfig webClientConfig = new WebClientConfig();
+        HttpClientProperties httpClientProperties = settings.bind("phdss.deontics.http-client",
+                HttpClientProperties.class);
+        ConnectionProvider deonticsConnectionProvider = webClientConfig.deonticsConnectionProvider(
+                httpClientProperties, meterRegistry);
+        WebClient deonticsWebClient = webClientConfig.webClient(WebClient.builder()
+                        .filter(recorder.exchangeFilter("deontics")), deonticsBaseUrl, tracer, resiliencePolicies,
+                deonticsConnectionProvider, httpClientProperties);
+        Connection connection = new Connection(options.hapiBaseUrl);
+        connection.getClient().registerInterceptor(new TracingClientInterceptor(tracer, options.hapiBaseUrl));
+        DownstreamMetrics downstreamMetrics = new DownstreamMetrics(meterRegistry);
+        int batchSize = settings.getInt("phdss.hapi.batch-size");
+        HapiRequestService hapiRequestService = new HapiRequestService(connection, batchSize, downstreamMetrics);
+        FhirGateway fhirGateway = TimedFhirGateway.wrap("reactive".equals(options.flowMode)
+                ? new ReactiveHapiRequestService(webClientConfig.hapiWebClient(WebClient.builder(), options.hapiBaseUrl,
+                settings.getInt("phdss.hapi.max-in-memory-size"), tracer, resiliencePolicies), connection, batchSize,
+                downstreamMetrics)
+                : new BlockingFhirGateway(hapiRequestService, tracer, resiliencePolicies), recorder);
+        DeonticsRequestService deonticsRequestService = new DeonticsRequestService(deonticsWebClient,
+                settings.getLong("phdss.deontics.pathway-cache.ttl-ms"),
+                settings.getLong("phdss.deontics.pathway-cache.refresh-after-ms"),
+                settings.getLong("phdss.deontics.pathway-cache.maximum-size"), downstreamMetrics);
+        AbstractedDataRules rules = new AbstractedDataRules(settings.bind("phdss.rules", AbstractedDataRuleProperties.class));
+        TimedPatientPartitionedExecutor executor = new TimedPatientPartitionedExecutor(recorder, options.lanes,
+                settings.getInt("phdss.processing.lane-queue-depth"),
+                settings.getLong("phdss.processing.patient-timeout-ms"), options.flowMode);
+        TimedProcessFlow processFlow = new TimedProcessFlow(recorder, fhirGateway, deonticsRequestService,
+                new GoComService(deonticsWebClient, downstreamMetrics), executor,
+                new DreSessionManager(deonticsRequestService, settings.getLong("phdss.deontics.session-cache.idle-expiry-ms"),
+                        settings.getLong("phdss.deontics.session-cache.maximum-size")),
+                rules, new TemporalSymptomState(fhirGateway, rules, settings.getLong("phdss.rules.day-buckets.maximum-patients"),
+                settings.getLong("phdss.rules.day-buckets.idle-expiry-ms")),
+                new FlowMetrics(meterRegistry), tracer, new MedicationRequestTemplateCache(connection,
+                settings.getLong("phdss.hapi.medication-request-templates.maximum-size")),
+                settings.getInt("phdss.flow.stored-data-lookback-days"));
+        TickCoordinator tickCoordinator = new TickCoordinator(processFlow, hapiRequestService,
+                new WatermarkStore(Files.createTempFile("workload-watermark", "").toString()),
+                settings.getInt("phdss.scheduler.max-items-per-tick"), settings.getLong("phdss.scheduler.time-budget-ms"),
+                settings.getInt("phdss.scheduler.chunk-size"), settings.getString("phdss.polling.mode"),
+                settings.getInt("phdss.polling.page-size"), settings.getLong("phdss.polling.watermark-overlap-ms"));
+
+        PatientSeeder seeder = new PatientSeeder(connection.getClient(), recorder);
+        ScheduledExecutorService seedPool = Executors.newScheduledThreadPool(options.seedThreads);
+        ScheduledExecutorService tickThread = Executors.newSingleThreadScheduledExecutor();
+        try {
+            seedPatients(seeder, seedPool);
+            AtomicLong attemptedArrivals = new AtomicLong();
+            AtomicLong sentArrivals = new AtomicLong();
+            long start = System.nanoTime();
+            scheduleArrivals(seeder, seedPool, attemptedArrivals, sentArrivals);
+            tickThread.scheduleWithFixedDelay(tickCoordinator::runTick, 0, options.tickMs, TimeUnit.MILLISECONDS);
+            seedPool.scheduleWithFixedDelay(spanExporter::flush, 1, 1, TimeUnit.SECONDS);
+            long deadline = start + TimeUnit.SECONDS.toNanos(options.timeoutSeconds);
+            while ((attemptedArrivals.get() < options.arrivals
+                    || processFlow.getProcessedCommunicationCount() < sentArrivals.get())
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            long wallNanos = System.nanoTime() - start;
+            return report(wallNanos, processFlow.getProcessedCommunicationCount(), sentArrivals.get(),
+                    tickCoordinator, simulator);
+        } finally {
+            tickThread.shutdownNow();
+            seedPool.shutdownNow();
+            executor.shutdown();
+            connection.close();
+            deonticsConnectionProvider.dispose();
+            if (simulator != null) {
+                simulator.stop();
+            }
+        }
+    }
+
+    private void seedPatients(PatientSeeder seeder, ExecutorService seedPool) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Future<?>> seeded = new ArrayList<>(options.patients);
+        for (int i = 0; i < options.patients; i++) {
+            String patientId = PATIENT_ID_PREFIX + i;
+            Random random = new Random(options.randomSeed + i);
+            seeded.add(seedPool.submit(() -> seeder.seedPatient(patientId, options.historyDays, random)));
+        }
+        for (Future<?> future : seeded) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.warn("Seeding of a patient failed: " + e.getCause().getMessage());
+            }
+        }
+        log.info("Seeded " + options.patients + " patients in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + " ms");
+    }
+
+    /**
+     * Sends arrival k at k / arrival-rate seconds; the first arrival of every patient introduces the patient,
+     * later ones report a new Observation.
+     */
+    private void scheduleArrivals(PatientSeeder seeder, ScheduledExecutorService seedPool,
+                                  AtomicLong attemptedArrivals, AtomicLong sentArrivals) {
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.arrivalRate);
+        for (int k = 0; k < options.arrivals; k++) {
+            String patientId = PATIENT_ID_PREFIX + (k % options.patients);
+            boolean firstArrival = k < options.patients;
+            Random random = new Random(options.randomSeed * 31 + k);
+            seedPool.schedule(() -> {
+                try {
+                    seeder.sendArrival(patientId, firstArrival, random);
+                    sentArrivals.incrementAndGet();
+                } catch (RuntimeException e) {
+                    log.warn("Arrival for " + patientId + " failed: " + e.getMessage());
+                } finally {
+                    attemptedArrivals.incrementAndGet();
+                }
+            }, k * periodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String report(long wallNanos, long processed, long sent, TickCoordinator tickCoordinator,
+                          DeonticsSimulator simulator) {
+        double wallSeconds = wallNanos / 1e9;
+        StringBuilder report = new StringBuilder()
+                .append("Workload: ").append(options).append(System.lineSeparator())
+                .append(String.format("Processed %d of %d communications in %.1f s (%.1f communications/s, "
+                                + "%.1f patients/s), skipped ticks: %d, backlog left: %d%n",
+                        processed, sent, wallSeconds, processed / wallSeconds,
+                        recorder.getCount("patient") / wallSeconds,
+                        tickCoordinator.getSkippedTickCount(), tickCoordinator.getBacklogSize()))
+                .append(recorder.report(wallNanos));
+        if (simulator != null) {
+            report.append("Deontics simulator requests: ").append(simulator.getRequestCounts())
+                    .append(", injected errors: ").append(simulator.getInjectedErrorCount())
+                    .append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+}
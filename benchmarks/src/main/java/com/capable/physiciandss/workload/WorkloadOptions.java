@@ -0,0 +1,78 @@
+package com.capable.physiciandss.workload;
+
+import com.capable.physiciandss.utils.Constants;
+
+/**
+ * Settings of a {@link WorkloadGenerator} run, read from workload.* system properties. Those which are settings of
+ * PhDSS default to its {@link ApplicationSettings}.
+ */
+class WorkloadOptions {
+
+    /**
+     * HAPI FHIR server to seed and to process (workload.hapi-base-url).
+     */
+    final String hapiBaseUrl = System.getProperty("workload.hapi-base-url", Constants.HAPI_BASE_URL);
+    /**
+     * Deontics endpoint (workload.deontics-base-url); when empty an embedded DeonticsSimulator is started with
+     * the simulator.* options.
+     */
+    final String deonticsBaseUrl = System.getProperty("workload.deontics-base-url", "");
+    /**
+     * Number of synthetic patients (workload.patients).
+     */
+    final int patients = Integer.getInteger("workload.patients", 100);
+    /**
+     * Days of Observation history seeded per patient (workload.history-days).
+     */
+    final int historyDays = Integer.getInteger("workload.history-days", 30);
+    /**
+     * Communications sent per second once the patients are seeded (workload.arrival-rate).
+     */
+    final double arrivalRate = Double.parseDouble(System.getProperty("workload.arrival-rate", "10"));
+    /**
+     * Total number of Communications (workload.arrivals), by default three per patient.
+     */
+    final int arrivals = Integer.getInteger("workload.arrivals", patients * 3);
+    /**
+     * Flow mode and lanes as phdss.flow.mode and phdss.processing.lanes (workload.flow-mode, workload.lanes).
+     */
+    final String flowMode;
+    final int lanes;
+    /**
+     * Delay between scheduler ticks (workload.tick-ms).
+     */
+    final long tickMs = Long.getLong("workload.tick-ms", 1000L);
+    /**
+     * Threads writing to HAPI FHIR while seeding and sending arrivals (workload.seed-threads).
+     */
+    final int seedThreads = Integer.getInteger("workload.seed-threads", 8);
+    /**
+     * Longest time to wait for all Communications to be processed (workload.timeout-s).
+     */
+    final long timeoutSeconds = Long.getLong("workload.timeout-s", 600L);
+    /**
+     * Zipkin compatible endpoint the traces of processed Communications are posted to (workload.zipkin-endpoint)
+     * and the share of them which is traced (workload.trace-sample-rate).
+     */
+    final String zipkinEndpoint = System.getProperty("workload.zipkin-endpoint", "");
+    final double traceSampleRate;
+    final long randomSeed = Long.getLong("workload.seed", 42L);
+    /**
+     * File the report is also written to when not empty (workload.report-file).
+     */
+    final String reportFile = System.getProperty("workload.report-file", "");
+
+    WorkloadOptions(ApplicationSettings settings) {
+        flowMode = System.getProperty("workload.flow-mode", settings.getString("phdss.flow.mode"));
+        lanes = Integer.getInteger("workload.lanes", settings.getInt("phdss.processing.lanes"));
+        traceSampleRate = Double.parseDouble(System.getProperty("workload.trace-sample-rate",
+                String.valueOf(settings.getDouble("phdss.tracing.sample-rate"))));
+    }
+
+    @Override
+    public String toString() {
+        return "hapi=" + hapiBaseUrl + ", deontics=" + (deonticsBaseUrl.isEmpty() ? "simulator" : deonticsBaseUrl)
+                + ", patients=" + patients + ", history-days=" + historyDays + ", arrival-rate=" + arrivalRate
+                + "/s, arrivals=" + arrivals + ", flow-mode=" + flowMode + ", lanes=" + lanes + ", tick-ms=" + tickMs;
+    }
+}
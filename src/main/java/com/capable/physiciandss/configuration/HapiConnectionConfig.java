@@ -1,6 +1,9 @@
 package com.capable.physiciandss.configuration;
 
 import com.capable.physiciandss.hapi.Connection;
+import com.capable.physiciandss.tracing.Tracer;
+import com.capable.physiciandss.tracing.TracingClientInterceptor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -9,7 +12,10 @@ import static com.capable.physiciandss.utils.Constants.HAPI_BASE_URL;
 @Configuration
 public class HapiConnectionConfig {
     @Bean
-    public Connection connection() {
-        return new Connection(HAPI_BASE_URL);
+    public Connection connection(@Value("${phdss.hapi.base-url:" + HAPI_BASE_URL + "}") String hapiBaseUrl,
+                                 Tracer tracer) {
+        Connection connection = new Connection(hapiBaseUrl);
+        connection.getClient().registerInterceptor(new TracingClientInterceptor(tracer, hapiBaseUrl));
+        return connection;
     }
 }
@@ -0,0 +1,45 @@
+package com.capable.physiciandss.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "phdss.deontics.http-client")
+public class HttpClientProperties {
+
+    /**
+     * Connections kept open to each remote host.
+     */
+    private int maxConnections = 50;
+    /**
+     * Requests which may wait for a free connection, -1 for no limit.
+     */
+    private int pendingAcquireMaxCount = 1000;
+    private long pendingAcquireTimeoutMs = 45000;
+    /**
+     * Idle connections are closed after this time, before the load balancer in front of Deontics drops them.
+     */
+    private long maxIdleTimeMs = 50000;
+    private long maxLifeTimeMs = 600000;
+    private int connectTimeoutMs = 5000;
+    /**
+     * Time from sending a request until the response headers arrive.
+     */
+    private long responseTimeoutMs = 60000;
+    /**
+     * Asks for gzip compressed responses.
+     */
+    private boolean compression = true;
+    /**
+     * HTTP11, H2 (negotiated with ALPN, https only) or H2C.
+     */
+    private List<String> protocols = new ArrayList<>(Collections.singletonList("HTTP11"));
+    /**
+     * Exports the reactor.netty.connection.provider and reactor.netty.http.client meters.
+     */
+    private boolean metrics = true;
+}
@@ -0,0 +1,113 @@
+package com.capable.physiciandss.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Builds the pooled Reactor Netty connector shared by the Deontics and GoCom WebClient. Connections, including
+ * their TLS sessions, are kept alive and reused across requests to the same host.
+ */
+public class HttpConnectors {
+
+    public static ConnectionProvider connectionProvider(String name, HttpClientProperties properties,
+                                                        MeterRegistry registry) {
+        ConnectionProvider provider = ConnectionProvider.builder(name)
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(properties.getPendingAcquireTimeoutMs()))
+                .maxIdleTime(Duration.ofMillis(properties.getMaxIdleTimeMs()))
+                .maxLifeTime(Duration.ofMillis(properties.getMaxLifeTimeMs()))
+                .metrics(properties.isMetrics())
+                .fifo()
+                .build();
+        return new TimedConnectionProvider(provider, name, registry);
+    }
+
+    public static ClientHttpConnector connector(ConnectionProvider provider, HttpClientProperties properties) {
+        HttpClient httpClient = HttpClient.create(provider)
+                .protocol(properties.getProtocols().stream().map(HttpProtocol::valueOf).toArray(HttpProtocol[]::new))
+                .compress(properties.isCompression())
+                .keepAlive(true)
+                .metrics(properties.isMetrics(), HttpConnectors::withoutQuery)
+                .tcpConfiguration(tcpClient -> tcpClient
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getConnectTimeoutMs())
+                        .option(ChannelOption.SO_KEEPALIVE, true));
+        if (properties.getProtocols().contains(HttpProtocol.H2.name())) {
+            httpClient = httpClient.secure();
+        }
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClient);
+        Duration responseTimeout = Duration.ofMillis(properties.getResponseTimeoutMs());
+        return (method, uri, requestCallback) -> connector.connect(method, uri, requestCallback)
+                .timeout(responseTimeout);
+    }
+
+    private static String withoutQuery(String uri) {
+        int query = uri.indexOf('?');
+        return query < 0 ? uri : uri.substring(0, query);
+    }
+
+    /**
+     * Records how long requests wait for a connection (phdss.http.client.pool.acquire), tagged with the outcome:
+     * success, timeout when no connection was free within pending-acquire-timeout-ms, error, e.g. when too many
+     * requests were already waiting, or cancelled. The pool itself only exposes the number of pending ones.
+     */
+    private static class TimedConnectionProvider implements ConnectionProvider {
+        private final ConnectionProvider delegate;
+        private final String name;
+        private final MeterRegistry registry;
+
+        TimedConnectionProvider(ConnectionProvider delegate, String name, MeterRegistry registry) {
+            this.delegate = delegate;
+            this.name = name;
+            this.registry = registry;
+        }
+
+        @Override
+        public Mono<? extends Connection> acquire(Bootstrap bootstrap) {
+            return Mono.defer(() -> {
+                Timer.Sample sample = Timer.start(registry);
+                return delegate.acquire(bootstrap)
+                        .doOnSuccess(connection -> stop(sample, "success"))
+                        .doOnError(exception -> stop(sample,
+                                exception instanceof TimeoutException ? "timeout" : "error"))
+                        .doOnCancel(() -> stop(sample, "cancelled"));
+            });
+        }
+
+        private void stop(Timer.Sample sample, String outcome) {
+            sample.stop(Timer.builder("phdss.http.client.pool.acquire")
+                    .description("Time spent waiting for a pooled connection")
+                    .tag("pool", name)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+
+        @Override
+        public void disposeWhen(SocketAddress address) {
+            delegate.disposeWhen(address);
+        }
+
+        @Override
+        public Mono<Void> disposeLater() {
+            return delegate.disposeLater();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return delegate.isDisposed();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.capable.physiciandss.configuration;
+
+import com.capable.physiciandss.flow.PatientPartitionedExecutor;
+import com.capable.physiciandss.hapi.MedicationRequestTemplateCache;
+import com.capable.physiciandss.schedulers.TickCoordinator;
+import com.capable.physiciandss.services.DeonticsRequestService;
+import com.capable.physiciandss.services.DreSessionManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the counters the scheduler, the processing lanes and the Deontics services already keep. Meters are
+ * registered here rather than by a MeterBinder bean, which the registry would need before the flow beans that
+ * themselves depend on the registry.
+ */
+@Component
+public class PhdssMeters {
+
+    public PhdssMeters(MeterRegistry registry, TickCoordinator tickCoordinator, PatientPartitionedExecutor executor,
+                       DreSessionManager dreSessionManager, DeonticsRequestService deonticsRequestService,
+                       MedicationRequestTemplateCache medicationRequestTemplates) {
+        FunctionCounter.builder("phdss.scheduler.ticks.skipped", tickCoordinator,
+                TickCoordinator::getSkippedTickCount)
+                .description("Ticks skipped because the previous one was still running")
+                .register(registry);
+        Gauge.builder("phdss.scheduler.backlog", tickCoordinator, TickCoordinator::getBacklogSize)
+                .description("Communications waiting for a later tick")
+                .register(registry);
+        Gauge.builder("phdss.processing.queued", executor, PatientPartitionedExecutor::getQueuedTaskCount)
+                .description("Patients queued in the processing lanes")
+                .register(registry);
+        Gauge.builder("phdss.deontics.sessions", dreSessionManager, DreSessionManager::getSessionCount)
+                .description("Cached DRE sessions")
+                .register(registry);
+        FunctionCounter.builder("phdss.deontics.pathway-cache.requests", deonticsRequestService,
+                service -> service.getPathwayCacheStats().hitCount())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("phdss.deontics.pathway-cache.requests", deonticsRequestService,
+                service -> service.getPathwayCacheStats().missCount())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("phdss.hapi.medication-request-templates.requests", medicationRequestTemplates,
+                cache -> cache.getStats().hitCount())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("phdss.hapi.medication-request-templates.requests", medicationRequestTemplates,
+                cache -> cache.getStats().missCount())
+                .tag("result", "miss")
+                .register(registry);
+    }
+}
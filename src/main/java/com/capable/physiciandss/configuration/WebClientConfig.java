@@ -1,20 +1,54 @@
 package com.capable.physiciandss.configuration;
 
+import com.capable.physiciandss.resilience.ResiliencePolicies;
+import com.capable.physiciandss.tracing.Tracer;
+import com.capable.physiciandss.tracing.TracingExchangeFilter;
 import com.capable.physiciandss.utils.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
 public class WebClientConfig {
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider deonticsConnectionProvider(HttpClientProperties httpClientProperties,
+                                                         MeterRegistry registry) {
+        return HttpConnectors.connectionProvider("deontics", httpClientProperties, registry);
+    }
+
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder()
-                .baseUrl(Constants.DEONTICS_BASE_URL)
+    public WebClient webClient(WebClient.Builder webClientBuilder,
+                               @Value("${phdss.deontics.base-url:" + Constants.DEONTICS_BASE_URL + "}") String deonticsBaseUrl,
+                               Tracer tracer, ResiliencePolicies resiliencePolicies,
+                               ConnectionProvider deonticsConnectionProvider, HttpClientProperties httpClientProperties) {
+        return webClientBuilder
+                .baseUrl(deonticsBaseUrl)
+                .clientConnector(HttpConnectors.connector(deonticsConnectionProvider, httpClientProperties))
+                .filter(resiliencePolicies.deonticsFilter())
+                .filter(new TracingExchangeFilter(tracer, "deontics"))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader("x-apikey", Constants.X_APIKEY)
                 .build();
     }
+
+    @Bean
+    public WebClient hapiWebClient(WebClient.Builder webClientBuilder,
+                                   @Value("${phdss.hapi.base-url:" + Constants.HAPI_BASE_URL + "}") String hapiBaseUrl,
+                                   @Value("${phdss.hapi.max-in-memory-size:16777216}") int maxInMemorySize,
+                                   Tracer tracer, ResiliencePolicies resiliencePolicies) {
+        return webClientBuilder
+                .baseUrl(hapiBaseUrl)
+                .filter(resiliencePolicies.hapiFilter())
+                .filter(new TracingExchangeFilter(tracer, "hapi-fhir"))
+                .defaultHeader(HttpHeaders.ACCEPT, Constants.FHIR_JSON_MEDIA_TYPE)
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(maxInMemorySize))
+                .build();
+    }
 }
@@ -0,0 +1,47 @@
+package com.capable.physiciandss.controllers;
+
+import com.capable.physiciandss.flow.ProcessFlow;
+import com.capable.physiciandss.schedulers.TickCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Receives rest-hook notifications sent by HAPI FHIR for the Communication subscription
+ * and feeds them into the same flow as the scheduler.
+ */
+@RestController
+@RequestMapping("${phdss.ingestion.webhook-path:/fhir-notifications}")
+@ConditionalOnProperty(name = "phdss.ingestion.mode", havingValue = "push")
+public class CommunicationNotificationController {
+
+    private static final Logger log = LoggerFactory.getLogger(CommunicationNotificationController.class);
+    private final ProcessFlow processFlow;
+    private final TickCoordinator tickCoordinator;
+
+    public CommunicationNotificationController(ProcessFlow processFlow, TickCoordinator tickCoordinator) {
+        this.processFlow = processFlow;
+        this.tickCoordinator = tickCoordinator;
+    }
+
+    @RequestMapping(value = "/Communication/{id}", method = {RequestMethod.PUT, RequestMethod.POST})
+    public ResponseEntity<Void> onCommunicationNotification(@PathVariable String id) {
+        log.debug("Received rest-hook notification for communication with id: " + id);
+        try {
+            if (processFlow.handleNotifiedCommunication(id)) {
+                tickCoordinator.forget(id);
+            }
+        } catch (Exception e) {
+            log.warn("Handling of notified communication with id: " + id + " failed, it will be picked up by polling", e);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @RequestMapping(method = RequestMethod.POST)
+    public ResponseEntity<Void> onEmptyNotification() {
+        log.debug("Received rest-hook notification without payload, waiting for next polling run");
+        return ResponseEntity.ok().build();
+    }
+}
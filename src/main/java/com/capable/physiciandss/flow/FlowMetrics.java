@@ -0,0 +1,69 @@
+package com.capable.physiciandss.flow;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timers of the stages of the process flow (phdss.flow.stage, tagged with stage and outcome), the number of
+ * patients being processed at the moment (phdss.flow.patients.in-flight) and the steps which were dropped after
+ * a failure (phdss.flow.dropped, tagged with step and exception).
+ */
+@Component
+public class FlowMetrics {
+
+    public static final String INTAKE = "intake";
+    public static final String PATIENT = "patient";
+    public static final String ENQUIRY = "enquiry";
+    public static final String CONFIRMATION = "confirmation";
+    private static final String STAGE = "phdss.flow.stage";
+    private static final String DROPPED = "phdss.flow.dropped";
+    private final MeterRegistry registry;
+    private final AtomicInteger patientsInFlight = new AtomicInteger();
+
+    public FlowMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        registry.gauge("phdss.flow.patients.in-flight", patientsInFlight);
+    }
+
+    /**
+     * Times every subscription of the stage until it completes or fails.
+     */
+    public <T> Mono<T> time(String stage, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return call
+                    .doOnSuccess(result -> stop(sample, stage, "success"))
+                    .doOnError(exception -> stop(sample, stage, "error"))
+                    .doOnCancel(() -> stop(sample, stage, "cancelled"));
+        });
+    }
+
+    /**
+     * Times the processing of a patient and counts it as in flight until it finishes.
+     */
+    public <T> Mono<T> timePatient(Mono<T> call) {
+        return time(PATIENT, call
+                .doOnSubscribe(subscription -> patientsInFlight.incrementAndGet())
+                .doFinally(signal -> patientsInFlight.decrementAndGet()));
+    }
+
+    /**
+     * Counts a step of the flow which failed and was skipped, so its work is lost until the patient is processed
+     * again.
+     */
+    public void countDropped(String step, Throwable exception) {
+        registry.counter(DROPPED, "step", step, "exception", exception.getClass().getSimpleName()).increment();
+    }
+
+    private void stop(Timer.Sample sample, String stage, String outcome) {
+        sample.stop(Timer.builder(STAGE)
+                .description("Stages of the process flow")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+}
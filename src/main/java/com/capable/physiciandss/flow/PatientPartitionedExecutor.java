@@ -0,0 +1,154 @@
+package com.capable.physiciandss.flow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs patient work on a fixed set of lanes. Work is assigned to a lane by hashing the patient id,
+ * so different patients are processed in parallel while work of one patient is always executed in
+ * submission order. Work which does not belong to any patient yet (e.g. resolving the patient from
+ * a Communication payload) runs on a separate intake pool, so lanes never wait on each other. When
+ * a queue is full the submitting thread waits until there is space.
+ * <p>
+ * In "blocking" flow mode every lane is a single thread which waits for the patient's processing to
+ * finish. In "reactive" mode a lane is only a chain of processings, each one subscribed when the
+ * previous one has completed, so hundreds of lanes can be in flight without holding a thread each.
+ */
+@Component
+public class PatientPartitionedExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(PatientPartitionedExecutor.class);
+    private final boolean reactive;
+    private final Duration patientTimeout;
+    private final int queueDepth;
+    private final ThreadPoolExecutor[] lanes;
+    private final CompletableFuture<?>[] reactiveLaneTails;
+    private final Object[] reactiveLaneLocks;
+    private final Semaphore[] reactiveLaneCapacity;
+    private final ThreadPoolExecutor intake;
+
+    public PatientPartitionedExecutor(@Value("${phdss.processing.lanes:0}") int laneCount,
+                                      @Value("${phdss.processing.lane-queue-depth:1000}") int queueDepth,
+                                      @Value("${phdss.processing.patient-timeout-ms:120000}") long patientTimeoutMs,
+                                      @Value("${phdss.flow.mode:blocking}") String flowMode) {
+        this.reactive = "reactive".equals(flowMode);
+        this.patientTimeout = Duration.ofMillis(patientTimeoutMs);
+        this.queueDepth = queueDepth;
+        if (laneCount <= 0) {
+            laneCount = reactive ? 256 : Runtime.getRuntime().availableProcessors() * 4;
+        }
+        if (reactive) {
+            lanes = new ThreadPoolExecutor[0];
+            reactiveLaneTails = new CompletableFuture<?>[laneCount];
+            reactiveLaneLocks = new Object[laneCount];
+            reactiveLaneCapacity = new Semaphore[laneCount];
+            for (int i = 0; i < laneCount; i++) {
+                reactiveLaneTails[i] = CompletableFuture.completedFuture(null);
+                reactiveLaneLocks[i] = new Object();
+                reactiveLaneCapacity[i] = new Semaphore(queueDepth);
+            }
+            intake = newBlockingExecutor(Runtime.getRuntime().availableProcessors() * 4, queueDepth, "patient-intake");
+        } else {
+            lanes = new ThreadPoolExecutor[laneCount];
+            for (int i = 0; i < laneCount; i++) {
+                lanes[i] = newBlockingExecutor(1, queueDepth, "patient-lane-" + i);
+            }
+            reactiveLaneTails = new CompletableFuture<?>[0];
+            reactiveLaneLocks = new Object[0];
+            reactiveLaneCapacity = new Semaphore[0];
+            intake = newBlockingExecutor(laneCount, queueDepth, "patient-intake");
+        }
+        log.info("PatientPartitionedExecutor has been created with " + laneCount + (reactive ? " reactive" : "")
+                + " lanes, queue depth: " + queueDepth);
+    }
+
+    public CompletableFuture<Void> submitProcessing(String patientId, Supplier<Mono<Void>> processing) {
+        if (!reactive) {
+            return submit(patientId, () -> processing.get().block(patientTimeout));
+        }
+        int lane = laneOf(patientId, reactiveLaneTails.length);
+        try {
+            reactiveLaneCapacity[lane].acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for space in reactive lane " + lane, e);
+        }
+        CompletableFuture<Void> result;
+        synchronized (reactiveLaneLocks[lane]) {
+            result = reactiveLaneTails[lane]
+                    .handle((previousResult, previousException) -> null)
+                    .thenCompose(ignored -> Mono.defer(processing).timeout(patientTimeout).toFuture());
+            reactiveLaneTails[lane] = result;
+        }
+        result.whenComplete((ignored, exception) -> reactiveLaneCapacity[lane].release());
+        return result;
+    }
+
+    public CompletableFuture<Void> submit(String patientId, Runnable task) {
+        if (reactive) {
+            return submitProcessing(patientId, () -> Mono.fromRunnable(task));
+        }
+        return CompletableFuture.runAsync(task, lanes[laneOf(patientId, lanes.length)]);
+    }
+
+    public <T> CompletableFuture<T> supplyOnIntake(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, intake);
+    }
+
+    public int getLaneCount() {
+        return reactive ? reactiveLaneTails.length : lanes.length;
+    }
+
+    public int getQueuedTaskCount() {
+        int queued = intake.getQueue().size();
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        for (Semaphore capacity : reactiveLaneCapacity) {
+            queued += queueDepth - capacity.availablePermits();
+        }
+        return queued;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        intake.shutdownNow();
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdownNow();
+        }
+    }
+
+    private static int laneOf(String patientId, int laneCount) {
+        return Math.floorMod(patientId.hashCode(), laneCount);
+    }
+
+    private static ThreadPoolExecutor newBlockingExecutor(int threads, int queueDepth, String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth), threadFactory, (runnable, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor " + namePrefix + " has been shut down");
+            }
+            try {
+                executor.getQueue().put(runnable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for space in " + namePrefix, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package com.capable.physiciandss.flow;
+
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import org.hl7.fhir.r4.model.Coding;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Observations and active MedicationRequests of one patient, fetched once per enquiry evaluation, so every
+ * abstracted data item of the enquiry is answered from memory. Only views of the resources are kept.
+ */
+public class PatientSnapshot {
+
+    private final List<ObservationView> observations;
+    private final List<MedicationRequestView> medicationRequests;
+
+    public PatientSnapshot(List<ObservationView> observations, List<MedicationRequestView> medicationRequests) {
+        this.observations = observations;
+        this.medicationRequests = medicationRequests;
+    }
+
+    public List<ObservationView> getObservations() {
+        return observations;
+    }
+
+    public List<MedicationRequestView> getMedicationRequests() {
+        return medicationRequests;
+    }
+
+    private static String key(String system, String code) {
+        return system + '|' + code;
+    }
+
+    /**
+     * Union of codings the data items of an enquiry need, used to fetch the snapshot with one search per resource type,
+     * and the widest time window of the Observations they look at.
+     */
+    public static class Request {
+        private final Map<String, Coding> observationCodings = new LinkedHashMap<>();
+        private final Map<String, Coding> medicationRequestCodings = new LinkedHashMap<>();
+        private int observationWindowDays = -1;
+
+        public void requireObservation(String system, String code) {
+            observationCodings.putIfAbsent(key(system, code), new Coding(system, code, null));
+        }
+
+        /**
+         * Widens the window of the Observations to at least the last windowDays days, 0 means no limit.
+         */
+        public void requireObservationWindow(int windowDays) {
+            if (observationWindowDays != 0) {
+                observationWindowDays = windowDays == 0 ? 0 : Math.max(observationWindowDays, windowDays);
+            }
+        }
+
+        public void requireMedicationRequest(String system, String code) {
+            medicationRequestCodings.putIfAbsent(key(system, code), new Coding(system, code, null));
+        }
+
+        public Collection<Coding> getObservationCodings() {
+            return observationCodings.values();
+        }
+
+        public Collection<Coding> getMedicationRequestCodings() {
+            return medicationRequestCodings.values();
+        }
+
+        /**
+         * @return number of last days of Observations the data items need, 0 when they need all of them
+         */
+        public int getObservationWindowDays() {
+            return Math.max(observationWindowDays, 0);
+        }
+    }
+}
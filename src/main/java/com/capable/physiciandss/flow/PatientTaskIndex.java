@@ -0,0 +1,40 @@
+package com.capable.physiciandss.flow;
+
+import org.hl7.fhir.r4.model.*;
+
+import java.util.*;
+
+/**
+ * Open Tasks of one patient indexed by the coding of their focus resource. Built from the result of a
+ * Task search with _include=Task:focus, so looking up a Task together with its focus needs no further requests.
+ */
+public class PatientTaskIndex {
+
+    private final Map<String, Task> tasksByFocusCoding = new HashMap<>();
+
+    public PatientTaskIndex(List<Task> tasks) {
+        for (Task task : tasks) {
+            for (Coding coding : getFocusCodings(task.getFocus().getResource())) {
+                tasksByFocusCoding.putIfAbsent(key(coding.getSystem(), coding.getCode()), task);
+            }
+        }
+    }
+
+    public Optional<Task> findTask(String system, String code) {
+        return Optional.ofNullable(tasksByFocusCoding.get(key(system, code)));
+    }
+
+    private static List<Coding> getFocusCodings(Object focus) {
+        if (focus instanceof Observation) {
+            return ((Observation) focus).getCode().getCoding();
+        }
+        if (focus instanceof MedicationRequest && ((MedicationRequest) focus).hasMedicationCodeableConcept()) {
+            return ((MedicationRequest) focus).getMedicationCodeableConcept().getCoding();
+        }
+        return Collections.emptyList();
+    }
+
+    private static String key(String system, String code) {
+        return system + '|' + code;
+    }
+}
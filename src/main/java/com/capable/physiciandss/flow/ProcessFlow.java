@@ -1,224 +1,440 @@
 package com.capable.physiciandss.flow;
 
-import ca.uhn.fhir.context.FhirContext;
+import com.capable.physiciandss.hapi.FhirResources;
+import com.capable.physiciandss.hapi.MedicationRequestTemplateCache;
 import com.capable.physiciandss.model.deontics.get.Enactment;
 import com.capable.physiciandss.model.deontics.get.ItemData;
 import com.capable.physiciandss.model.deontics.get.PlanTask;
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import com.capable.physiciandss.rules.AbstractedDataRules;
+import com.capable.physiciandss.rules.PatientDayBuckets;
+import com.capable.physiciandss.rules.TemporalSymptomState;
 import com.capable.physiciandss.services.DeonticsRequestService;
+import com.capable.physiciandss.services.DreSessionManager;
+import com.capable.physiciandss.services.FhirGateway;
 import com.capable.physiciandss.services.GoComService;
-import com.capable.physiciandss.services.HapiRequestService;
+import com.capable.physiciandss.tracing.Span;
+import com.capable.physiciandss.tracing.Tracer;
 import com.capable.physiciandss.utils.OntologyCodingHandlingDeontics;
 import com.capable.physiciandss.utils.ReferenceHandling;
-import com.capable.physiciandss.utils.Utils;
+import com.capable.physiciandss.utils.TemporalSelection;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.hl7.fhir.r4.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static com.capable.physiciandss.utils.Constants.*;
 
+@Service
 public class ProcessFlow {
     protected static final Logger log =
             LoggerFactory.getLogger(ProcessFlow.class);
-    private final HapiRequestService hapiRequestService = new HapiRequestService();
-    private final DeonticsRequestService deonticsRequestService = new DeonticsRequestService();
-    private final GoComService goComService = new GoComService();
-
-    public void startProcessFlow() {
-        this.CheckCommunications();
-    }
-
-    private void CheckCommunications() {
-        ArrayList<Communication> communicationList = (ArrayList<Communication>) hapiRequestService
-                .getCommunicationList(Communication.CommunicationStatus.INPROGRESS);
-        if (!communicationList.isEmpty()) {
-            log.debug("[CheckCommunications]\tThere is some data to process!");
-            communicationList.forEach(
-                    communication -> hapiRequestService
-                            .updateCommunication(
-                                    communication, Communication.CommunicationStatus.COMPLETED
-                            ));
-
-            Set<String> alreadyProcessedPatients = new HashSet<>();
-            for (Communication communication : communicationList) {
-                handleCommunication(alreadyProcessedPatients, communication);
+    private final FhirGateway fhirGateway;
+    private final DeonticsRequestService deonticsRequestService;
+    private final GoComService goComService;
+    private final PatientPartitionedExecutor executor;
+    private final DreSessionManager dreSessionManager;
+    private final AbstractedDataRules abstractedDataRules;
+    private final TemporalSymptomState temporalSymptomState;
+    private final FlowMetrics flowMetrics;
+    private final Tracer tracer;
+    private final MedicationRequestTemplateCache medicationRequestTemplates;
+    private final long storedDataLookbackMs;
+
+    public ProcessFlow(FhirGateway fhirGateway, DeonticsRequestService deonticsRequestService,
+                       GoComService goComService, PatientPartitionedExecutor executor,
+                       DreSessionManager dreSessionManager, AbstractedDataRules abstractedDataRules,
+                       TemporalSymptomState temporalSymptomState, FlowMetrics flowMetrics, Tracer tracer,
+                       MedicationRequestTemplateCache medicationRequestTemplates,
+                       @Value("${phdss.flow.stored-data-lookback-days:0}") int storedDataLookbackDays) {
+        this.fhirGateway = fhirGateway;
+        this.deonticsRequestService = deonticsRequestService;
+        this.goComService = goComService;
+        this.executor = executor;
+        this.dreSessionManager = dreSessionManager;
+        this.abstractedDataRules = abstractedDataRules;
+        this.temporalSymptomState = temporalSymptomState;
+        this.flowMetrics = flowMetrics;
+        this.tracer = tracer;
+        this.medicationRequestTemplates = medicationRequestTemplates;
+        this.storedDataLookbackMs = TimeUnit.DAYS.toMillis(storedDataLookbackDays);
+    }
+
+    /**
+     * Marks given communications as completed in one batch and processes those which were updated.
+     *
+     * Communications whose update failed are read again: the update may have been applied even though its
+     * response was lost, or they were changed since they were read (412). Those completed by this claim are
+     * processed, those still in progress are retried with their current version, and those completed by
+     * someone else, e.g. by a rest-hook notification, are dropped.
+     *
+     * @return communications whose status could not be updated, they should be retried later
+     */
+    public List<Communication> processCommunications(List<Communication> communicationList) {
+        if (communicationList.isEmpty()) {
+            log.debug("[processCommunications]\tThere isn't any data to process!");
+            return Collections.emptyList();
+        }
+        log.debug("[processCommunications]\tThere is some data to process!");
+        List<EntryOutcome> outcomes = fhirGateway
+                .updateCommunications(communicationList, Communication.CommunicationStatus.COMPLETED)
+                .block();
+        List<Communication> acknowledged = new ArrayList<>();
+        List<Communication> failed = new ArrayList<>();
+        for (int i = 0; i < communicationList.size(); i++) {
+            Communication communication = communicationList.get(i);
+            if (outcomes.get(i).isSuccessful()) {
+                acknowledged.add(communication);
+                continue;
+            }
+            log.debug("[processCommunications]\tCould not update communication " + outcomes.get(i).getResourceId()
+                    + ", status: " + outcomes.get(i).getStatus() + ", diagnostics: " + outcomes.get(i).getDiagnostics());
+            Optional<Communication> current = fhirGateway
+                    .getCommunication(communication.getIdElement().getIdPart())
+                    .onErrorResume(readException -> {
+                        log.warn("[processCommunications]\tCould not read communication " + communication.getIdElement().getIdPart()
+                                + " again, it will be retried: " + readException.getMessage());
+                        return Mono.empty();
+                    })
+                    .blockOptional();
+            if (!current.isPresent()) {
+                failed.add(communication);
+            } else if (FhirResources.isClaimedBy(current.get(), communication)) {
+                acknowledged.add(communication);
+            } else if (Communication.CommunicationStatus.INPROGRESS.equals(current.get().getStatus())) {
+                failed.add(current.get());
+            } else {
+                log.debug("[processCommunications]\tCommunication " + outcomes.get(i).getResourceId()
+                        + " has already been claimed");
+            }
+        }
+
+        Set<String> alreadyProcessedPatients = ConcurrentHashMap.newKeySet();
+        CompletableFuture.allOf(acknowledged.stream()
+                .map(communication -> handleCommunication(alreadyProcessedPatients, communication))
+                .toArray(CompletableFuture[]::new))
+                .join();
+        return failed;
+    }
+
+    /**
+     * Claims and processes the notified communication.
+     *
+     * @return whether this notification claimed the communication
+     */
+    public boolean handleNotifiedCommunication(String communicationId) {
+        Communication communication = fhirGateway.getCommunication(communicationId).block();
+        if (Communication.CommunicationStatus.INPROGRESS.equals(communication.getStatus())) {
+            log.debug("[handleNotifiedCommunication]\tReceived notification about communication with id: " + communicationId);
+            Boolean claimed = fhirGateway
+                    .updateCommunication(communication, Communication.CommunicationStatus.COMPLETED)
+                    .onErrorResume(updateException -> {
+                        log.debug("[handleNotifiedCommunication]\tOutcome of the update of communication with id: "
+                                + communicationId + " is unknown, reading it again: " + updateException.getMessage());
+                        return fhirGateway.getCommunication(communicationId)
+                                .map(current -> FhirResources.isClaimedBy(current, communication));
+                    })
+                    .block();
+            if (Boolean.TRUE.equals(claimed)) {
+                handleCommunication(ConcurrentHashMap.newKeySet(), communication);
+                return true;
             }
+            log.debug("[handleNotifiedCommunication]\tCommunication with id: " + communicationId
+                    + " has already been claimed");
         } else {
-            log.debug("[CheckCommunications]\tThere isn't any data to process!");
+            log.debug("[handleNotifiedCommunication]\tCommunication with id: " + communicationId + " was already processed");
         }
+        return false;
     }
 
-    private void handleCommunication(Set<String> alreadyProcessedPatients, Communication communication) {
+    /**
+     * Processes the communication in a new trace, with the intake and the processing of its patient as spans.
+     */
+    private CompletableFuture<Void> handleCommunication(Set<String> alreadyProcessedPatients,
+                                                        Communication communication) {
+        Span communicationSpan = tracer.newTrace("communication")
+                .tag("communication.id", communication.getIdElement().toUnqualifiedVersionless().getValue());
+        return executor
+                .supplyOnIntake(() -> tracer.inScope(communicationSpan, () -> tracer.withSpan(communicationSpan,
+                        tracer.trace("intake", flowMetrics.time(FlowMetrics.INTAKE, resolvePatientId(communication))))
+                        .blockOptional()))
+                .thenCompose(patientId -> {
+                    if (!patientId.isPresent() || !alreadyProcessedPatients.add(patientId.get())) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    communicationSpan.tag("patient.id", patientId.get());
+                    boolean ifNewPatient = "Patient".equals(communication.getPayloadFirstRep().getContentReference().getType());
+                    return executor.submitProcessing(patientId.get(), () -> tracer.withSpan(communicationSpan,
+                            tracer.trace("patient", flowMetrics.timePatient(ifNewPatient
+                                    ? handleNewPatient(patientId.get())
+                                    : handlePatient(patientId.get())))));
+                })
+                .exceptionally(exception -> tracer.inScope(communicationSpan, () -> {
+                    log.debug("[handleCommunication]\tProcessing of communication failed: " + exception.getMessage());
+                    communicationSpan.tag("error", String.valueOf(exception.getMessage()));
+                    return null;
+                }))
+                .whenComplete((ignored, exception) -> tracer.finish(communicationSpan));
+    }
+
+    private Mono<String> resolvePatientId(Communication communication) {
         if (!communication.getPayload().isEmpty()) {
             String payloadType = communication.getPayload().get(0).getContentReference().getType();
             Reference payloadResourceReference = communication.getPayload().get(0).getContentReference();
-            Optional<String> patientId;
             switch (payloadType) {
                 case "Observation":
-                    patientId = Optional.ofNullable(hapiRequestService.
-                            getObservation(payloadResourceReference.getReference()).
-                            getSubject().
-                            getReference());
-                    log.debug("[handleCommunication]\tFound new observation for patient with id: " + patientId);
-                    if (patientId.isPresent() && !alreadyProcessedPatients.contains(patientId.get())) {
-                        alreadyProcessedPatients.add(patientId.get());
-                        patientId.ifPresent(this::handlePatient);
-                    }
-                    break;
+                    return fhirGateway
+                            .getObservation(payloadResourceReference.getReference())
+                            .flatMap(observation -> Mono.justOrEmpty(observation.getSubject().getReference())
+                                    .doOnNext(patientId -> temporalSymptomState.onObservation(patientId, observation)))
+                            .doOnEach(Tracer.onNextWithMdc(patientId -> log.debug("[handleCommunication]\tFound new observation for patient with id: " + patientId)));
                 case "MedicationRequest":
-                    patientId = Optional.ofNullable(hapiRequestService.
-                            getMedicationRequest(payloadResourceReference.getReference()).
-                            getSubject().
-                            getReference());
-                    log.debug("[handleCommunication]\tFound change in Medication Request for patient with id: " + patientId);
-                    if (patientId.isPresent() && !alreadyProcessedPatients.contains(patientId.get())) {
-                        alreadyProcessedPatients.add(patientId.get());
-                        patientId.ifPresent(this::handlePatient);
-                    }
-                    break;
+                    return fhirGateway
+                            .getMedicationRequest(payloadResourceReference.getReference())
+                            .flatMap(medicationRequest -> Mono.justOrEmpty(medicationRequest.getSubject().getReference()))
+                            .doOnEach(Tracer.onNextWithMdc(patientId -> log.debug("[handleCommunication]\tFound change in Medication Request for patient with id: " + patientId)));
                 case "Patient":
-                    patientId = Optional.of(payloadResourceReference.getReference());
-                    if (!alreadyProcessedPatients.contains(patientId.get())) {
-                        log.debug("[handleCommunication]\tFound information about new Patient with id: " + patientId);
-                        alreadyProcessedPatients.add(patientId.get());
-                        patientId.ifPresent(this::handleNewPatient);
-                    }
-                    break;
+                    log.debug("[handleCommunication]\tFound information about new Patient with id: " + payloadResourceReference.getReference());
+                    return Mono.justOrEmpty(payloadResourceReference.getReference());
                 default:
                     log.debug(SCHEDULER_TASK_BAD_PAYLOAD_TYPE);
             }
         } else {
             log.debug("[handleCommunication]\tPayload is missing");
         }
+        return Mono.empty();
     }
 
-    private void handleNewPatient(String patientId) {
-        deonticsRequestService
+    private Mono<Void> handleNewPatient(String patientId) {
+        return deonticsRequestService
                 .getPathwayByName(META_GUIDELINE_NAME)
-                .subscribe(pathways -> {
+                .flatMap(pathways -> Tracer.deferWithMdc(() -> {
                     if (pathways.length < 1) {
                         log.debug("[handleNewPatient]\tMeta guideline is missing");
-                    } else {
-                        deonticsRequestService
-                                .postEnact(META_GUIDELINE_NAME + ".pf", patientId)
-                                .subscribe(postEnactResult -> deonticsRequestService
-                                        .getEnactmentsByEnactmentId(postEnactResult.getEnactmentid())
-                                        .subscribe(
-                                                enactments -> handleEnactment(enactments[0], patientId), getEnactException -> {
-                                                }), postEnactException -> {
-                                });
+                        return Mono.<Void>empty();
                     }
-                }, pathwayException -> {
-                });
+                    return deonticsRequestService
+                            .postEnact(META_GUIDELINE_NAME + ".pf", patientId)
+                            .flatMap(postEnactResult -> deonticsRequestService
+                                    .getEnactmentsByEnactmentId(postEnactResult.getEnactmentid())
+                                    .flatMap(enactments -> handleEnactment(enactments[0], patientId))
+                                    .onErrorResume(dropped("getEnactmentsByEnactmentId")))
+                            .onErrorResume(dropped("postEnact"));
+                }))
+                .onErrorResume(dropped("getPathwayByName"));
     }
 
-    private void handlePatient(String patientId) {
-        deonticsRequestService
+    private Mono<Void> handlePatient(String patientId) {
+        return deonticsRequestService
                 .getEnactmentsByPatientId(patientId)
-                .subscribe(enactments -> {
+                .flatMap(enactments -> {
                     if (enactments.length == 0) {
-                        handleNewPatient(patientId);
-                    } else {
-                        for (Enactment enactment : enactments
-                        ) {
-                            handleEnactment(enactment, patientId);
-                        }
+                        return handleNewPatient(patientId);
                     }
-                }, enactmentException -> {
-                });
+                    return Flux.fromArray(enactments)
+                            .flatMap(enactment -> handleEnactment(enactment, patientId))
+                            .then();
+                })
+                .onErrorResume(dropped("getEnactmentsByPatientId"));
     }
 
-    private void handleEnactment(Enactment enactment, String patientId) {
-        deonticsRequestService
-                .getConnect(enactment.getId())
-                .subscribe(
-                        connect -> handleTasks(
-                                enactment.getId(), patientId, connect.getDresessionid(), Optional.empty()
-                        ), connectionException -> {
-                        });
+    private Mono<Void> handleEnactment(Enactment enactment, String patientId) {
+        return dreSessionManager
+                .getSessionId(enactment.getId())
+                .flatMap(dreSessionId -> handleTasks(
+                        enactment.getId(), patientId, dreSessionId, Optional.empty()))
+                .onErrorResume(dropped("getSessionId"));
     }
 
-    private void handleTasks(String enactmentId, String patientId,
-                             String dreSessionId, Optional<PlanTask[]> alreadyProcessedTasks) {
-        deonticsRequestService
-                .getPlanTasks(DEONTICS_IN_PROGRESS_STATUS, dreSessionId)
-                .subscribe(tasks -> {
+    private Mono<Void> handleTasks(String enactmentId, String patientId,
+                                   String dreSessionId, Optional<PlanTask[]> alreadyProcessedTasks) {
+        return withSession(enactmentId, deonticsRequestService
+                .getPlanTasks(DEONTICS_IN_PROGRESS_STATUS, dreSessionId))
+                .flatMap(tasks -> {
                     if (tasks.length == 0) {
-                        deonticsRequestService
-                                .putEnactmentDelete(enactmentId, dreSessionId)
-                                .subscribe(
-                                        enactmentDeleteOutput -> {
-                                            if (enactmentDeleteOutput.getDeleted().equals("true")) {
-                                                log.debug("[handleTasks]\tEnactment was deleted");
-                                            } else {
-                                                log.debug("[handleTasks]\tDeletion of Enactment was unsuccessful");
-                                            }
-                                        }, enactmentDeleteException -> {
-                                        });
-                    } else {
-                        for (PlanTask task : tasks) {
-                            if (!alreadyProcessedTasks.isPresent() || Arrays.stream(alreadyProcessedTasks.get()).
-                                    noneMatch(planTask -> planTask.getName().equals(task.getName())))
-                                handleTask(enactmentId, patientId, tasks, dreSessionId, task);
-                        }
+                        return withSession(enactmentId, deonticsRequestService
+                                .putEnactmentDelete(enactmentId, dreSessionId))
+                                .doOnEach(Tracer.onNextWithMdc(enactmentDeleteOutput -> {
+                                    if (enactmentDeleteOutput.getDeleted().equals("true")) {
+                                        log.debug("[handleTasks]\tEnactment was deleted");
+                                        dreSessionManager.invalidate(enactmentId);
+                                    } else {
+                                        log.debug("[handleTasks]\tDeletion of Enactment was unsuccessful");
+                                    }
+                                }))
+                                .then()
+                                .onErrorResume(dropped("putEnactmentDelete"));
                     }
-                }, planTasksException -> {
+                    return Flux.fromArray(tasks)
+                            .filter(task -> !alreadyProcessedTasks.isPresent() || Arrays.stream(alreadyProcessedTasks.get()).
+                                    noneMatch(planTask -> planTask.getName().equals(task.getName())))
+                            .flatMap(task -> tracer.trace("task " + task.getName(),
+                                    handleTask(enactmentId, patientId, tasks, dreSessionId, task)))
+                            .then();
+                })
+                .onErrorResume(dropped("getPlanTasks"));
+    }
+
+    /**
+     * Skips the rest of a step which failed, so the other steps of the patient still run. The failure is logged
+     * with the ids of the trace, tagged on the current span and counted.
+     */
+    private <T> Function<Throwable, Mono<T>> dropped(String step) {
+        return exception -> Mono.subscriberContext().flatMap(context -> {
+            Tracer.spanOf(context).ifPresent(span -> span.tag("error", step + ": " + exception.getMessage()));
+            Tracer.withMdc(context, () -> log.warn("[" + step + "]\tRequest failed, skipping the rest of the step: "
+                    + exception.getMessage()));
+            flowMetrics.countDropped(step, exception);
+            return Mono.<T>empty();
+        });
+    }
+
+    /**
+     * Drops the cached DRE session of the enactment when DRE rejects a request made with it.
+     */
+    private <T> Mono<T> withSession(String enactmentId, Mono<T> dreRequest) {
+        return dreRequest.doOnError(exception -> dreSessionManager.invalidateOnSessionError(enactmentId, exception));
+    }
+
+    private Mono<Void> handleTask(String enactmentId, String patientId, PlanTask[] tasks,
+                                  String dreSessionId, PlanTask task) {
+        return Tracer.deferWithMdc(() -> {
+            switch (task.getType()) {
+                case DEONTICS_ENQUIRY_TASK_TYPE:
+                    log.debug("[handleTask]\tFound " + DEONTICS_ENQUIRY_TASK_TYPE + " task to process");
+                    return handleEnquiryTask(enactmentId, task, tasks, dreSessionId, patientId);
+                case DEONTICS_ACTION_TASK_TYPE:
+                    log.debug("[handleTask]\tFound " + DEONTICS_ACTION_TASK_TYPE + " task to process");
+                    return handleActionTask(enactmentId, task, tasks, dreSessionId, patientId);
+                default:
+                    log.debug("[handleTask]\t" + SCHEDULER_TASK_BAD_DEONTIC_TASKS_TYPE);
+                    return Mono.empty();
+            }
+        });
+    }
+
+    private Mono<Void> handleEnquiryTask(String enactmentId, PlanTask task, PlanTask[] tasks,
+                                         String dreSessionId, String patientId) {
+        return flowMetrics.time(FlowMetrics.ENQUIRY, withSession(enactmentId, deonticsRequestService
+                .getData(task.getName(), dreSessionId))
+                .flatMap(itemDataList -> evaluateItemData(patientId, itemDataList))
+                .flatMap(dataItemToValueMap -> withSession(enactmentId,
+                        deonticsRequestService.putDataValues(dataItemToValueMap, dreSessionId))))
+                .flatMap(dataValuesOutput -> tryToFinishTask(enactmentId, task, tasks, dreSessionId, patientId))
+                .onErrorResume(dropped("enquiry"));
+    }
+
+    /**
+     * Values of the data items of an enquiry for the patient, keyed by data item name. Items without a value
+     * are left out.
+     */
+    Mono<HashMap<String, String>> evaluateItemData(String patientId, ItemData[] itemDataList) {
+        List<String> abstractedConcepts = getAbstractedConcepts(itemDataList);
+        return Mono.zip(
+                loadPatientSnapshot(patientId, itemDataList),
+                loadReportedDataTaskIndex(patientId, itemDataList),
+                abstractedDataRules.needsDayBuckets(abstractedConcepts)
+                        ? temporalSymptomState.getDayBuckets(patientId)
+                        : Mono.just(new PatientDayBuckets()))
+                .flatMap(patientData -> {
+                    Map<String, String> abstractedValues = abstractedDataRules.evaluate(
+                            patientData.getT1(), patientData.getT3(), abstractedConcepts, new Date());
+                    return Flux.fromArray(itemDataList)
+                            .concatMap(itemData -> Tracer.deferWithMdc(() -> handleItemData(patientId, itemData,
+                                    abstractedValues, patientData.getT2()))
+                                    .map(value -> Tuples.of(itemData.getName(), value)))
+                            .collect(HashMap<String, String>::new, (dataItemToValueMap, itemValue) ->
+                                    dataItemToValueMap.put(itemValue.getT1(), itemValue.getT2()));
                 });
     }
 
-    private void handleTask(String enactmentId, String patientId, PlanTask[] tasks,
-                            String dreSessionId, PlanTask task) {
-        switch (task.getType()) {
-            case DEONTICS_ENQUIRY_TASK_TYPE:
-                log.debug("[handleTask]\tFound " + DEONTICS_ENQUIRY_TASK_TYPE + " task to process");
-                handleEnquiryTask(enactmentId, task, tasks, dreSessionId, patientId);
-                break;
-            case DEONTICS_ACTION_TASK_TYPE:
-                log.debug("[handleTask]\tFound " + DEONTICS_ACTION_TASK_TYPE + " task to process");
-                handleActionTask(enactmentId, task, tasks, dreSessionId, patientId);
-                break;
-            default:
-                log.debug("[handleTask]\t" + SCHEDULER_TASK_BAD_DEONTIC_TASKS_TYPE);
-                break;
+    /**
+     * Fetches everything the abstracted data items of an enquiry need with at most one Observation
+     * and one MedicationRequest search, instead of one search per data item.
+     */
+    private Mono<PatientSnapshot> loadPatientSnapshot(String patientId, ItemData[] itemDataList) {
+        PatientSnapshot.Request request = new PatientSnapshot.Request();
+        for (ItemData itemData : itemDataList) {
+            addSnapshotRequirements(itemData, request);
         }
+        Mono<List<ObservationView>> observations = request.getObservationCodings().isEmpty()
+                ? Mono.just(Collections.emptyList())
+                : fhirGateway.getObservationViews(patientId, request.getObservationCodings(),
+                request.getObservationWindowDays() == 0 ? null : new Date(System.currentTimeMillis()
+                        - TimeUnit.DAYS.toMillis(request.getObservationWindowDays())));
+        Mono<List<MedicationRequestView>> medicationRequests = request.getMedicationRequestCodings().isEmpty()
+                ? Mono.just(Collections.emptyList())
+                : fhirGateway.getMedicationRequestViews(patientId, request.getMedicationRequestCodings(),
+                MedicationRequest.MedicationRequestStatus.ACTIVE);
+        return Mono.zip(observations, medicationRequests)
+                .map(resources -> new PatientSnapshot(resources.getT1(), resources.getT2()));
     }
 
-    private void handleEnquiryTask(String enactmentId, PlanTask task, PlanTask[] tasks,
-                                   String dreSessionId, String patientId) {
-        deonticsRequestService
-                .getData(task.getName(), dreSessionId)
-                .subscribe(itemDataList -> {
-                    HashMap<String, String> dataItemToValueMap = new HashMap<>();
-                    for (ItemData itemData : itemDataList) {
-                        Optional<String> value = handleItemData(patientId, itemData);
-                        value.ifPresent(s -> dataItemToValueMap.put(itemData.getName(), s));
-                    }
-                    deonticsRequestService.putDataValues(dataItemToValueMap, dreSessionId).subscribe(
-                            dataValuesOutput -> tryToFinishTask(enactmentId, task, tasks, dreSessionId, patientId)
-                    );
-                }, getDataException -> {
-                });
+    private Mono<PatientTaskIndex> loadReportedDataTaskIndex(String patientId, ItemData[] itemDataList) {
+        for (ItemData itemData : itemDataList) {
+            JsonNode source = itemData.getMetaprops().findValue("source");
+            if (source != null && "reported".equals(source.asText())) {
+                return fhirGateway
+                        .getTaskListWithFocus(patientId, Task.TaskStatus.REQUESTED, "Observation")
+                        .map(PatientTaskIndex::new);
+            }
+        }
+        return Mono.just(new PatientTaskIndex(Collections.emptyList()));
     }
 
-    private Optional<String> handleItemData(String patientId, ItemData itemData) {
-        Optional<String> value = Optional.empty();
+    private void addSnapshotRequirements(ItemData itemData, PatientSnapshot.Request request) {
+        JsonNode metaProperties = itemData.getMetaprops();
+        if (metaProperties.findValue("source") == null || metaProperties.findValue("ontology.coding") == null) {
+            return;
+        }
+        OntologyCodingHandlingDeontics codingHandling =
+                new OntologyCodingHandlingDeontics(metaProperties.get("ontology.coding").asText());
+        if ("abstracted".equals(metaProperties.get("source").asText())) {
+            abstractedDataRules.addRequirements(codingHandling.getSystem(), codingHandling.getCode(), request);
+        }
+    }
+
+    private List<String> getAbstractedConcepts(ItemData[] itemDataList) {
+        List<String> concepts = new ArrayList<>();
+        for (ItemData itemData : itemDataList) {
+            JsonNode metaProperties = itemData.getMetaprops();
+            if (metaProperties.findValue("source") != null && "abstracted".equals(metaProperties.get("source").asText())
+                    && metaProperties.findValue("ontology.coding") != null) {
+                OntologyCodingHandlingDeontics codingHandling =
+                        new OntologyCodingHandlingDeontics(metaProperties.get("ontology.coding").asText());
+                concepts.add(AbstractedDataRules.key(codingHandling.getSystem(), codingHandling.getCode()));
+            }
+        }
+        return concepts;
+    }
+
+    private Mono<String> handleItemData(String patientId, ItemData itemData, Map<String, String> abstractedValues,
+                                        PatientTaskIndex reportedDataTasks) {
         JsonNode metaProperties = itemData.getMetaprops();
         if (metaProperties.findValue("source") != null) {
             switch (metaProperties.get("source").asText()) {
                 case "stored":
                     log.debug("[handleItemData]\tFound stored data item to process");
-                    value = handleStoredData(itemData, patientId);
-                    break;
+                    return handleStoredData(itemData, patientId);
                 case "abstracted":
                     log.debug("[handleItemData]\tFound abstracted data item to process");
-                    value = handleAbstractedData(itemData, patientId);
-                    break;
+                    return handleAbstractedData(itemData, patientId, abstractedValues);
                 case "reported":
                     log.debug("[handleItemData]\tFound reported data item to process");
-                    value = handleReportedData(itemData, patientId);
-                    break;
+                    return handleReportedData(itemData, patientId, reportedDataTasks);
                 default:
                     log.debug("[handleItemData]\tUnknown source type");
                     break;
@@ -226,152 +442,67 @@ public class ProcessFlow {
         } else {
             log.debug("[handleItemData]\tMissing source node");
         }
-        return value;
+        return Mono.empty();
     }
 
-    private Optional<String> handleReportedData(ItemData itemData,
-                                                String patientId) {
+    private Mono<String> handleReportedData(ItemData itemData,
+                                            String patientId, PatientTaskIndex reportedDataTasks) {
         JsonNode metaProperties = itemData.getMetaprops();
         if (metaProperties.findValue("ontology.coding") != null) {
             String ontologyCodingDeon = metaProperties.get("ontology.coding").asText();
             OntologyCodingHandlingDeontics ontologyCoding = new OntologyCodingHandlingDeontics(ontologyCodingDeon);
-            boolean ifTaskAlreadyExists = false;
-            ArrayList<Task> tasks = (ArrayList<Task>) hapiRequestService.getTaskList(Task.TaskStatus.REQUESTED);
-            for (Task task : tasks) {
-                if (task.getFor().getReference().equals(patientId)) {
-                    if (task.getFocus().getType().equals("Observation")) {
-                        Observation observation = hapiRequestService
-                                .getObservation(task.getFocus().getReference());
-                        Coding observationCoding = observation.getCode().getCodingFirstRep();
-                        Coding ontologyCoding_ = ontologyCoding.getCoding();
-                        if (Utils.isCodingMatching(
-                                observationCoding.getCode(), ontologyCoding_.getCode(),
-                                observationCoding.getSystem(), ontologyCoding_.getSystem()
-                        )) {
-                            log.debug("[handleReportedData]\tTask with given code already exist");
-                            ifTaskAlreadyExists = true;
-                            if (observation.getStatus().equals(Observation.ObservationStatus.REGISTERED)) {
-                                log.debug("[handleReportedData]\tObservation affiliated with task has been filled");
-                                hapiRequestService.updateTask(task, Task.TaskStatus.COMPLETED);
-                                return Optional.of(observation.getValueQuantity().getValue().toPlainString());
-                            }
-                            break;
-                        }
-                    }
-                }
+            Coding ontologyCoding_ = ontologyCoding.getCoding();
+            Optional<Task> existingTask = reportedDataTasks.findTask(ontologyCoding_.getSystem(), ontologyCoding_.getCode());
+            if (!existingTask.isPresent()) {
+                return ifReportedDataTaskDoesntExist(patientId, ontologyCoding).then(Mono.empty());
             }
-            if (!ifTaskAlreadyExists) {
-                ifReportedDataTaskDoesntExist(patientId, ontologyCoding);
+            log.debug("[handleReportedData]\tTask with given code already exist");
+            Task task = existingTask.get();
+            Observation observation = (Observation) task.getFocus().getResource();
+            if (observation.getStatus().equals(Observation.ObservationStatus.REGISTERED)) {
+                log.debug("[handleReportedData]\tObservation affiliated with task has been filled");
+                return fhirGateway.updateTask(task, Task.TaskStatus.COMPLETED)
+                        .then(Mono.just(observation.getValueQuantity().getValue().toPlainString()));
             }
+            return Mono.empty();
         } else {
             log.debug("[handleReportedData]\tMissing ontology.coding in metaProperties");
         }
-        return Optional.empty();
+        return Mono.empty();
     }
 
-    private void ifReportedDataTaskDoesntExist(String patientId, OntologyCodingHandlingDeontics ontologyCoding) {
+    private Mono<Void> ifReportedDataTaskDoesntExist(String patientId, OntologyCodingHandlingDeontics ontologyCoding) {
         log.debug("[ifReportedDataTaskDoesntExist]\tTask with given code doesnt exist");
         Coding coding = ontologyCoding.getCoding();
-        String observationId = hapiRequestService
-                .createObservation(coding.getSystem(), coding.getCode(), Observation.ObservationStatus.PRELIMINARY);
-        hapiRequestService
-                .createTask(new ReferenceHandling(patientId).getReference(), new ReferenceHandling(observationId).getReference());
-        hapiRequestService
-                .createCommunication(Communication.CommunicationStatus.PREPARATION, observationId);
-        log.debug("[ifReportedDataTaskDoesntExist]\tPut communication resource with reference at medication request in HAPI FHIR");
+        return fhirGateway
+                .createObservation(coding.getSystem(), coding.getCode(), Observation.ObservationStatus.PRELIMINARY)
+                .flatMap(observationId -> fhirGateway
+                        .createTask(new ReferenceHandling(patientId).getReference(), new ReferenceHandling(observationId).getReference())
+                        .then(fhirGateway.createCommunication(Communication.CommunicationStatus.PREPARATION, observationId)))
+                .doOnEach(Tracer.onNextWithMdc(communicationId -> log.debug("[ifReportedDataTaskDoesntExist]\tPut communication resource with reference at medication request in HAPI FHIR")))
+                .then();
     }
 
-    private Optional<String> handleAbstractedData(ItemData itemData, String patientId) {
+    private Mono<String> handleAbstractedData(ItemData itemData, String patientId, Map<String, String> abstractedValues) {
         JsonNode metaProperties = itemData.getMetaprops();
         if (metaProperties.findValue("ontology.coding") != null) {
             String ontologyCoding = metaProperties.get("ontology.coding").asText();
             OntologyCodingHandlingDeontics codingHandling = new OntologyCodingHandlingDeontics(ontologyCoding);
-            String itemDataValue = "0";
-            DateTimeType yesterdayDate = Utils.getDateBeforeCurrentDate(1);
-            DateTimeType twoDaysAgoDate = Utils.getDateBeforeCurrentDate(2);
-            DateTimeType threeDaysAgoDate = Utils.getDateBeforeCurrentDate(3);
-            if (SNOMED_CODING_HAPI.equals(codingHandling.getSystem())) {
-                switch (codingHandling.getCode()) {
-                    case IMMUNOTHERAPY_CODE:
-                        log.debug("[handleAbstractedData]\tFound immunotherapy case for patient with id: " + patientId);
-                        return handleOnImmunotherapy(patientId, itemDataValue);
-                    case COMPLICATED_DIARRHEA_CODE:
-                        log.debug("[handleAbstractedData]\tFound complicated diarrhea case for patient with id: " + patientId);
-                        return handleComplicatedDiarrhea(patientId, itemDataValue,
-                                yesterdayDate);
-                    case PERSISTENT_DIARRHEA_CODE:
-                        log.debug("[handleAbstractedData]\tFound persistent diarrhea case for patient with id: " + patientId);
-                        return handlePersistentDiarrhea(patientId, itemDataValue,
-                                yesterdayDate, twoDaysAgoDate, threeDaysAgoDate);
-                    default:
-                        log.debug("[handleAbstractedData]\tUnknown code value");
-                        break;
-                }
-            } else {
-                log.debug("[handleAbstractedData]\tUnknown coding system");
+            String value = abstractedValues.get(AbstractedDataRules.key(codingHandling.getSystem(), codingHandling.getCode()));
+            if (value != null) {
+                log.debug("[handleAbstractedData]\tEvaluated rule for " + codingHandling.getCode()
+                        + " for patient with id: " + patientId);
+                return Mono.just(value);
             }
+            log.debug("[handleAbstractedData]\tNo rule for coding " + ontologyCoding);
         } else {
             log.debug("[handleAbstractedData]\tMissing ontology.coding in metaProperties");
         }
-        return Optional.empty();
-    }
-
-    private Optional<String> handlePersistentDiarrhea(String patientId, String itemDataValue,
-                                                      DateTimeType yesterdayDate, DateTimeType twoDaysAgo,
-                                                      DateTimeType threeDaysAgo) {
-        boolean ifCurrentDay = false;
-        boolean ifYesterday = false;
-        boolean ifTwoDaysAgo = false;
-        ArrayList<Observation> observationList = (ArrayList<Observation>) hapiRequestService.
-                getObservationList(patientId, SNOMED_CODING_HAPI, DIARRHEA_SYMPTOMS_CODE);
-        for (Observation observation : observationList) {
-            DateTimeType observationDate = observation.getEffectiveDateTimeType();
-            if (!ifCurrentDay
-                    && observationDate.after(yesterdayDate)) {
-                ifCurrentDay = true;
-            } else if (!ifYesterday
-                    && Utils.isBetweenDates(observationDate, yesterdayDate, twoDaysAgo)) {
-                ifYesterday = true;
-            } else if (!ifTwoDaysAgo
-                    && Utils.isBetweenDates(observationDate, twoDaysAgo, threeDaysAgo)) {
-                ifTwoDaysAgo = true;
-            }
-            if (ifCurrentDay && ifTwoDaysAgo && ifYesterday) {
-                itemDataValue = "1";
-                break;
-            }
-        }
-        return Optional.of(itemDataValue);
-    }
-
-    private Optional<String> handleComplicatedDiarrhea(String patientId, String itemDataValue, DateTimeType yesterdayDate) {
-        ArrayList<Observation> observations = (ArrayList<Observation>) hapiRequestService.
-                getObservationList(patientId, SNOMED_CODING_HAPI, STRONG_DIARRHEA_SYMPTOMS_CODE);
-        observations.addAll(hapiRequestService.
-                getObservationList(patientId, SNOMED_CODING_HAPI, DIARRHEA_SYMPTOMS_CODE));
-        for (Observation observation : observations) {
-            if (observation.getEffectiveDateTimeType().after(yesterdayDate)) {
-                itemDataValue = "1";
-                break;
-            }
-        }
-        return Optional.of(itemDataValue);
-
+        return Mono.empty();
     }
 
-    private Optional<String> handleOnImmunotherapy(String patientId, String itemDataValue) {
-        ArrayList<MedicationRequest> medicationRequests = (ArrayList<MedicationRequest>) hapiRequestService
-                .getMedicationRequestList(patientId, SNOMED_CODING_HAPI, SUNITIB_CODE, MedicationRequest.MedicationRequestStatus.ACTIVE);
-        medicationRequests.addAll(hapiRequestService
-                .getMedicationRequestList(patientId, SNOMED_CODING_HAPI, NIVOLUMAB_CODE, MedicationRequest.MedicationRequestStatus.ACTIVE));
-        if (Utils.getNewestMedicationRequestFromList(medicationRequests).isPresent())
-            itemDataValue = "1";
-        return Optional.of(itemDataValue);
-
-    }
-
-    private Optional<String> handleStoredData(ItemData itemData,
-                                              String patientId) {
+    private Mono<String> handleStoredData(ItemData itemData,
+                                          String patientId) {
         JsonNode metaProperties = itemData.getMetaprops();
         if (metaProperties.findValue("resourceType") != null) {
             if (metaProperties.findValue("ontology.coding") != null) {
@@ -393,46 +524,45 @@ public class ProcessFlow {
         } else {
             log.debug("[handleStoredData]\tMissing resourceType in metaProperties");
         }
-        return Optional.empty();
+        return Mono.empty();
     }
 
-    private Optional<String> handleStoredMedicationRequestData(String patientId, String system, String code) {
-        ArrayList<MedicationRequest> medicationRequests = (ArrayList<MedicationRequest>) hapiRequestService.
-                getMedicationRequestList(patientId, system, code, MedicationRequest.MedicationRequestStatus.ACTIVE);
-        Optional<MedicationRequest> medicationRequest =
-                Utils.getNewestMedicationRequestFromList(medicationRequests);
-        String value = "0";
-        if (medicationRequest.isPresent()) {
-            value = "1";
-        }
-        return Optional.of(value);
+    /**
+     * "1" when the dosage which ends latest among the patient's active MedicationRequests with the coding is
+     * running now. Dosage bounds cannot be sorted on by the server, so all of them are fetched as views.
+     */
+    private Mono<String> handleStoredMedicationRequestData(String patientId, String system, String code) {
+        return fhirGateway
+                .getMedicationRequestViews(patientId, Collections.singletonList(new Coding(system, code, null)),
+                        MedicationRequest.MedicationRequestStatus.ACTIVE)
+                .map(medicationRequests -> TemporalSelection.latestDosageBounds(medicationRequests)
+                        .filter(period -> TemporalSelection.isRunning(period, System.currentTimeMillis()))
+                        .isPresent() ? "1" : "0")
+                .defaultIfEmpty("0");
+    }
 
+    private Mono<String> handleStoredObservationData(String patientId, String system, String code) {
+        return fhirGateway
+                .getLatestObservation(patientId, system, code, getStoredDataNotBefore())
+                .map(observation -> observation.getValueQuantity().getValue().toPlainString())
+                .defaultIfEmpty("");
     }
 
-    private Optional<String> handleStoredObservationData(String patientId, String system, String code) {
-        ArrayList<Observation> observations = (ArrayList<Observation>) hapiRequestService.
-                getObservationList(patientId, system, code);
-        Optional<Observation> observation = Utils.getNewestObservationFromList(observations);
-        String valueQuantity = "";
-        if (observation.isPresent()) {
-            valueQuantity = observation.get().getValueQuantity().getValue().toPlainString();
-        }
-        return Optional.of(valueQuantity);
+    private Date getStoredDataNotBefore() {
+        return storedDataLookbackMs > 0 ? new Date(System.currentTimeMillis() - storedDataLookbackMs) : null;
     }
 
-    private void handleActionTask(String enactmentId, PlanTask task, PlanTask[] tasks,
-                                  String dreSessionId, String patientId) {
+    private Mono<Void> handleActionTask(String enactmentId, PlanTask task, PlanTask[] tasks,
+                                        String dreSessionId, String patientId) {
         JsonNode metaProperties = task.getMetaprops();
         if (metaProperties.findValue("interactive") != null) {
             switch (metaProperties.get("interactive").asText()) {
                 case "0":
                     log.debug("[handleActionTask]\tFound automatic task to process for patient with id: " + patientId);
-                    handleAutomaticTask(enactmentId, task, tasks, task.getProcedure(), patientId, dreSessionId);
-                    break;
+                    return handleAutomaticTask(enactmentId, task, tasks, task.getProcedure(), patientId, dreSessionId);
                 case "1":
                     log.debug("[handleActionTask]\tFound interactive task to process for patient with id: " + patientId);
-                    handleInteractiveTask(enactmentId, task, tasks, patientId, dreSessionId);
-                    break;
+                    return handleInteractiveTask(enactmentId, task, tasks, patientId, dreSessionId);
                 default:
                     log.debug("[handleActionTask]\tWrong interactive value");
                     break;
@@ -440,121 +570,120 @@ public class ProcessFlow {
         } else {
             log.debug("[handleActionTask]\tMissing interactive node");
         }
+        return Mono.empty();
     }
 
-    private void handleInteractiveTask(String enactmentId, PlanTask task, PlanTask[] tasks,
-                                       String patientId, String dreSessionId) {
+    private Mono<Void> handleInteractiveTask(String enactmentId, PlanTask task, PlanTask[] tasks,
+                                             String patientId, String dreSessionId) {
         JsonNode metaProperties = task.getMetaprops();
         if (metaProperties.findValue("resourceType") != null) {
             if ("MedicationRequest".equals(metaProperties.get("resourceType").asText())) {
                 log.debug("[handleInteractiveTask]\tFound interactiveMedicationRequest task: " + patientId);
-                handleInteractiveMedicationRequest(enactmentId, task, tasks, patientId, dreSessionId, metaProperties);
+                return handleInteractiveMedicationRequest(enactmentId, task, tasks, patientId, dreSessionId, metaProperties);
             } else {
                 log.debug("[handleInteractiveTask]\rWrong resourceType value");
             }
         }
+        return Mono.empty();
     }
 
-    private void handleInteractiveMedicationRequest(String enactmentId, PlanTask currentProcessedTask,
-                                                    PlanTask[] currentlyProcessedTasks, String patientId,
-                                                    String dreSessionId, JsonNode metaProperties) {
+    private Mono<Void> handleInteractiveMedicationRequest(String enactmentId, PlanTask currentProcessedTask,
+                                                          PlanTask[] currentlyProcessedTasks, String patientId,
+                                                          String dreSessionId, JsonNode metaProperties) {
         if (metaProperties.findValue("resource") != null) {
-            MedicationRequest medicationRequest = FhirContext.forR4().newJsonParser()
-                    .parseResource(MedicationRequest.class, metaProperties.get("resource").asText());
-            boolean ifTaskAlreadyExists = false;
-            ArrayList<Task> tasks = (ArrayList<Task>) hapiRequestService.getTaskList(Task.TaskStatus.REQUESTED);
-            for (Task task : tasks) {
-                if (task.getFor().getReference().equals(patientId)) {
-                    if (task.getFocus().getType().equals("MedicationRequest")) {
-                        MedicationRequest mR = hapiRequestService.
-                                getMedicationRequest(task.getFocus().getReference());
-                        Coding taskMrCoding = mR.getMedicationCodeableConcept().getCodingFirstRep();
-                        Coding mRCoding = medicationRequest.getMedicationCodeableConcept().getCodingFirstRep();
-                        if (Utils.isCodingMatching(taskMrCoding.getCode(), mRCoding.getCode(),
-                                mRCoding.getSystem(), taskMrCoding.getSystem())) {
-                            log.debug("[handleInteractiveMedicationRequest]\tTask with given code already exist in InteractiveMedicationRequest Task");
-                            ifTaskAlreadyExists = true;
-                            if (mR.getStatus()
-                                    .equals(MedicationRequest.MedicationRequestStatus.ACTIVE)
-                                    || mR.getStatus()
-                                    .equals(MedicationRequest.MedicationRequestStatus.CANCELLED)) {
-                                log.debug("[handleInteractiveMedicationRequest]\tMedication request affiliated with task has been activated in InteractiveMedicationRequest Task");
-                                hapiRequestService.updateTask(task, Task.TaskStatus.COMPLETED);
-                                tryToFinishTask(enactmentId, currentProcessedTask, currentlyProcessedTasks, dreSessionId, patientId);
-                            }
-                            break;
+            MedicationRequest medicationRequest = medicationRequestTemplates.get(metaProperties.get("resource").asText());
+            Coding mRCoding = medicationRequest.getMedicationCodeableConcept().getCodingFirstRep();
+            return fhirGateway
+                    .getTaskListWithFocus(patientId, Task.TaskStatus.REQUESTED, "MedicationRequest")
+                    .map(PatientTaskIndex::new)
+                    .flatMap(taskIndex -> Tracer.deferWithMdc(() -> {
+                        Optional<Task> existingTask = taskIndex.findTask(mRCoding.getSystem(), mRCoding.getCode());
+                        if (!existingTask.isPresent()) {
+                            return ifInteractiveMedicationRequestTaskDoesntExist(patientId, medicationRequest);
                         }
-                    }
-                }
-            }
-            if (!ifTaskAlreadyExists) {
-                ifInteractiveMedicationRequestTaskDoesntExist(patientId, medicationRequest);
-            }
+                        log.debug("[handleInteractiveMedicationRequest]\tTask with given code already exist in InteractiveMedicationRequest Task");
+                        Task task = existingTask.get();
+                        MedicationRequest mR = (MedicationRequest) task.getFocus().getResource();
+                        if (mR.getStatus()
+                                .equals(MedicationRequest.MedicationRequestStatus.ACTIVE)
+                                || mR.getStatus()
+                                .equals(MedicationRequest.MedicationRequestStatus.CANCELLED)) {
+                            log.debug("[handleInteractiveMedicationRequest]\tMedication request affiliated with task has been activated in InteractiveMedicationRequest Task");
+                            return fhirGateway.updateTask(task, Task.TaskStatus.COMPLETED)
+                                    .then(tryToFinishTask(enactmentId, currentProcessedTask, currentlyProcessedTasks, dreSessionId, patientId));
+                        }
+                        return Mono.<Void>empty();
+                    }));
         } else {
             log.debug("[handleInteractiveMedicationRequest]\tMissing resource Node");
         }
+        return Mono.empty();
     }
 
-    private void ifInteractiveMedicationRequestTaskDoesntExist(String patientId, MedicationRequest medicationRequest) {
+    private Mono<Void> ifInteractiveMedicationRequestTaskDoesntExist(String patientId, MedicationRequest medicationRequest) {
         log.debug("[ifInteractiveMedicationRequestTaskDoesntExist]\tTask with given code doesnt exist");
-        String medicationRequestId = hapiRequestService
+        return fhirGateway
                 .createMedicationRequest(medicationRequest, MedicationRequest.MedicationRequestStatus.DRAFT,
-                        MedicationRequest.MedicationRequestIntent.PROPOSAL, patientId);
-        hapiRequestService
-                .createTask(new ReferenceHandling(patientId).getReference(), new ReferenceHandling(medicationRequestId).getReference());
-        goComService
-                .askGoComToCheckForConflicts(new ReferenceHandling(medicationRequestId).getReference())
-                .subscribe(pingResponse -> {
-                            if (pingResponse.isIfResolvedConflict()) {
-                                log.debug("[ifInteractiveMedicationRequestTaskDoesntExist]\tGoCom has resolved conflict!");
-                            } else {
-                                log.debug("[ifInteractiveMedicationRequestTaskDoesntExist]\tGoCom hasn't resolved any conflict!");
-                            }
-                        }
-                );
-        log.debug("[ifInteractiveMedicationRequestTaskDoesntExist]\tPut communication resource with reference at medication request in HAPI FHIR");
+                        MedicationRequest.MedicationRequestIntent.PROPOSAL, patientId)
+                .flatMap(medicationRequestId -> fhirGateway
+                        .createTask(new ReferenceHandling(patientId).getReference(), new ReferenceHandling(medicationRequestId).getReference())
+                        .then(Tracer.deferWithMdc(() -> {
+                            log.debug("[ifInteractiveMedicationRequestTaskDoesntExist]\tPut communication resource with reference at medication request in HAPI FHIR");
+                            return Mono.<Void>empty();
+                        }))
+                        .then(goComService
+                                .askGoComToCheckForConflicts(new ReferenceHandling(medicationRequestId).getReference())
+                                .doOnEach(Tracer.onNextWithMdc(pingResponse -> {
+                                    if (pingResponse.isIfResolvedConflict()) {
+                                        log.debug("[ifInteractiveMedicationRequestTaskDoesntExist]\tGoCom has resolved conflict!");
+                                    } else {
+                                        log.debug("[ifInteractiveMedicationRequestTaskDoesntExist]\tGoCom hasn't resolved any conflict!");
+                                    }
+                                }))
+                                .then()
+                                .onErrorResume(dropped("askGoComToCheckForConflicts"))));
     }
 
-    private void handleAutomaticTask(String enactmentId, PlanTask task, PlanTask[] tasks, String procedure,
-                                     String patientId, String dreSessionId) {
-        deonticsRequestService
+    private Mono<Void> handleAutomaticTask(String enactmentId, PlanTask task, PlanTask[] tasks, String procedure,
+                                           String patientId, String dreSessionId) {
+        return deonticsRequestService
                 .postEnact(procedure + ".pf", patientId)
-                .subscribe(postEnactResult ->
+                .flatMap(postEnactResult ->
                         deonticsRequestService
                                 .getEnactmentsByEnactmentId(postEnactResult.getEnactmentid())
-                                .subscribe(enactments -> {
+                                .flatMap(enactments -> Tracer.deferWithMdc(() -> {
                                     log.debug("[handleAutomaticTask]\tStarted new enactment for currently processed patient with id: " +
                                             patientId + " new pathway: " + procedure);
-                                    handleEnactment(enactments[0], patientId);
-                                    tryToFinishTask(enactmentId, task, tasks, dreSessionId, patientId);
-                                }, getEnactException -> {
-                                }), postEnactException -> {
-                });
+                                    return Mono.when(
+                                            handleEnactment(enactments[0], patientId),
+                                            tryToFinishTask(enactmentId, task, tasks, dreSessionId, patientId));
+                                }))
+                                .onErrorResume(dropped("getEnactmentsByEnactmentId")))
+                .onErrorResume(dropped("postEnact"));
     }
 
-    private void tryToFinishTask(String enactmentId, PlanTask planTask, PlanTask[] currentlyProcessedTasks,
-                                 String dreSessionId, String patientId) {
-        deonticsRequestService
-                .getQueryConfirmTask(planTask.getName(), dreSessionId)
-                .subscribe(queryConfirmTask -> {
+    private Mono<Void> tryToFinishTask(String enactmentId, PlanTask planTask, PlanTask[] currentlyProcessedTasks,
+                                       String dreSessionId, String patientId) {
+        return flowMetrics.time(FlowMetrics.CONFIRMATION, withSession(enactmentId, deonticsRequestService
+                .getQueryConfirmTask(planTask.getName(), dreSessionId))
+                .flatMap(queryConfirmTask -> Tracer.deferWithMdc(() -> {
                     if (queryConfirmTask.getPrecondition() == null || queryConfirmTask.getCauses() == null) {
-                        deonticsRequestService
-                                .putConfirmTask(planTask.getName(), dreSessionId)
-                                .subscribe(confirmTaskOutput -> {
-                                    if (!confirmTaskOutput.getState().equals("completed")) {
-                                        log.debug("[tryToFinishTask]\tCannot complete task");
-                                    } else {
-                                        log.debug("[tryToFinishTask]\tTask has been completed for patient with id: " + patientId);
-                                        deonticsRequestService
-                                                .getPlanTasks(DEONTICS_IN_PROGRESS_STATUS, dreSessionId)
-                                                .subscribe(tasks -> handleTasks(enactmentId, patientId, dreSessionId, Optional.of(currentlyProcessedTasks)));
-                                    }
-                                }, confirmTaskException -> {
-                                });
-                    } else {
-                        log.debug("[tryToFinishTask]\tCannot finish task\nReasons:" + queryConfirmTask.toString());
+                        return withSession(enactmentId,
+                                deonticsRequestService.putConfirmTask(planTask.getName(), dreSessionId));
                     }
-                }, queryConfirmTaskException -> {
-                });
+                    log.debug("[tryToFinishTask]\tCannot finish task\nReasons:" + queryConfirmTask.toString());
+                    return Mono.empty();
+                })))
+                .flatMap(confirmTaskOutput -> Tracer.deferWithMdc(() -> {
+                    if (!confirmTaskOutput.getState().equals("completed")) {
+                        log.debug("[tryToFinishTask]\tCannot complete task");
+                        return Mono.<Void>empty();
+                    }
+                    log.debug("[tryToFinishTask]\tTask has been completed for patient with id: " + patientId);
+                    return withSession(enactmentId, deonticsRequestService
+                            .getPlanTasks(DEONTICS_IN_PROGRESS_STATUS, dreSessionId))
+                            .flatMap(tasks -> handleTasks(enactmentId, patientId, dreSessionId, Optional.of(currentlyProcessedTasks)));
+                }))
+                .onErrorResume(dropped("confirmation"));
     }
 }
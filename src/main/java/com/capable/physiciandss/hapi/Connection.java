@@ -2,12 +2,17 @@ package com.capable.physiciandss.hapi;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.apache.ApacheRestfulClientFactory;
 import lombok.Getter;
 import lombok.Setter;
+import org.apache.http.client.HttpClient;
+
+import java.io.Closeable;
+import java.io.IOException;
 
 @Getter
 @Setter
-public class Connection {
+public class Connection implements Closeable {
 
     private IGenericClient client;
     private FhirContext ctx;
@@ -16,4 +21,14 @@ public class Connection {
         this.ctx = FhirContext.forR4();
         this.client = ctx.newRestfulGenericClient(url);
     }
+
+    @Override
+    public void close() throws IOException {
+        if (ctx.getRestfulClientFactory() instanceof ApacheRestfulClientFactory) {
+            HttpClient httpClient = ((ApacheRestfulClientFactory) ctx.getRestfulClientFactory()).getNativeHttpClient();
+            if (httpClient instanceof Closeable) {
+                ((Closeable) httpClient).close();
+            }
+        }
+    }
 }
@@ -0,0 +1,196 @@
+package com.capable.physiciandss.hapi;
+
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import org.hl7.fhir.r4.model.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Builds the resources and Bundles sent to HAPI FHIR, shared by the blocking and the reactive client.
+ */
+public class FhirResources {
+
+    /**
+     * Extension carrying the id of the claim which completed a Communication, so a claim whose response was
+     * lost can be recognised by reading the Communication again.
+     */
+    public static final String CLAIM_EXTENSION_URL = "https://capable-project.eu/fhir/StructureDefinition/phdss-claim";
+    private static final String CLAIM_USER_DATA = "phdss.claim";
+
+    public static Observation newObservation(String system, String ontologyCoding, Observation.ObservationStatus status) {
+        Observation observation = new Observation();
+        CodeableConcept codeableConcept = new CodeableConcept();
+        Coding coding = new Coding();
+        coding.setSystem(system);
+        coding.setCode(ontologyCoding);
+        ArrayList<Coding> codings = new ArrayList<>();
+        codings.add(coding);
+        codeableConcept.setCoding(codings);
+        observation.setCode(codeableConcept);
+        observation.setStatus(status);
+        return observation;
+    }
+
+    public static MedicationRequest prepareMedicationRequest(MedicationRequest medicationRequest,
+                                                             MedicationRequest.MedicationRequestStatus status,
+                                                             MedicationRequest.MedicationRequestIntent medicationRequestIntent,
+                                                             String patientId) {
+        medicationRequest.setStatus(status);
+        medicationRequest.setIntent(medicationRequestIntent);
+        medicationRequest.setSubject(newTypedReference(patientId));
+        return medicationRequest;
+    }
+
+    public static Communication newCommunication(Communication.CommunicationStatus status, String referenceId) {
+        Communication communication = new Communication();
+        communication.setStatus(status);
+        Communication.CommunicationPayloadComponent payloadComponent = new Communication.CommunicationPayloadComponent();
+        payloadComponent.setContent(newTypedReference(referenceId));
+        ArrayList<Communication.CommunicationPayloadComponent> communicationPayloadComponents = new ArrayList<>();
+        communicationPayloadComponents.add(payloadComponent);
+        communication.setPayload(communicationPayloadComponents);
+        return communication;
+    }
+
+    public static Task newTask(Reference patient, Reference resource) {
+        Task task = new Task();
+        task.setIntent(Task.TaskIntent.ORDER);
+        task.setStatus(Task.TaskStatus.REQUESTED);
+        task.setFor(patient);
+        task.setFocus(resource);
+        return task;
+    }
+
+    /**
+     * Each entry is conditional on the version the Communication was read with, so when the polling tick and a
+     * rest-hook notification both pick it up only one of them completes it; the other gets a 412 entry.
+     */
+    public static Bundle newCommunicationStatusBatch(List<Communication> communications,
+                                                     Communication.CommunicationStatus status) {
+        Bundle batch = new Bundle();
+        batch.setType(Bundle.BundleType.BATCH);
+        for (Communication communication : communications) {
+            claim(communication, status);
+            batch.addEntry()
+                    .setResource(communication)
+                    .getRequest()
+                    .setMethod(Bundle.HTTPVerb.PUT)
+                    .setUrl("Communication/" + communication.getIdElement().getIdPart())
+                    .setIfMatch(ifMatch(communication));
+        }
+        return batch;
+    }
+
+    /**
+     * Sets the status and the claim extension of the Communication. The claim id is kept on the in-memory copy,
+     * so sending the same copy again claims it with the same id.
+     */
+    public static void claim(Communication communication, Communication.CommunicationStatus status) {
+        String claimId = (String) communication.getUserData(CLAIM_USER_DATA);
+        if (claimId == null) {
+            claimId = UUID.randomUUID().toString();
+            communication.setUserData(CLAIM_USER_DATA, claimId);
+        }
+        communication.setStatus(status);
+        communication.getExtension().removeIf(extension -> CLAIM_EXTENSION_URL.equals(extension.getUrl()));
+        communication.addExtension(CLAIM_EXTENSION_URL, new StringType(claimId));
+    }
+
+    /**
+     * Whether the copy was sent with a claim whose outcome has not been read back yet.
+     */
+    public static boolean hasPendingClaim(Communication communication) {
+        return communication.getUserData(CLAIM_USER_DATA) != null;
+    }
+
+    /**
+     * Whether the Communication as read from HAPI FHIR was completed by the claim sent with the given copy.
+     */
+    public static boolean isClaimedBy(Communication current, Communication claimed) {
+        Extension claimExtension = current.getExtensionByUrl(CLAIM_EXTENSION_URL);
+        return Communication.CommunicationStatus.COMPLETED.equals(current.getStatus())
+                && claimExtension != null && claimExtension.getValue() != null
+                && claimExtension.getValue().primitiveValue().equals(claimed.getUserData(CLAIM_USER_DATA));
+    }
+
+    /**
+     * Weak ETag of the version the resource was read with, null when it carries no version.
+     */
+    public static String ifMatch(Resource resource) {
+        String versionId = resource.getIdElement().getVersionIdPart();
+        if (versionId == null) {
+            versionId = resource.getMeta().getVersionId();
+        }
+        return versionId == null ? null : "W/\"" + versionId + "\"";
+    }
+
+    public static List<EntryOutcome> toEntryOutcomes(Bundle response, List<? extends Resource> resources) {
+        List<EntryOutcome> outcomes = new ArrayList<>(resources.size());
+        for (int i = 0; i < resources.size(); i++) {
+            String resourceId = resources.get(i).getIdElement().toUnqualifiedVersionless().getValue();
+            if (i >= response.getEntry().size()) {
+                outcomes.add(new EntryOutcome(resourceId, null, false, "Missing entry in batch response"));
+                continue;
+            }
+            Bundle.BundleEntryResponseComponent entryResponse = response.getEntry().get(i).getResponse();
+            String entryStatus = entryResponse.getStatus();
+            boolean successful = entryStatus != null && entryStatus.startsWith("2");
+            String diagnostics = entryResponse.getOutcome() instanceof OperationOutcome
+                    ? ((OperationOutcome) entryResponse.getOutcome()).getIssueFirstRep().getDiagnostics()
+                    : null;
+            outcomes.add(new EntryOutcome(resourceId, entryStatus, successful, diagnostics));
+        }
+        return outcomes;
+    }
+
+    public static List<EntryOutcome> toFailedEntryOutcomes(List<? extends Resource> resources, String diagnostics) {
+        List<EntryOutcome> outcomes = new ArrayList<>(resources.size());
+        resources.forEach(resource -> outcomes.add(new EntryOutcome(
+                resource.getIdElement().toUnqualifiedVersionless().getValue(), null, false, diagnostics)));
+        return outcomes;
+    }
+
+    /**
+     * Collects the Tasks matched by a search with _include=Task:focus and attaches each included focus
+     * resource to its Task's focus reference, so callers do not need to read the focus separately.
+     */
+    public static List<Task> toTasksWithFocus(List<Bundle> pages) {
+        List<Task> tasks = new ArrayList<>();
+        Map<String, Resource> includedResources = new HashMap<>();
+        for (Bundle page : pages) {
+            for (Bundle.BundleEntryComponent entry : page.getEntry()) {
+                Resource resource = entry.getResource();
+                if (resource == null) {
+                    continue;
+                }
+                if (resource instanceof Task && entry.getSearch().getMode() != Bundle.SearchEntryMode.INCLUDE) {
+                    tasks.add((Task) resource);
+                } else {
+                    includedResources.put(resource.getIdElement().toUnqualifiedVersionless().getValue(), resource);
+                }
+            }
+        }
+        for (Task task : tasks) {
+            if (task.getFocus().getReference() == null) {
+                continue;
+            }
+            Resource focus = includedResources.get(
+                    new IdType(task.getFocus().getReference()).toUnqualifiedVersionless().getValue());
+            if (focus != null) {
+                task.getFocus().setResource(focus);
+            }
+        }
+        return tasks;
+    }
+
+    private static Reference newTypedReference(String referenceId) {
+        Reference reference = new Reference(referenceId);
+        reference.setIdentifier(new Identifier().setValue(reference.getReference().split("/")[1]));
+        reference.setType(reference.getReference().split("/")[0]);
+        return reference;
+    }
+}
@@ -0,0 +1,52 @@
+package com.capable.physiciandss.hapi;
+
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import org.hl7.fhir.r4.model.Dosage;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Period;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Elements requested with _elements by the projected searches, and the conversion of the (subsetted) resources
+ * into views, so only the few fields the process flow reads are transferred, parsed and kept in memory.
+ */
+public class FhirViews {
+
+    public static final String[] OBSERVATION_ELEMENTS = {"subject", "status", "code", "effective", "value"};
+    public static final String[] MEDICATION_REQUEST_ELEMENTS =
+            {"subject", "status", "medication", "authoredOn", "dosageInstruction"};
+
+    public static ObservationView toObservationView(Observation observation) {
+        return new ObservationView(
+                observation.getIdElement().toUnqualifiedVersionless().getValue(),
+                observation.getSubject().getReference(),
+                observation.hasStatus() ? observation.getStatus().toCode() : null,
+                observation.getCode().getCoding(),
+                observation.hasEffectiveDateTimeType() ? observation.getEffectiveDateTimeType().getValue() : null,
+                observation.hasValueQuantity() ? observation.getValueQuantity().getValue() : null,
+                observation.hasValueQuantity() ? observation.getValueQuantity().getUnit() : null);
+    }
+
+    public static MedicationRequestView toMedicationRequestView(MedicationRequest medicationRequest) {
+        List<Period> dosageBounds = new ArrayList<>();
+        for (Dosage dosage : medicationRequest.getDosageInstruction()) {
+            if (dosage.getTiming().getRepeat().hasBoundsPeriod()) {
+                dosageBounds.add(dosage.getTiming().getRepeat().getBoundsPeriod());
+            }
+        }
+        return new MedicationRequestView(
+                medicationRequest.getIdElement().toUnqualifiedVersionless().getValue(),
+                medicationRequest.getSubject().getReference(),
+                medicationRequest.hasStatus() ? medicationRequest.getStatus().toCode() : null,
+                medicationRequest.hasMedicationCodeableConcept()
+                        ? medicationRequest.getMedicationCodeableConcept().getCoding()
+                        : Collections.emptyList(),
+                medicationRequest.getAuthoredOn(),
+                dosageBounds);
+    }
+}
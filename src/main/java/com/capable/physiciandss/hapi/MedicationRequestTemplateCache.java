@@ -0,0 +1,66 @@
+package com.capable.physiciandss.hapi;
+
+import ca.uhn.fhir.context.FhirContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * MedicationRequests parsed from the resource metaprop of interactive guideline tasks. The same task is seen
+ * on every tick until a clinician acts on it, so templates are parsed once with the shared FhirContext and
+ * kept by the SHA-256 of their JSON, at most maximum-size of them. Templates are never handed out, callers
+ * get a copy they are free to modify.
+ */
+@Component
+public class MedicationRequestTemplateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicationRequestTemplateCache.class);
+    private final FhirContext ctx;
+    private final Cache<String, MedicationRequest> templates;
+
+    public MedicationRequestTemplateCache(Connection connection,
+                                          @Value("${phdss.hapi.medication-request-templates.maximum-size:500}") long maximumSize) {
+        this.ctx = connection.getCtx();
+        this.templates = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        log.info("MedicationRequestTemplateCache has been created");
+    }
+
+    public MedicationRequest get(String resourceJson) {
+        return templates
+                .get(sha256(resourceJson), key -> {
+                    log.debug("[get]\tParsing MedicationRequest template with hash: " + key);
+                    return ctx.newJsonParser().parseResource(MedicationRequest.class, resourceJson);
+                })
+                .copy();
+    }
+
+    public CacheStats getStats() {
+        return templates.stats();
+    }
+
+    public long getSize() {
+        return templates.estimatedSize();
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
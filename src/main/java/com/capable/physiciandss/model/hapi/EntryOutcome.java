@@ -0,0 +1,15 @@
+package com.capable.physiciandss.model.hapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EntryOutcome {
+    private String resourceId;
+    private String status;
+    private boolean successful;
+    private String diagnostics;
+}
@@ -0,0 +1,31 @@
+package com.capable.physiciandss.model.hapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Period;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The elements of a MedicationRequest the process flow reads, see {@link com.capable.physiciandss.hapi.FhirViews}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MedicationRequestView {
+    private String id;
+    private String subject;
+    private String status;
+    /**
+     * Codings of medicationCodeableConcept, empty when the medication is a reference.
+     */
+    private List<Coding> codings;
+    private Date authoredOn;
+    /**
+     * Bounds periods of the dosage instructions which have one.
+     */
+    private List<Period> dosageBounds;
+}
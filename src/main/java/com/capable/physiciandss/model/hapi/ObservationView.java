@@ -0,0 +1,29 @@
+package com.capable.physiciandss.model.hapi;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hl7.fhir.r4.model.Coding;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The elements of an Observation the process flow reads, see {@link com.capable.physiciandss.hapi.FhirViews}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ObservationView {
+    private String id;
+    private String subject;
+    private String status;
+    private List<Coding> codings;
+    /**
+     * effectiveDateTime, null when the Observation is dated otherwise.
+     */
+    private Date effective;
+    private BigDecimal value;
+    private String unit;
+}
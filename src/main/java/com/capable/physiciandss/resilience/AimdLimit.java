@@ -0,0 +1,58 @@
+package com.capable.physiciandss.resilience;
+
+/**
+ * Concurrency limit adapted with additive increase and multiplicative decrease. Every completed request adds
+ * 1/limit while the limit is used at least by half, so the limit grows by about one per round trip. An overload
+ * (a 429, 503 or 504 response, or a failed request) or a short term average latency above latency-tolerance
+ * times the long term average multiply the limit by backoff-ratio, at most once per round trip.
+ */
+class AimdLimit {
+
+    private static final double SHORT_TERM_WEIGHT = 0.1;
+    private static final double LONG_TERM_WEIGHT = 0.01;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private double limit;
+    private double shortTermLatency;
+    private double longTermLatency;
+    private boolean decreased;
+    private long decreasedAt;
+
+    AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Adapts the limit to a completed request.
+     *
+     * @param overloaded whether the response or failure shows the service is overloaded
+     */
+    synchronized void onSample(long latencyNanos, boolean overloaded, int inFlight, long nowNanos) {
+        if (longTermLatency == 0) {
+            shortTermLatency = latencyNanos;
+            longTermLatency = latencyNanos;
+        } else {
+            shortTermLatency += (latencyNanos - shortTermLatency) * SHORT_TERM_WEIGHT;
+            longTermLatency += (latencyNanos - longTermLatency) * LONG_TERM_WEIGHT;
+        }
+        if (overloaded || shortTermLatency > latencyTolerance * longTermLatency) {
+            if (!decreased || nowNanos - decreasedAt >= shortTermLatency) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                decreased = true;
+                decreasedAt = nowNanos;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.capable.physiciandss.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count based circuit breaker. While closed it keeps the outcomes of the last sliding-window-size calls and
+ * opens when at least minimum-calls of them were recorded and the share of failures reaches the threshold.
+ * An open breaker rejects calls for open-duration-ms, then turns half-open and lets half-open-probes calls
+ * through: the breaker closes when all of them succeed and opens again as soon as one fails.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+    private final String name;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationMs;
+    private final int halfOpenProbes;
+    private final LongSupplier clock;
+    private final boolean[] failedCalls;
+    private State state = State.CLOSED;
+    private int nextCall;
+    private int recordedCalls;
+    private int recordedFailures;
+    private long openedAt;
+    private int probesInFlight;
+    private int succeededProbes;
+
+    public CircuitBreaker(String name, int failureRateThreshold, int slidingWindowSize, int minimumCalls,
+                          long openDurationMs, int halfOpenProbes, LongSupplier clock) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.failedCalls = new boolean[Math.max(1, slidingWindowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, failedCalls.length));
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.clock = clock;
+    }
+
+    /**
+     * Whether a call may be made now; every permitted call must be followed by one of onSuccess, onFailure
+     * or release.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openDurationMs) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + succeededProbes >= halfOpenProbes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (++succeededProbes >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recordedCalls >= minimumCalls && recordedFailures * 100L >= (long) failureRateThreshold * recordedCalls) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Gives back the permit of a call which ended without an outcome, e.g. because it was cancelled.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recordedCalls == failedCalls.length) {
+            if (failedCalls[nextCall]) {
+                recordedFailures--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        failedCalls[nextCall] = failed;
+        if (failed) {
+            recordedFailures++;
+        }
+        nextCall = (nextCall + 1) % failedCalls.length;
+    }
+
+    private void transitionTo(State newState) {
+        log.info("Circuit breaker " + name + " changed from " + state + " to " + newState);
+        state = newState;
+        probesInFlight = 0;
+        succeededProbes = 0;
+        if (newState == State.OPEN) {
+            openedAt = clock.getAsLong();
+        } else if (newState == State.CLOSED) {
+            nextCall = 0;
+            recordedCalls = 0;
+            recordedFailures = 0;
+        }
+    }
+}
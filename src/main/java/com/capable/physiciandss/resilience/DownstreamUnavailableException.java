@@ -0,0 +1,11 @@
+package com.capable.physiciandss.resilience;
+
+/**
+ * A call which was not made because the circuit breaker of its downstream service is open.
+ */
+public class DownstreamUnavailableException extends IllegalStateException {
+
+    public DownstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,193 @@
+package com.capable.physiciandss.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Client side limit of the requests sent to one downstream service: a {@link TokenBucket} caps the request rate
+ * and an {@link AimdLimit} the requests in flight. Requests which cannot be sent yet wait in a FIFO queue, without
+ * holding a thread; they fail with a {@link DownstreamUnavailableException} when the queue is full or they waited
+ * longer than queue-timeout-ms.
+ */
+public class RequestLimiter {
+
+    private final String name;
+    private final TokenBucket tokenBucket;
+    private final AimdLimit limit;
+    private final int queueSize;
+    private final Duration queueTimeout;
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private final Timer queueWait;
+    private final Counter rejectedRequests;
+    private int inFlight;
+    private boolean drainScheduled;
+
+    public RequestLimiter(String name, ResilienceProperties.LimiterDefinition definition, MeterRegistry registry) {
+        this.name = name;
+        this.tokenBucket = definition.getRatePerSecond() > 0
+                ? new TokenBucket(definition.getRatePerSecond(), definition.getBurst(), System.nanoTime())
+                : null;
+        this.limit = new AimdLimit(definition.getInitialLimit(), definition.getMinLimit(), definition.getMaxLimit(),
+                definition.getBackoffRatio(), definition.getLatencyTolerance());
+        this.queueSize = definition.getQueueSize();
+        this.queueTimeout = Duration.ofMillis(definition.getQueueTimeoutMs());
+        this.queueWait = Timer.builder("phdss.limiter.queue.wait")
+                .description("Time requests waited for a permit")
+                .tag("downstream", name)
+                .register(registry);
+        this.rejectedRequests = registry.counter("phdss.limiter.rejected", "downstream", name);
+        Gauge.builder("phdss.limiter.limit", limit, AimdLimit::getLimit).tag("downstream", name).register(registry);
+        Gauge.builder("phdss.limiter.in-flight", this, RequestLimiter::getInFlight).tag("downstream", name)
+                .register(registry);
+        Gauge.builder("phdss.limiter.queued", this, RequestLimiter::getQueued).tag("downstream", name)
+                .register(registry);
+    }
+
+    /**
+     * Sends every request once it got a permit and adapts the concurrency limit to its response.
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> acquire().flatMap(permit -> next.exchange(request)
+                .doOnSuccess(response -> permit.release(isOverloaded(response), true))
+                .doOnError(exception -> permit.release(true, true))
+                .doOnCancel(() -> permit.release(false, false)));
+    }
+
+    Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+            Waiter waiter = new Waiter(sink, System.nanoTime());
+            synchronized (this) {
+                if (waiting.size() >= queueSize) {
+                    rejectedRequests.increment();
+                    sink.error(new DownstreamUnavailableException("Request queue of " + name + " is full"));
+                    return;
+                }
+                waiting.add(waiter);
+            }
+            sink.onCancel(() -> {
+                Permit undelivered;
+                synchronized (this) {
+                    if (waiter.done.compareAndSet(false, true)) {
+                        waiting.remove(waiter);
+                    }
+                    undelivered = waiter.permit;
+                }
+                if (undelivered != null) {
+                    undelivered.release(false, false);
+                }
+            });
+            drain();
+        }).timeout(queueTimeout, Mono.defer(() -> {
+            rejectedRequests.increment();
+            return Mono.error(new DownstreamUnavailableException("Request to " + name + " waited too long for a permit"));
+        }));
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            while (!waiting.isEmpty() && inFlight < limit.getLimit()) {
+                long tokenWait = tokenBucket != null ? tokenBucket.tryAcquire(now) : 0;
+                if (tokenWait > 0) {
+                    if (!drainScheduled) {
+                        drainScheduled = true;
+                        Schedulers.parallel().schedule(this::scheduledDrain, tokenWait, TimeUnit.NANOSECONDS);
+                    }
+                    break;
+                }
+                Waiter waiter = waiting.poll();
+                if (waiter.done.compareAndSet(false, true)) {
+                    inFlight++;
+                    waiter.permit = new Permit(now);
+                    granted.add(waiter);
+                }
+            }
+        }
+        for (Waiter waiter : granted) {
+            queueWait.record(now - waiter.queuedAt, TimeUnit.NANOSECONDS);
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    private void scheduledDrain() {
+        synchronized (this) {
+            drainScheduled = false;
+        }
+        drain();
+    }
+
+    /**
+     * Only throttling and gateway responses signal overload, a 500 caused by a bad request must not shrink the limit.
+     */
+    private static boolean isOverloaded(ClientResponse response) {
+        int status = response.rawStatusCode();
+        return status == 429 || status == 503 || status == 504;
+    }
+
+    private static class Waiter {
+        private final MonoSink<Permit> sink;
+        private final long queuedAt;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private Permit permit;
+
+        private Waiter(MonoSink<Permit> sink, long queuedAt) {
+            this.sink = sink;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    class Permit {
+        private final long grantedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long grantedAt) {
+            this.grantedAt = grantedAt;
+        }
+
+        /**
+         * Gives the permit back; completed requests are taken as a latency sample of the limit.
+         */
+        void release(boolean overloaded, boolean completed) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.nanoTime();
+            int inFlightBeforeRelease;
+            synchronized (RequestLimiter.this) {
+                inFlightBeforeRelease = inFlight--;
+            }
+            if (completed) {
+                limit.onSample(now - grantedAt, overloaded, inFlightBeforeRelease, now);
+            }
+            drain();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.capable.physiciandss.resilience;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Applies the {@link ResiliencePolicy} of the downstream a WebClient request goes to. Responses with a
+ * transient error status are released and turned into errors, so they are retried and counted against the
+ * circuit breaker. Conditional requests (If-Match) are never retried: when the first attempt was applied but its
+ * response was lost, the retry would fail with a 412.
+ */
+public class ResilienceExchangeFilter implements ExchangeFilterFunction {
+
+    private final Function<ClientRequest, ResiliencePolicy> policies;
+
+    public ResilienceExchangeFilter(Function<ClientRequest, ResiliencePolicy> policies) {
+        this.policies = policies;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        ResiliencePolicy policy = policies.apply(request);
+        Mono<ClientResponse> exchange = next.exchange(request)
+                .flatMap(response -> ResiliencePolicy.isTransientStatus(response.rawStatusCode())
+                        ? response.releaseBody().then(Mono.<ClientResponse>error(ResiliencePolicy.transientResponse(
+                        request.method() + " " + request.url().getPath(), response.rawStatusCode())))
+                        : Mono.just(response));
+        boolean conditional = request.headers().containsKey(HttpHeaders.IF_MATCH);
+        return policy.apply(exchange, policy.isIdempotent(request.method()) && !conditional);
+    }
+}
@@ -0,0 +1,60 @@
+package com.capable.physiciandss.resilience;
+
+import com.capable.physiciandss.utils.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+/**
+ * The resilience policies of the downstream services, configured under phdss.resilience. Deontics PRS and
+ * DRE have separate circuit breakers, as one can be down while the other still answers.
+ */
+@Component
+@EnableConfigurationProperties(ResilienceProperties.class)
+public class ResiliencePolicies {
+
+    private final ResiliencePolicy deonticsPrs;
+    private final ResiliencePolicy deonticsDre;
+    private final ResiliencePolicy hapi;
+    private final ResiliencePolicy gocom;
+    private final RequestLimiter deonticsLimiter;
+
+    public ResiliencePolicies(ResilienceProperties properties, MeterRegistry registry) {
+        this.deonticsPrs = new ResiliencePolicy("deontics-prs", properties.getDeonticsPrs(), registry);
+        this.deonticsDre = new ResiliencePolicy("deontics-dre", properties.getDeonticsDre(), registry);
+        this.hapi = new ResiliencePolicy("hapi", properties.getHapi(), registry);
+        this.gocom = new ResiliencePolicy("gocom", properties.getGocom(), registry);
+        this.deonticsLimiter = new RequestLimiter("deontics", properties.getDeonticsLimiter(), registry);
+    }
+
+    /**
+     * Filter of the WebClient shared by Deontics and GoCom, choosing the policy by the request path. Every
+     * attempt to PRS or DRE then waits for a permit of the limiter of the Deontics API key; GoCom requests
+     * neither use its permits nor adapt its limit.
+     */
+    public ExchangeFilterFunction deonticsFilter() {
+        ExchangeFilterFunction limiter = deonticsLimiter.filter();
+        return new ResilienceExchangeFilter(this::deonticsPolicy)
+                .andThen((request, next) -> deonticsPolicy(request) == gocom
+                        ? next.exchange(request)
+                        : limiter.filter(request, next));
+    }
+
+    public ExchangeFilterFunction hapiFilter() {
+        return new ResilienceExchangeFilter(request -> hapi);
+    }
+
+    public ResiliencePolicy getHapi() {
+        return hapi;
+    }
+
+    private ResiliencePolicy deonticsPolicy(ClientRequest request) {
+        String path = request.url().getPath();
+        if (path.contains(Constants.PRS_API_URL + "/")) {
+            return deonticsPrs;
+        }
+        return path.contains(Constants.DRE_API_URL + "/") ? deonticsDre : gocom;
+    }
+}
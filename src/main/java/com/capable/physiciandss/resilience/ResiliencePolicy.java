@@ -0,0 +1,147 @@
+package com.capable.physiciandss.resilience;
+
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import com.capable.physiciandss.services.DownstreamRequestException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Retry and circuit breaking of the calls to one downstream service. Only transient failures (connection
+ * errors, timeouts and 408, 429, 500, 502, 503 and 504 responses) are retried, with jittered exponential
+ * backoff, and counted against the circuit breaker; any other response shows the service is up. While the
+ * breaker is open calls fail at once with a {@link DownstreamUnavailableException}, which is never retried.
+ */
+public class ResiliencePolicy {
+
+    private static final Set<Integer> TRANSIENT_STATUSES = new HashSet<>(Arrays.asList(408, 429, 500, 502, 503, 504));
+    private final String name;
+    private final ResilienceProperties.PolicyDefinition definition;
+    private final CircuitBreaker circuitBreaker;
+    private final Set<HttpMethod> retryMethods = new HashSet<>();
+    private final Counter retries;
+    private final Counter rejectedCalls;
+
+    public ResiliencePolicy(String name, ResilienceProperties.PolicyDefinition definition, MeterRegistry registry) {
+        this.name = name;
+        this.definition = definition;
+        this.circuitBreaker = new CircuitBreaker(name, definition.getFailureRateThreshold(),
+                definition.getSlidingWindowSize(), definition.getMinimumCalls(), definition.getOpenDurationMs(),
+                definition.getHalfOpenProbes(), System::currentTimeMillis);
+        definition.getRetryMethods().forEach(method -> retryMethods.add(HttpMethod.resolve(method.toUpperCase())));
+        this.retries = registry.counter("phdss.resilience.retries", "downstream", name);
+        this.rejectedCalls = registry.counter("phdss.resilience.rejected", "downstream", name);
+        Gauge.builder("phdss.resilience.breaker.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("downstream", name)
+                .register(registry);
+    }
+
+    /**
+     * Guards every subscription of the call with the circuit breaker; idempotent calls are also retried.
+     */
+    public <T> Mono<T> apply(Mono<T> call, boolean idempotent) {
+        Mono<T> guarded = Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquire()) {
+                rejectedCalls.increment();
+                return Mono.error(new DownstreamUnavailableException("Circuit breaker of " + name + " is open"));
+            }
+            AtomicBoolean recorded = new AtomicBoolean();
+            return call
+                    .doOnSuccess(result -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            circuitBreaker.onSuccess();
+                        }
+                    })
+                    .doOnError(exception -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            if (exception instanceof DownstreamUnavailableException) {
+                                circuitBreaker.release();
+                            } else if (isTransient(exception)) {
+                                circuitBreaker.onFailure();
+                            } else {
+                                circuitBreaker.onSuccess();
+                            }
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            circuitBreaker.release();
+                        }
+                    });
+        });
+        if (definition.getMaxRetries() <= 0) {
+            return guarded;
+        }
+        return guarded.retryWhen(Retry
+                .backoff(definition.getMaxRetries(), Duration.ofMillis(definition.getInitialBackoffMs()))
+                .maxBackoff(Duration.ofMillis(definition.getMaxBackoffMs()))
+                .jitter(definition.getJitter())
+                .filter(exception -> idempotent ? isTransient(exception) : isConnectionRefused(exception))
+                .doBeforeRetry(signal -> retries.increment())
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    public boolean isIdempotent(HttpMethod method) {
+        return retryMethods.contains(method);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public static boolean isTransientStatus(int status) {
+        return TRANSIENT_STATUSES.contains(status);
+    }
+
+    public static boolean isTransient(Throwable exception) {
+        Throwable cause = Exceptions.unwrap(exception);
+        if (cause instanceof DownstreamUnavailableException) {
+            return false;
+        }
+        if (cause instanceof DownstreamRequestException) {
+            return isTransientStatus(((DownstreamRequestException) cause).getStatus().value());
+        }
+        if (cause instanceof WebClientResponseException) {
+            return isTransientStatus(((WebClientResponseException) cause).getRawStatusCode());
+        }
+        if (cause instanceof BaseServerResponseException) {
+            return isTransientStatus(((BaseServerResponseException) cause).getStatusCode());
+        }
+        return cause instanceof FhirClientConnectionException || cause instanceof IOException
+                || cause instanceof TimeoutException || cause.getCause() instanceof IOException;
+    }
+
+    private static boolean isConnectionRefused(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Status of a response which should be retried, as the exception the caller would have seen.
+     */
+    static DownstreamRequestException transientResponse(String request, int status) {
+        return new DownstreamRequestException(request + " request failed with status: " + status,
+                HttpStatus.valueOf(status));
+    }
+}
@@ -0,0 +1,76 @@
+package com.capable.physiciandss.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "phdss.resilience")
+public class ResilienceProperties {
+
+    private PolicyDefinition deonticsPrs = new PolicyDefinition();
+    private PolicyDefinition deonticsDre = new PolicyDefinition();
+    private PolicyDefinition hapi = new PolicyDefinition(Arrays.asList("GET", "PUT"));
+    private PolicyDefinition gocom = new PolicyDefinition();
+    private LimiterDefinition deonticsLimiter = new LimiterDefinition();
+
+    @Data
+    public static class PolicyDefinition {
+        /**
+         * Retries of a failed call after the first attempt, 0 disables retrying.
+         */
+        private int maxRetries = 2;
+        private long initialBackoffMs = 100;
+        private long maxBackoffMs = 2000;
+        /**
+         * Share of each backoff which is randomized, between 0 and 1.
+         */
+        private double jitter = 0.5;
+        /**
+         * HTTP methods which are safe to repeat; other calls are only retried when the connection was refused.
+         */
+        private List<String> retryMethods;
+        /**
+         * Percentage of failed calls in the sliding window which opens the circuit breaker.
+         */
+        private int failureRateThreshold = 50;
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 10;
+        private long openDurationMs = 10000;
+        private int halfOpenProbes = 1;
+
+        public PolicyDefinition() {
+            this(Arrays.asList("GET"));
+        }
+
+        public PolicyDefinition(List<String> retryMethods) {
+            this.retryMethods = new ArrayList<>(retryMethods);
+        }
+    }
+
+    @Data
+    public static class LimiterDefinition {
+        /**
+         * Average requests per second, 0 means no rate limit.
+         */
+        private double ratePerSecond = 100;
+        private int burst = 20;
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        /**
+         * Factor the concurrency limit is multiplied by when the service shows it is overloaded.
+         */
+        private double backoffRatio = 0.9;
+        /**
+         * How many times the long term average latency the short term average may reach before the
+         * service is taken as overloaded.
+         */
+        private double latencyTolerance = 2.0;
+        private int queueSize = 10000;
+        private long queueTimeoutMs = 30000;
+    }
+}
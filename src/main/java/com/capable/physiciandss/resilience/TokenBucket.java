@@ -0,0 +1,34 @@
+package com.capable.physiciandss.resilience;
+
+/**
+ * Grants at most rate-per-second permits on average, with bursts of up to capacity permits.
+ */
+class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double ratePerSecond, double capacity, long nowNanos) {
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.refilledAt = nowNanos;
+    }
+
+    /**
+     * Takes a token when there is one.
+     *
+     * @return 0 when a token was taken, otherwise the nanoseconds until the next token is available
+     */
+    synchronized long tryAcquire(long nowNanos) {
+        tokens = Math.min(capacity, tokens + (nowNanos - refilledAt) * tokensPerNano);
+        refilledAt = nowNanos;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+}
@@ -0,0 +1,36 @@
+package com.capable.physiciandss.rules;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "phdss.rules")
+public class AbstractedDataRuleProperties {
+
+    private List<RuleDefinition> abstracted = new ArrayList<>();
+
+    @Data
+    public static class RuleDefinition {
+        /**
+         * Coding of the abstracted data item the rule answers, as "system|code".
+         */
+        private String concept;
+        /**
+         * Observation or MedicationRequest.
+         */
+        private String resourceType = "Observation";
+        /**
+         * Codings of the resources the rule looks at, as "system|code".
+         */
+        private List<String> codes = new ArrayList<>();
+        private Aggregation aggregation = Aggregation.EXISTS;
+        /**
+         * Number of 24 hour days before now the rule looks at, 0 means no time limit.
+         */
+        private int windowDays;
+        private int threshold = 1;
+    }
+}
@@ -0,0 +1,287 @@
+package com.capable.physiciandss.rules;
+
+import com.capable.physiciandss.flow.PatientSnapshot;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import org.hl7.fhir.r4.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers abstracted data items with the rules declared under phdss.rules.abstracted. Rules are compiled
+ * once into lookup tables from resource coding to rules, so all rules an enquiry needs are evaluated
+ * together in a single pass over the patient snapshot. Consecutive-days rules are answered from the
+ * patient's {@link PatientDayBuckets} instead and do not need their resources in the snapshot.
+ */
+@Component
+@EnableConfigurationProperties(AbstractedDataRuleProperties.class)
+public class AbstractedDataRules {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractedDataRules.class);
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private final Map<String, CompiledRule> rulesByConcept = new HashMap<>();
+    private final Map<String, List<CompiledRule>> observationRulesByCoding = new HashMap<>();
+    private final Map<String, List<CompiledRule>> medicationRequestRulesByCoding = new HashMap<>();
+    private final Map<String, Coding> dayBucketCodings = new LinkedHashMap<>();
+
+    public AbstractedDataRules(AbstractedDataRuleProperties properties) {
+        for (AbstractedDataRuleProperties.RuleDefinition definition : properties.getAbstracted()) {
+            CompiledRule rule = compile(definition);
+            if (rulesByConcept.putIfAbsent(rule.concept, rule) != null) {
+                throw new IllegalStateException("Duplicate abstracted data rule for concept " + rule.concept);
+            }
+            if (rule.aggregation == Aggregation.CONSECUTIVE_DAYS) {
+                rule.codings.forEach(coding -> dayBucketCodings.putIfAbsent(key(coding.getSystem(), coding.getCode()), coding));
+                continue;
+            }
+            Map<String, List<CompiledRule>> rulesByCoding = rule.observation
+                    ? observationRulesByCoding : medicationRequestRulesByCoding;
+            for (Coding coding : rule.codings) {
+                rulesByCoding.computeIfAbsent(key(coding.getSystem(), coding.getCode()), k -> new ArrayList<>()).add(rule);
+            }
+        }
+        log.info("AbstractedDataRules has been created with " + rulesByConcept.size() + " rules");
+    }
+
+    public boolean hasRule(String system, String code) {
+        return rulesByConcept.containsKey(key(system, code));
+    }
+
+    /**
+     * Observation codings kept in day buckets for consecutive-days rules.
+     */
+    public Collection<Coding> getDayBucketCodings() {
+        return Collections.unmodifiableCollection(dayBucketCodings.values());
+    }
+
+    public boolean needsDayBuckets(Collection<String> concepts) {
+        for (String concept : concepts) {
+            CompiledRule rule = rulesByConcept.get(concept);
+            if (rule != null && rule.aggregation == Aggregation.CONSECUTIVE_DAYS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds codings of the resources needed by the rule of the given concept to the snapshot request, and the
+     * window-days of Observation rules, so the snapshot only fetches the days the rules look at.
+     */
+    public void addRequirements(String system, String code, PatientSnapshot.Request request) {
+        CompiledRule rule = rulesByConcept.get(key(system, code));
+        if (rule == null || rule.aggregation == Aggregation.CONSECUTIVE_DAYS) {
+            return;
+        }
+        if (rule.observation) {
+            request.requireObservationWindow(rule.windowDays);
+        }
+        for (Coding coding : rule.codings) {
+            if (rule.observation) {
+                request.requireObservation(coding.getSystem(), coding.getCode());
+            } else {
+                request.requireMedicationRequest(coding.getSystem(), coding.getCode());
+            }
+        }
+    }
+
+    /**
+     * Evaluates the rules of the given concepts ("system|code") and returns their values keyed by concept.
+     * Concepts without a rule are left out. Day buckets are only needed when {@link #needsDayBuckets} says so.
+     */
+    public Map<String, String> evaluate(PatientSnapshot snapshot, PatientDayBuckets dayBuckets,
+                                        Collection<String> concepts, Date now) {
+        Map<CompiledRule, RuleState> states = new HashMap<>();
+        for (String concept : concepts) {
+            CompiledRule rule = rulesByConcept.get(concept);
+            if (rule != null) {
+                states.put(rule, new RuleState(rule));
+            }
+        }
+        if (states.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        long nowMs = now.getTime();
+        Set<CompiledRule> matchedRules = new HashSet<>();
+        for (ObservationView observation : snapshot.getObservations()) {
+            collectRules(observation.getCodings(), observationRulesByCoding, states, matchedRules);
+            if (matchedRules.isEmpty()) {
+                continue;
+            }
+            for (CompiledRule rule : matchedRules) {
+                states.get(rule).acceptDated(observation.getEffective(), nowMs);
+            }
+            matchedRules.clear();
+        }
+        for (MedicationRequestView medicationRequest : snapshot.getMedicationRequests()) {
+            collectRules(medicationRequest.getCodings(), medicationRequestRulesByCoding, states, matchedRules);
+            for (CompiledRule rule : matchedRules) {
+                RuleState state = states.get(rule);
+                if (rule.aggregation == Aggregation.ACTIVE_DOSAGE) {
+                    state.acceptDosage(medicationRequest);
+                } else {
+                    state.acceptDated(medicationRequest.getAuthoredOn(), nowMs);
+                }
+            }
+            matchedRules.clear();
+        }
+        LocalDate today = now.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        Map<String, String> values = new HashMap<>();
+        states.forEach((rule, state) -> {
+            boolean satisfied = rule.aggregation == Aggregation.CONSECUTIVE_DAYS
+                    ? dayBuckets != null && dayBuckets.hasEachOfLastDays(rule.codings, rule.windowDays, today)
+                    : state.isSatisfied(now);
+            values.put(rule.concept, satisfied ? "1" : "0");
+        });
+        return values;
+    }
+
+    public static String key(String system, String code) {
+        return system + '|' + code;
+    }
+
+    private static void collectRules(List<Coding> codings, Map<String, List<CompiledRule>> rulesByCoding,
+                                     Map<CompiledRule, RuleState> states, Set<CompiledRule> matchedRules) {
+        for (Coding coding : codings) {
+            List<CompiledRule> rules = rulesByCoding.get(key(coding.getSystem(), coding.getCode()));
+            if (rules == null) {
+                continue;
+            }
+            for (CompiledRule rule : rules) {
+                if (states.containsKey(rule)) {
+                    matchedRules.add(rule);
+                }
+            }
+        }
+    }
+
+    private static CompiledRule compile(AbstractedDataRuleProperties.RuleDefinition definition) {
+        if (definition.getConcept() == null || definition.getConcept().indexOf('|') < 0) {
+            throw new IllegalStateException("Abstracted data rule needs a concept as system|code, got: "
+                    + definition.getConcept());
+        }
+        boolean observation;
+        switch (definition.getResourceType()) {
+            case "Observation":
+                observation = true;
+                break;
+            case "MedicationRequest":
+                observation = false;
+                break;
+            default:
+                throw new IllegalStateException("Unsupported resource type " + definition.getResourceType()
+                        + " in rule for " + definition.getConcept());
+        }
+        if (definition.getCodes().isEmpty()) {
+            throw new IllegalStateException("Rule for " + definition.getConcept() + " has no codes");
+        }
+        boolean windowed = definition.getAggregation() == Aggregation.COUNT_PER_DAY
+                || definition.getAggregation() == Aggregation.CONSECUTIVE_DAYS;
+        if (windowed && definition.getWindowDays() <= 0) {
+            throw new IllegalStateException("Rule for " + definition.getConcept() + " with aggregation "
+                    + definition.getAggregation() + " needs window-days");
+        }
+        if (definition.getAggregation() == Aggregation.CONSECUTIVE_DAYS
+                && (!observation || definition.getWindowDays() > PatientDayBuckets.MAX_DAYS)) {
+            throw new IllegalStateException("Rule for " + definition.getConcept() + " with aggregation "
+                    + Aggregation.CONSECUTIVE_DAYS + " needs Observation resources and at most "
+                    + PatientDayBuckets.MAX_DAYS + " window-days");
+        }
+        if (definition.getAggregation() == Aggregation.ACTIVE_DOSAGE && observation) {
+            throw new IllegalStateException("Rule for " + definition.getConcept()
+                    + " uses " + Aggregation.ACTIVE_DOSAGE + " which needs MedicationRequest resources");
+        }
+        List<Coding> codings = new ArrayList<>();
+        for (String code : definition.getCodes()) {
+            String[] systemAndCode = code.split("\\|", 2);
+            if (systemAndCode.length != 2) {
+                throw new IllegalStateException("Code " + code + " in rule for " + definition.getConcept()
+                        + " is not system|code");
+            }
+            codings.add(new Coding(systemAndCode[0], systemAndCode[1], null));
+        }
+        return new CompiledRule(definition.getConcept(), observation, codings, definition.getAggregation(),
+                definition.getWindowDays(), definition.getThreshold());
+    }
+
+    private static class CompiledRule {
+        private final String concept;
+        private final boolean observation;
+        private final List<Coding> codings;
+        private final Aggregation aggregation;
+        private final int windowDays;
+        private final int threshold;
+
+        private CompiledRule(String concept, boolean observation, List<Coding> codings, Aggregation aggregation,
+                             int windowDays, int threshold) {
+            this.concept = concept;
+            this.observation = observation;
+            this.codings = codings;
+            this.aggregation = aggregation;
+            this.windowDays = windowDays;
+            this.threshold = threshold;
+        }
+    }
+
+    private static class RuleState {
+        private final CompiledRule rule;
+        private final int[] dayCounts;
+        private boolean matched;
+        private Period newestDosage;
+
+        private RuleState(CompiledRule rule) {
+            this.rule = rule;
+            this.dayCounts = new int[rule.windowDays];
+        }
+
+        private void acceptDated(Date date, long nowMs) {
+            if (rule.windowDays == 0) {
+                matched = true;
+                return;
+            }
+            if (date == null || date.getTime() > nowMs) {
+                return;
+            }
+            long day = (nowMs - date.getTime()) / DAY_MS;
+            if (day < rule.windowDays) {
+                dayCounts[(int) day]++;
+                matched = true;
+            }
+        }
+
+        private void acceptDosage(MedicationRequestView medicationRequest) {
+            for (Period period : medicationRequest.getDosageBounds()) {
+                if (period.getEnd() != null
+                        && (newestDosage == null || period.getEnd().after(newestDosage.getEnd()))) {
+                    newestDosage = period;
+                }
+            }
+        }
+
+        private boolean isSatisfied(Date now) {
+            switch (rule.aggregation) {
+                case EXISTS:
+                    return matched;
+                case COUNT_PER_DAY:
+                    for (int count : dayCounts) {
+                        if (count >= rule.threshold) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case ACTIVE_DOSAGE:
+                    return newestDosage != null && newestDosage.getStart() != null
+                            && newestDosage.getStart().before(now) && newestDosage.getEnd().after(now);
+                default:
+                    return false;
+            }
+        }
+    }
+}
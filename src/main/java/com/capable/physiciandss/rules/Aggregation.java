@@ -0,0 +1,24 @@
+package com.capable.physiciandss.rules;
+
+/**
+ * How the resources matched by an abstracted data rule are turned into the item value ("1" or "0").
+ */
+public enum Aggregation {
+    /**
+     * At least one matching resource inside the window (anywhere in the history when window-days is 0).
+     */
+    EXISTS,
+    /**
+     * At least threshold matching resources within one day of the window.
+     */
+    COUNT_PER_DAY,
+    /**
+     * At least one matching Observation on each calendar day of the window, today included. Answered from
+     * the patient's day buckets.
+     */
+    CONSECUTIVE_DAYS,
+    /**
+     * The matching MedicationRequest with the latest dosage end has a dosage period containing now.
+     */
+    ACTIVE_DOSAGE
+}
@@ -0,0 +1,102 @@
+package com.capable.physiciandss.rules;
+
+import org.hl7.fhir.r4.model.Coding;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calendar days on which a patient had Observations of given codings, kept as one 64 bit bitmap per coding:
+ * bit i is set when there was an Observation i days before the newest recorded day. Recording a day and
+ * asking whether each of the last N days had an Observation are both constant time.
+ */
+public class PatientDayBuckets {
+
+    public static final int MAX_DAYS = Long.SIZE;
+    private final Map<String, Bitmap> bitmaps = new HashMap<>();
+    private volatile boolean loaded;
+
+    public synchronized void record(String system, String code, LocalDate day) {
+        bitmaps.computeIfAbsent(AbstractedDataRules.key(system, code), k -> new Bitmap()).set(day.toEpochDay());
+    }
+
+    /**
+     * Whether each of the days calendar days ending with today had an Observation with any of the codings.
+     */
+    public synchronized boolean hasEachOfLastDays(Collection<Coding> codings, int days, LocalDate today) {
+        long todayEpochDay = today.toEpochDay();
+        long bits = 0;
+        for (Coding coding : codings) {
+            Bitmap bitmap = bitmaps.get(AbstractedDataRules.key(coding.getSystem(), coding.getCode()));
+            if (bitmap != null) {
+                bits |= bitmap.endingAt(todayEpochDay);
+            }
+        }
+        long mask = days >= MAX_DAYS ? -1L : (1L << days) - 1;
+        return (bits & mask) == mask;
+    }
+
+    public synchronized void merge(PatientDayBuckets other) {
+        synchronized (other) {
+            other.bitmaps.forEach((key, bitmap) -> bitmaps.computeIfAbsent(key, k -> new Bitmap()).or(bitmap));
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void markLoaded() {
+        loaded = true;
+    }
+
+    private static class Bitmap {
+        private long newestDay = Long.MIN_VALUE;
+        private long bits;
+
+        private void set(long epochDay) {
+            if (newestDay == Long.MIN_VALUE) {
+                newestDay = epochDay;
+            } else if (epochDay > newestDay) {
+                bits = shift(bits, epochDay - newestDay);
+                newestDay = epochDay;
+            }
+            long age = newestDay - epochDay;
+            if (age < MAX_DAYS) {
+                bits |= 1L << age;
+            }
+        }
+
+        private long endingAt(long epochDay) {
+            if (newestDay == Long.MIN_VALUE) {
+                return 0;
+            }
+            if (epochDay >= newestDay) {
+                return shift(bits, epochDay - newestDay);
+            }
+            long laterDays = newestDay - epochDay;
+            return laterDays >= MAX_DAYS ? 0 : bits >>> laterDays;
+        }
+
+        private void or(Bitmap other) {
+            if (other.newestDay == Long.MIN_VALUE) {
+                return;
+            }
+            if (newestDay == Long.MIN_VALUE) {
+                newestDay = other.newestDay;
+                bits = other.bits;
+            } else if (other.newestDay > newestDay) {
+                bits = shift(bits, other.newestDay - newestDay) | other.bits;
+                newestDay = other.newestDay;
+            } else {
+                bits |= other.endingAt(newestDay);
+            }
+        }
+
+        private static long shift(long bits, long days) {
+            return days >= MAX_DAYS ? 0 : bits << days;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.capable.physiciandss.rules;
+
+import com.capable.physiciandss.hapi.FhirViews;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import com.capable.physiciandss.services.FhirGateway;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Observation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Per patient day buckets of the Observation codings used by consecutive-days rules. Buckets are updated
+ * from Observations arriving with Communications and are built from the patient's history in HAPI FHIR
+ * the first time they are needed (and again after the patient has been evicted), so answering a rule
+ * does not need to download the history on every evaluation. Only the days the buckets can hold are
+ * downloaded.
+ */
+@Component
+public class TemporalSymptomState {
+
+    private static final Logger log = LoggerFactory.getLogger(TemporalSymptomState.class);
+    private final FhirGateway fhirGateway;
+    private final Collection<Coding> trackedCodings;
+    private final Set<String> trackedKeys = new HashSet<>();
+    private final Cache<String, PatientDayBuckets> patients;
+
+    public TemporalSymptomState(FhirGateway fhirGateway, AbstractedDataRules abstractedDataRules,
+                                @Value("${phdss.rules.day-buckets.maximum-patients:100000}") long maximumPatients,
+                                @Value("${phdss.rules.day-buckets.idle-expiry-ms:86400000}") long idleExpiryMs) {
+        this.fhirGateway = fhirGateway;
+        this.trackedCodings = abstractedDataRules.getDayBucketCodings();
+        for (Coding coding : trackedCodings) {
+            trackedKeys.add(AbstractedDataRules.key(coding.getSystem(), coding.getCode()));
+        }
+        this.patients = Caffeine.newBuilder()
+                .maximumSize(maximumPatients)
+                .expireAfterAccess(Duration.ofMillis(idleExpiryMs))
+                .build();
+        log.info("TemporalSymptomState has been created, tracking " + trackedKeys.size() + " codings");
+    }
+
+    /**
+     * Records a new Observation of the patient. Patients without buckets are skipped, their buckets will
+     * include the Observation when they are built from HAPI FHIR.
+     */
+    public void onObservation(String patientId, Observation observation) {
+        PatientDayBuckets buckets = patients.getIfPresent(patientId);
+        if (buckets != null) {
+            record(buckets, FhirViews.toObservationView(observation));
+        }
+    }
+
+    public Mono<PatientDayBuckets> getDayBuckets(String patientId) {
+        PatientDayBuckets buckets = patients.get(patientId, id -> new PatientDayBuckets());
+        if (buckets.isLoaded() || trackedCodings.isEmpty()) {
+            return Mono.just(buckets);
+        }
+        Date firstDay = Date.from(LocalDate.now().minusDays(PatientDayBuckets.MAX_DAYS - 1)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return fhirGateway
+                .getObservationViews(patientId, trackedCodings, firstDay)
+                .map(observations -> {
+                    PatientDayBuckets history = new PatientDayBuckets();
+                    observations.forEach(observation -> record(history, observation));
+                    buckets.merge(history);
+                    buckets.markLoaded();
+                    log.debug("[getDayBuckets]\tBuilt day buckets from " + observations.size()
+                            + " observations for patient with id: " + patientId);
+                    return buckets;
+                });
+    }
+
+    public long getPatientCount() {
+        return patients.estimatedSize();
+    }
+
+    private void record(PatientDayBuckets buckets, ObservationView observation) {
+        if (observation.getEffective() == null) {
+            return;
+        }
+        LocalDate day = observation.getEffective().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        for (Coding coding : observation.getCodings()) {
+            if (trackedKeys.contains(AbstractedDataRules.key(coding.getSystem(), coding.getCode()))) {
+                buckets.record(coding.getSystem(), coding.getCode(), day);
+            }
+        }
+    }
+}
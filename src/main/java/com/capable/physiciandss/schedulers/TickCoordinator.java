@@ -0,0 +1,216 @@
+package com.capable.physiciandss.schedulers;
+
+import com.capable.physiciandss.flow.ProcessFlow;
+import com.capable.physiciandss.hapi.FhirResources;
+import com.capable.physiciandss.services.HapiRequestService;
+import org.hl7.fhir.r4.model.Communication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes sure only one scheduler tick processes Communications at a time. Ticks which fire while
+ * another one is still running are skipped and counted. Each tick handles at most a configured
+ * number of Communications within a configured time; whatever is left stays in the backlog and
+ * is handled first by the next tick.
+ * <p>
+ * In "full" polling mode every tick searches all in-progress Communications. In "incremental" mode
+ * only Communications updated after the watermark are searched. The persisted watermark never moves past
+ * a Communication which is still waiting in the backlog, so after a restart polling resumes from it
+ * without losing the backlog; only when no watermark has been persisted yet the first tick does a full
+ * search.
+ */
+@Component
+public class TickCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(TickCoordinator.class);
+    private final ProcessFlow processFlow;
+    private final HapiRequestService hapiRequestService;
+    private final WatermarkStore watermarkStore;
+    private final boolean incrementalPolling;
+    private final int pageSize;
+    private final long watermarkOverlapMs;
+    private final int maxItemsPerTick;
+    private final long timeBudgetMs;
+    private final int chunkSize;
+    private final AtomicBoolean tickInProgress = new AtomicBoolean(false);
+    private final AtomicLong skippedTicks = new AtomicLong();
+    private final LinkedHashMap<String, Communication> backlog = new LinkedHashMap<>();
+    private Instant watermark;
+    private Instant savedWatermark;
+    private boolean watermarkReady = false;
+
+    public TickCoordinator(ProcessFlow processFlow, HapiRequestService hapiRequestService, WatermarkStore watermarkStore,
+                           @Value("${phdss.scheduler.max-items-per-tick:1000}") int maxItemsPerTick,
+                           @Value("${phdss.scheduler.time-budget-ms:8000}") long timeBudgetMs,
+                           @Value("${phdss.scheduler.chunk-size:100}") int chunkSize,
+                           @Value("${phdss.polling.mode:full}") String pollingMode,
+                           @Value("${phdss.polling.page-size:200}") int pageSize,
+                           @Value("${phdss.polling.watermark-overlap-ms:1000}") long watermarkOverlapMs) {
+        this.processFlow = processFlow;
+        this.hapiRequestService = hapiRequestService;
+        this.watermarkStore = watermarkStore;
+        this.incrementalPolling = "incremental".equals(pollingMode);
+        this.pageSize = pageSize;
+        this.watermarkOverlapMs = watermarkOverlapMs;
+        this.maxItemsPerTick = maxItemsPerTick;
+        this.timeBudgetMs = timeBudgetMs;
+        this.chunkSize = chunkSize;
+    }
+
+    public void runTick() {
+        if (!tickInProgress.compareAndSet(false, true)) {
+            log.warn("Previous tick is still running, skipping this one. Skipped ticks so far: "
+                    + skippedTicks.incrementAndGet());
+            return;
+        }
+        try {
+            refreshBacklog();
+            processBacklog();
+            if (incrementalPolling) {
+                saveWatermark();
+            }
+        } finally {
+            tickInProgress.set(false);
+        }
+    }
+
+    public long getSkippedTickCount() {
+        return skippedTicks.get();
+    }
+
+    public void forget(String communicationId) {
+        synchronized (backlog) {
+            backlog.remove(communicationId);
+        }
+    }
+
+    public int getBacklogSize() {
+        synchronized (backlog) {
+            return backlog.size();
+        }
+    }
+
+    private void refreshBacklog() {
+        if (incrementalPolling && !watermarkReady && watermark == null) {
+            watermark = watermarkStore.load().orElse(null);
+            savedWatermark = watermark;
+            watermarkReady = watermark != null;
+        }
+        if (incrementalPolling && watermarkReady) {
+            addToBacklog(fetchIncrementally());
+            return;
+        }
+        List<Communication> communications = hapiRequestService
+                .getCommunicationList(Communication.CommunicationStatus.INPROGRESS);
+        Map<String, Communication> fetched = new LinkedHashMap<>();
+        communications.forEach(communication -> fetched.put(communication.getIdElement().getIdPart(), communication));
+        synchronized (backlog) {
+            backlog.values().removeIf(communication -> !FhirResources.hasPendingClaim(communication)
+                    && !fetched.containsKey(communication.getIdElement().getIdPart()));
+            fetched.values().forEach(this::putInBacklog);
+        }
+        if (incrementalPolling) {
+            advanceWatermark(communications);
+            watermarkReady = true;
+        }
+    }
+
+    private List<Communication> fetchIncrementally() {
+        Date lastUpdatedAfter = watermark == null ? null : Date.from(watermark.minusMillis(watermarkOverlapMs));
+        List<Communication> communications = hapiRequestService.getCommunicationListUpdatedAfter(
+                Communication.CommunicationStatus.INPROGRESS, lastUpdatedAfter, pageSize);
+        advanceWatermark(communications);
+        return communications;
+    }
+
+    private void advanceWatermark(List<Communication> communications) {
+        Instant newWatermark = watermark;
+        for (Communication communication : communications) {
+            Date lastUpdated = communication.getMeta().getLastUpdated();
+            if (lastUpdated != null && (newWatermark == null || lastUpdated.toInstant().isAfter(newWatermark))) {
+                newWatermark = lastUpdated.toInstant();
+            }
+        }
+        watermark = newWatermark;
+    }
+
+    private void saveWatermark() {
+        Instant handedOff = watermark;
+        synchronized (backlog) {
+            for (Communication communication : backlog.values()) {
+                Date lastUpdated = communication.getMeta().getLastUpdated();
+                if (lastUpdated != null && handedOff != null && !lastUpdated.toInstant().isAfter(handedOff)) {
+                    handedOff = lastUpdated.toInstant().minusMillis(1);
+                }
+            }
+        }
+        if (handedOff != null && (savedWatermark == null || handedOff.isAfter(savedWatermark))) {
+            savedWatermark = handedOff;
+            watermarkStore.save(handedOff);
+        }
+    }
+
+    private void addToBacklog(List<Communication> communications) {
+        synchronized (backlog) {
+            communications.forEach(this::putInBacklog);
+        }
+    }
+
+    /**
+     * Newly read copies replace older ones, so claims use the current version, except for copies whose claim
+     * outcome is still unknown: their claim id is needed to tell whether they were claimed by this service.
+     */
+    private void putInBacklog(Communication communication) {
+        backlog.merge(communication.getIdElement().getIdPart(), communication,
+                (existing, incoming) -> FhirResources.hasPendingClaim(existing) ? existing : incoming);
+    }
+
+    private void processBacklog() {
+        long tickStart = System.currentTimeMillis();
+        int processed = 0;
+        List<Communication> toRetry = new ArrayList<>();
+        try {
+            while (processed < maxItemsPerTick && System.currentTimeMillis() - tickStart < timeBudgetMs) {
+                List<Communication> chunk = takeChunk(Math.min(chunkSize, maxItemsPerTick - processed));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                try {
+                    toRetry.addAll(processFlow.processCommunications(chunk));
+                } catch (RuntimeException e) {
+                    log.warn("Processing a chunk of " + chunk.size()
+                            + " communications failed, returning it to the backlog: " + e.getMessage());
+                    toRetry.addAll(chunk);
+                    break;
+                }
+                processed += chunk.size();
+            }
+        } finally {
+            addToBacklog(toRetry);
+        }
+        int left = getBacklogSize();
+        if (left > 0) {
+            log.info("Tick processed " + processed + " communications in " + (System.currentTimeMillis() - tickStart)
+                    + " ms, " + left + " left for the next tick");
+        }
+    }
+
+    private List<Communication> takeChunk(int size) {
+        List<Communication> chunk = new ArrayList<>(size);
+        synchronized (backlog) {
+            Iterator<Communication> iterator = backlog.values().iterator();
+            while (iterator.hasNext() && chunk.size() < size) {
+                chunk.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        return chunk;
+    }
+}
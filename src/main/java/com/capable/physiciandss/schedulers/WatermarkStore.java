@@ -0,0 +1,55 @@
+package com.capable.physiciandss.schedulers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Keeps the _lastUpdated watermark of incremental Communication polling in a local file,
+ * so that after a restart polling resumes where it stopped.
+ */
+@Component
+public class WatermarkStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WatermarkStore.class);
+    private final Path watermarkFile;
+
+    public WatermarkStore(@Value("${phdss.polling.watermark-file:data/communication-watermark}") String watermarkFile) {
+        this.watermarkFile = Paths.get(watermarkFile);
+    }
+
+    public Optional<Instant> load() {
+        if (!Files.exists(watermarkFile)) {
+            return Optional.empty();
+        }
+        try {
+            String value = new String(Files.readAllBytes(watermarkFile), StandardCharsets.UTF_8).trim();
+            return value.isEmpty() ? Optional.empty() : Optional.of(Instant.parse(value));
+        } catch (Exception e) {
+            log.warn("Could not read watermark from " + watermarkFile + ", starting from scratch", e);
+            return Optional.empty();
+        }
+    }
+
+    public void save(Instant watermark) {
+        try {
+            Path parent = watermarkFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temporaryFile = Files.createTempFile(parent, "watermark", ".tmp");
+            Files.write(temporaryFile, watermark.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryFile, watermarkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save watermark to " + watermarkFile, e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.capable.physiciandss.services;
+
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import com.capable.physiciandss.resilience.ResiliencePolicies;
+import com.capable.physiciandss.resilience.ResiliencePolicy;
+import com.capable.physiciandss.tracing.Tracer;
+import org.hl7.fhir.r4.model.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Serves {@link FhirGateway} with the blocking {@link HapiRequestService}. Calls run on the bounded elastic
+ * scheduler, so they never block Reactor Netty event-loop threads of the Deontics calls they are chained to.
+ * The current span of the Reactor Context becomes the current span of the thread making the call. Calls are
+ * guarded by the HAPI FHIR resilience policy; creates are not retried as they are not idempotent, and neither
+ * are the conditional Communication claims, whose retry after a lost response would fail with a 412.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "phdss.flow.mode", havingValue = "blocking", matchIfMissing = true)
+public class BlockingFhirGateway implements FhirGateway {
+
+    private final HapiRequestService hapiRequestService;
+    private final Tracer tracer;
+    private final ResiliencePolicy resiliencePolicy;
+
+    public BlockingFhirGateway(HapiRequestService hapiRequestService, Tracer tracer,
+                               ResiliencePolicies resiliencePolicies) {
+        this.hapiRequestService = hapiRequestService;
+        this.tracer = tracer;
+        this.resiliencePolicy = resiliencePolicies.getHapi();
+    }
+
+    @Override
+    public Mono<Observation> getObservation(String id) {
+        return blocking(() -> hapiRequestService.getObservation(id));
+    }
+
+    @Override
+    public Mono<MedicationRequest> getMedicationRequest(String id) {
+        return blocking(() -> hapiRequestService.getMedicationRequest(id));
+    }
+
+    @Override
+    public Mono<Communication> getCommunication(String id) {
+        return blocking(() -> hapiRequestService.getCommunication(id));
+    }
+
+    @Override
+    public Mono<Observation> getLatestObservation(String subjectId, String system, String ontologyCoding,
+                                                  Date notBefore) {
+        return blocking(() -> hapiRequestService
+                .getLatestObservation(subjectId, system, ontologyCoding, notBefore)
+                .orElse(null));
+    }
+
+    @Override
+    public Mono<List<ObservationView>> getObservationViews(String subjectId, Collection<Coding> codings,
+                                                           Date notBefore) {
+        return blocking(() -> hapiRequestService.getObservationViews(subjectId, codings, notBefore));
+    }
+
+    @Override
+    public Mono<List<MedicationRequestView>> getMedicationRequestViews(String subjectId, Collection<Coding> codings,
+                                                                       MedicationRequest.MedicationRequestStatus status) {
+        return blocking(() -> hapiRequestService.getMedicationRequestViews(subjectId, codings, status));
+    }
+
+    @Override
+    public Mono<List<Task>> getTaskListWithFocus(String patientId, Task.TaskStatus status, String focusType) {
+        return blocking(() -> hapiRequestService.getTaskListWithFocus(patientId, status, focusType));
+    }
+
+    @Override
+    public Mono<String> createObservation(String system, String ontologyCoding, Observation.ObservationStatus status) {
+        return blockingCreate(() -> hapiRequestService.createObservation(system, ontologyCoding, status));
+    }
+
+    @Override
+    public Mono<String> createMedicationRequest(MedicationRequest medicationRequest,
+                                                MedicationRequest.MedicationRequestStatus status,
+                                                MedicationRequest.MedicationRequestIntent medicationRequestIntent,
+                                                String patientId) {
+        return blockingCreate(() -> hapiRequestService
+                .createMedicationRequest(medicationRequest, status, medicationRequestIntent, patientId));
+    }
+
+    @Override
+    public Mono<String> createCommunication(Communication.CommunicationStatus status, String referenceId) {
+        return blockingCreate(() -> hapiRequestService.createCommunication(status, referenceId));
+    }
+
+    @Override
+    public Mono<Boolean> updateCommunication(Communication communication, Communication.CommunicationStatus status) {
+        return blockingCreate(() -> hapiRequestService.updateCommunication(communication, status));
+    }
+
+    @Override
+    public Mono<List<EntryOutcome>> updateCommunications(List<Communication> communications,
+                                                         Communication.CommunicationStatus status) {
+        return blockingCreate(() -> hapiRequestService.updateCommunications(communications, status));
+    }
+
+    @Override
+    public Mono<Void> createTask(Reference patient, Reference resource) {
+        return blockingCreate(() -> {
+            hapiRequestService.createTask(patient, resource);
+            return null;
+        }).then();
+    }
+
+    @Override
+    public Mono<Void> updateTask(Task task, Task.TaskStatus status) {
+        return blockingAction(() -> hapiRequestService.updateTask(task, status));
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return resiliencePolicy.apply(inScope(call), true);
+    }
+
+    private <T> Mono<T> blockingCreate(Callable<T> call) {
+        return resiliencePolicy.apply(inScope(call), false);
+    }
+
+    private <T> Mono<T> inScope(Callable<T> call) {
+        return Mono.subscriberContext()
+                .flatMap(context -> Mono.fromCallable(() -> tracer.inScope(context, call)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Void> blockingAction(Runnable call) {
+        return blocking(() -> {
+            call.run();
+            return null;
+        }).then();
+    }
+}
@@ -1,48 +1,71 @@
 package com.capable.physiciandss.services;
 
 
-import com.capable.physiciandss.configuration.WebClientConfig;
 import com.capable.physiciandss.model.deontics.get.*;
 import com.capable.physiciandss.model.deontics.post.EnactBody;
 import com.capable.physiciandss.model.deontics.post.EnactOutput;
 import com.capable.physiciandss.model.deontics.put.*;
 import com.capable.physiciandss.utils.Constants;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 
 @Service
 public class DeonticsRequestService extends RootService {
 
-    WebClient webClient;
+    private final WebClient webClient;
+    /**
+     * Pathway catalog responses keyed by the single query parameter of the PRS Pathways endpoint.
+     */
+    private final AsyncLoadingCache<Map.Entry<String, String>, Pathway[]> pathwayCache;
 
-
-    public DeonticsRequestService() {
+    public DeonticsRequestService(@Qualifier("webClient") WebClient webClient,
+                                  @Value("${phdss.deontics.pathway-cache.ttl-ms:600000}") long pathwayCacheTtlMs,
+                                  @Value("${phdss.deontics.pathway-cache.refresh-after-ms:300000}") long pathwayCacheRefreshMs,
+                                  @Value("${phdss.deontics.pathway-cache.maximum-size:100}") long pathwayCacheMaximumSize,
+                                  DownstreamMetrics metrics) {
         log = LoggerFactory.getLogger(this.getClass().getName());
-        ApplicationContext context = new AnnotationConfigApplicationContext(WebClientConfig.class);
-        webClient = context.getBean("webClient", WebClient.class);
+        this.webClient = webClient;
+        this.metrics = metrics;
+        this.downstream = DownstreamMetrics.DEONTICS;
+        this.pathwayCache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(pathwayCacheTtlMs))
+                .refreshAfterWrite(Duration.ofMillis(pathwayCacheRefreshMs))
+                .maximumSize(pathwayCacheMaximumSize)
+                .recordStats()
+                .buildAsync((query, executor) -> fetchPathways(query).toFuture());
         log.info("DeonticsRequestService has been created");
     }
 
+    public CacheStats getPathwayCacheStats() {
+        return pathwayCache.synchronous().stats();
+    }
+
     public Mono<Enactment[]> getEnactments() {
-        return webClient.get()
+        return timed("getEnactments", webClient.get()
                 .uri(Constants.PRS_API_URL + "/Enactments")
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getEnactments"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getEnactments"))
-                .bodyToMono(Enactment[].class);
+                .bodyToMono(Enactment[].class));
     }
 
     public Mono<Enactment[]> getEnactmentsByPatientId(String patientId) {
-        return webClient.get()
+        return timed("getEnactmentsByPatientId", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path(Constants.PRS_API_URL + "/EnactmentsExtended")
                         .queryParam("groupid", patientId)
@@ -50,11 +73,11 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getEnactmentsByPatientId"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getEnactmentsByPatientId"))
-                .bodyToMono(Enactment[].class);
+                .bodyToMono(Enactment[].class));
     }
 
     public Mono<Enactment[]> getEnactmentsByEnactmentId(String enactmentId) {
-        return webClient.get()
+        return timed("getEnactmentsByEnactmentId", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path(Constants.PRS_API_URL + "/EnactmentsExtended")
                         .queryParam("id", enactmentId)
@@ -62,35 +85,40 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getEnactmentsByEnactmentId"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getEnactmentsByEnactmentId"))
-                .bodyToMono(Enactment[].class);
+                .bodyToMono(Enactment[].class));
     }
 
     public Mono<Pathway[]> getPathway(boolean temp) {
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .path(Constants.PRS_API_URL + "/Pathways")
-                        .queryParam("temp", temp)
-                        .build())
-                .retrieve()
-                .onStatus(HttpStatus::isError, response -> onError(response, "getPathway"))
-                .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getPathway"))
-                .bodyToMono(Pathway[].class);
+        return cachedPathways(new AbstractMap.SimpleImmutableEntry<>("temp", String.valueOf(temp)));
     }
 
     public Mono<Pathway[]> getPathwayByName(String name) {
-        return webClient.get()
+        return cachedPathways(new AbstractMap.SimpleImmutableEntry<>("name", name));
+    }
+
+    /**
+     * Loads a cache miss within the caller's Reactor Context, so the PRS request is traced like any other.
+     */
+    private Mono<Pathway[]> cachedPathways(Map.Entry<String, String> query) {
+        return Mono.subscriberContext().flatMap(context -> Mono.fromFuture(pathwayCache.get(query,
+                (key, executor) -> fetchPathways(key).subscriberContext(context).toFuture())));
+    }
+
+    private Mono<Pathway[]> fetchPathways(Map.Entry<String, String> query) {
+        String methodName = "name".equals(query.getKey()) ? "getPathwayByName" : "getPathway";
+        return timed(methodName, webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path(Constants.PRS_API_URL + "/Pathways")
-                        .queryParam("name", name)
+                        .queryParam(query.getKey(), query.getValue())
                         .build())
                 .retrieve()
-                .onStatus(HttpStatus::isError, response -> onError(response, "getPathwayByName"))
-                .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getPathwayByName"))
-                .bodyToMono(Pathway[].class);
+                .onStatus(HttpStatus::isError, response -> onError(response, methodName))
+                .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess(methodName))
+                .bodyToMono(Pathway[].class));
     }
 
     public Mono<ItemData[]> getData(String enquiryName, String sessionId) {
-        return webClient.get()
+        return timed("getData", webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path(Constants.DRE_API_URL + "/Data")
                         .queryParam("enquiryname", enquiryName)
@@ -100,11 +128,11 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getData"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getData"))
-                .bodyToMono(ItemData[].class);
+                .bodyToMono(ItemData[].class));
     }
 
     public Mono<Connect> getConnect(String enactmentId) {
-        return webClient.get()
+        return timed("getConnect", webClient.get()
                 .uri(
                         uriBuilder -> uriBuilder
                                 .path(Constants.DRE_API_URL + "/Connect")
@@ -113,11 +141,11 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getConnect"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getConnect"))
-                .bodyToMono(Connect.class);
+                .bodyToMono(Connect.class));
     }
 
     public Mono<PlanTask> getTask(String runtimeid, String sessionId) {
-        return webClient.get()
+        return timed("getTask", webClient.get()
                 .uri(
                         uriBuilder -> uriBuilder
                                 .path(Constants.DRE_API_URL + "/Task")
@@ -127,11 +155,11 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getTask"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getTask"))
-                .bodyToMono(PlanTask.class);
+                .bodyToMono(PlanTask.class));
     }
 
     public Mono<PlanTask[]> getPlanTasks(String state, String sessionId) {
-        return webClient.get()
+        return timed("getPlanTasks", webClient.get()
                 .uri(
                         uriBuilder -> uriBuilder
                                 .path(Constants.DRE_API_URL + "/PlanTasks")
@@ -145,11 +173,11 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getPlanTasks"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getPlanTasks"))
-                .bodyToMono(PlanTask[].class);
+                .bodyToMono(PlanTask[].class));
     }
 
     public Mono<PlanTask[]> getPlanTasksUnderTask(String state, String taskName, String sessionId) {
-        return webClient.get()
+        return timed("getPlanTasksUnderTask", webClient.get()
                 .uri(
                         uriBuilder -> uriBuilder
                                 .path(Constants.DRE_API_URL + "/PlanTasks")
@@ -163,11 +191,11 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getPlanTasks"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getPlanTasks"))
-                .bodyToMono(PlanTask[].class);
+                .bodyToMono(PlanTask[].class));
     }
 
     public Mono<QueryConfirmTask> getQueryConfirmTask(String taskName, String sessionId) {
-        return webClient.get()
+        return timed("getQueryConfirmTask", webClient.get()
                 .uri(
                         uriBuilder -> uriBuilder
                                 .path(Constants.DRE_API_URL + "/QueryConfirmTask")
@@ -177,29 +205,29 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "getQueryConfirmTask"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("getQueryConfirmTask"))
-                .bodyToMono(QueryConfirmTask.class);
+                .bodyToMono(QueryConfirmTask.class));
     }
 
 
     public Mono<EnactOutput> postEnact(String pathwayuri, String patientid) {
-        return webClient.post()
+        return timed("postEnact", webClient.post()
                 .uri(Constants.DRE_API_URL + "/Enact")
                 .body(Mono.just(new EnactBody(pathwayuri, patientid)), EnactBody.class)
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "postEnact"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("postEnact"))
-                .bodyToMono(EnactOutput.class);
+                .bodyToMono(EnactOutput.class));
     }
 
     public Mono<DataValueOutput> putDataValue(String name, String value, String sessionId) {
-        return webClient.put()
+        return timed("putDataValue", webClient.put()
                 .uri(Constants.DRE_API_URL + "/DataValue")
                 .header("x-dresessionid", sessionId)
                 .body(Mono.just(new DataValueBody(name, value)), DataValueBody.class)
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "putDataValue"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("putDataValue"))
-                .bodyToMono(DataValueOutput.class);
+                .bodyToMono(DataValueOutput.class));
     }
 
     public Mono<DataValueOutput[]> putDataValues(HashMap<String, String> dataItemNameValuesMap, String sessionId) {
@@ -212,29 +240,29 @@ public class DeonticsRequestService extends RootService {
                 }
         );
         dataValuesBody.setDataValueBodies(dataValueBodyArrayList.toArray(new DataValueBody[0]));
-        return webClient.put()
+        return timed("putDataValues", webClient.put()
                 .uri(Constants.DRE_API_URL + "/DataValue")
                 .header("x-dresessionid", sessionId)
                 .body(Mono.just(dataValuesBody.getDataValueBodies()), DataValueBody[].class)
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "putDataValue"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("putDataValue"))
-                .bodyToMono(DataValueOutput[].class);
+                .bodyToMono(DataValueOutput[].class));
     }
 
     public Mono<ConfirmTaskOutput> putConfirmTask(String name, String sessionId) {
-        return webClient.put()
+        return timed("putConfirmTask", webClient.put()
                 .uri(Constants.DRE_API_URL + "/ConfirmTask")
                 .header("x-dresessionid", sessionId)
                 .body(Mono.just(new ConfirmTaskBody(name)), ConfirmTaskBody.class)
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "putConfirmTask"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("putConfirmTask"))
-                .bodyToMono(ConfirmTaskOutput.class);
+                .bodyToMono(ConfirmTaskOutput.class));
     }
 
     public Mono<EnactmentDeleteOutput> putEnactmentDelete(String enactmentid, String sessionId) {
-        return webClient.put()
+        return timed("putEnactmentDelete", webClient.put()
                 .uri(
                         uriBuilder -> uriBuilder
                                 .path(Constants.PRS_API_URL + "/EnactmentDelete")
@@ -244,7 +272,7 @@ public class DeonticsRequestService extends RootService {
                 .retrieve()
                 .onStatus(HttpStatus::isError, response -> onError(response, "putEnactmentDelete"))
                 .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("putEnactmentDelete"))
-                .bodyToMono(EnactmentDeleteOutput.class);
+                .bodyToMono(EnactmentDeleteOutput.class));
     }
 
 }
@@ -0,0 +1,93 @@
+package com.capable.physiciandss.services;
+
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Latency timers (phdss.downstream.requests) and error counters (phdss.downstream.errors) of the calls made to
+ * HAPI FHIR, Deontics and GoCom, tagged with the downstream and the calling service method. Timers are also
+ * tagged with the outcome (success, error or cancelled), errors with the HTTP status or, when there was no response,
+ * the exception type.
+ */
+@Component
+public class DownstreamMetrics {
+
+    public static final String HAPI = "hapi";
+    public static final String DEONTICS = "deontics";
+    public static final String GOCOM = "gocom";
+    private static final String REQUESTS = "phdss.downstream.requests";
+    private static final String ERRORS = "phdss.downstream.errors";
+    private final MeterRegistry registry;
+
+    public DownstreamMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Times every subscription of the call until it completes, fails or is cancelled, e.g. by a timeout.
+     */
+    public <T> Mono<T> time(String downstream, String method, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return call
+                    .doOnSuccess(result -> stop(sample, downstream, method, null))
+                    .doOnError(exception -> stop(sample, downstream, method, exception))
+                    .doOnCancel(() -> stopWithOutcome(sample, downstream, method, "cancelled"));
+        });
+    }
+
+    public <T> T record(String downstream, String method, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            T result = call.get();
+            stop(sample, downstream, method, null);
+            return result;
+        } catch (RuntimeException e) {
+            stop(sample, downstream, method, e);
+            throw e;
+        }
+    }
+
+    public void record(String downstream, String method, Runnable call) {
+        record(downstream, method, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private void stop(Timer.Sample sample, String downstream, String method, Throwable exception) {
+        stopWithOutcome(sample, downstream, method, exception == null ? "success" : "error");
+        if (exception != null) {
+            registry.counter(ERRORS, "downstream", downstream, "method", method, "status", statusOf(exception))
+                    .increment();
+        }
+    }
+
+    private void stopWithOutcome(Timer.Sample sample, String downstream, String method, String outcome) {
+        sample.stop(Timer.builder(REQUESTS)
+                .description("Calls to downstream services")
+                .tag("downstream", downstream)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    static String statusOf(Throwable exception) {
+        if (exception instanceof DownstreamRequestException) {
+            return String.valueOf(((DownstreamRequestException) exception).getStatus().value());
+        }
+        if (exception instanceof WebClientResponseException) {
+            return String.valueOf(((WebClientResponseException) exception).getRawStatusCode());
+        }
+        if (exception instanceof BaseServerResponseException) {
+            return String.valueOf(((BaseServerResponseException) exception).getStatusCode());
+        }
+        return exception.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,20 @@
+package com.capable.physiciandss.services;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Error response of a downstream service (Deontics, GoCom, HAPI FHIR), carrying the status it answered with.
+ */
+public class DownstreamRequestException extends IllegalStateException {
+
+    private final HttpStatus status;
+
+    public DownstreamRequestException(String message, HttpStatus status) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
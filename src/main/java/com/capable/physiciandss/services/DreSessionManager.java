@@ -0,0 +1,76 @@
+package com.capable.physiciandss.services;
+
+import com.capable.physiciandss.model.deontics.get.Connect;
+import com.capable.physiciandss.tracing.Tracer;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Keeps one DRE session per enactment, so a session is opened with Connect only once and reused by later
+ * ticks. Sessions which have not been used for idle-expiry-ms are forgotten, as are the least recently used
+ * ones above maximum-size, and a session is dropped as soon as DRE answers a request made with it with a 4xx.
+ * Timeouts (408) and throttling (429) say nothing about the session, so they keep it.
+ */
+@Service
+public class DreSessionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(DreSessionManager.class);
+    private final DeonticsRequestService deonticsRequestService;
+    private final AsyncCache<String, String> sessions;
+
+    public DreSessionManager(DeonticsRequestService deonticsRequestService,
+                             @Value("${phdss.deontics.session-cache.idle-expiry-ms:300000}") long idleExpiryMs,
+                             @Value("${phdss.deontics.session-cache.maximum-size:1000}") long maximumSize) {
+        this.deonticsRequestService = deonticsRequestService;
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMillis(idleExpiryMs))
+                .maximumSize(maximumSize)
+                .recordStats()
+                .buildAsync();
+        log.info("DreSessionManager has been created");
+    }
+
+    /**
+     * Opens a missing session within the caller's Reactor Context, so Connect is traced like any other request.
+     */
+    public Mono<String> getSessionId(String enactmentId) {
+        return Mono.subscriberContext().flatMap(context -> Mono.fromFuture(sessions.get(enactmentId,
+                (id, executor) -> deonticsRequestService
+                        .getConnect(id)
+                        .map(Connect::getDresessionid)
+                        .doOnNext(sessionId -> Tracer.withMdc(context, () ->
+                                log.debug("[getSessionId]\tOpened DRE session for enactment with id: " + id)))
+                        .subscriberContext(context)
+                        .toFuture())));
+    }
+
+    public void invalidate(String enactmentId) {
+        sessions.synchronous().invalidate(enactmentId);
+    }
+
+    /**
+     * Drops the session of the enactment when the error shows DRE does not accept it anymore.
+     */
+    public void invalidateOnSessionError(String enactmentId, Throwable exception) {
+        if (!(exception instanceof DownstreamRequestException)) {
+            return;
+        }
+        HttpStatus status = ((DownstreamRequestException) exception).getStatus();
+        if (status.is4xxClientError() && status != HttpStatus.REQUEST_TIMEOUT && status != HttpStatus.TOO_MANY_REQUESTS) {
+            log.debug("[invalidateOnSessionError]\tDropping DRE session of enactment with id: " + enactmentId);
+            invalidate(enactmentId);
+        }
+    }
+
+    public long getSessionCount() {
+        return sessions.synchronous().estimatedSize();
+    }
+}
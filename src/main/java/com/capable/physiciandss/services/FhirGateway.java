@@ -0,0 +1,69 @@
+package com.capable.physiciandss.services;
+
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import org.hl7.fhir.r4.model.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * HAPI FHIR operations used by the process flow. Depending on phdss.flow.mode they are served either by
+ * the blocking {@link HapiRequestService} moved off the caller's thread, or by the non-blocking
+ * {@link ReactiveHapiRequestService}.
+ */
+public interface FhirGateway {
+
+    Mono<Observation> getObservation(String id);
+
+    Mono<MedicationRequest> getMedicationRequest(String id);
+
+    Mono<Communication> getCommunication(String id);
+
+    /**
+     * Newest Observation not dated in the future, empty when there is none. notBefore may be null.
+     */
+    Mono<Observation> getLatestObservation(String subjectId, String system, String ontologyCoding, Date notBefore);
+
+    /**
+     * Observations with any of the codings, with only the elements of the view requested, optionally only those
+     * dated at or after notBefore. notBefore may be null.
+     */
+    Mono<List<ObservationView>> getObservationViews(String subjectId, Collection<Coding> codings, Date notBefore);
+
+    /**
+     * MedicationRequests with any of the codings and the status, with only the elements of the view requested.
+     */
+    Mono<List<MedicationRequestView>> getMedicationRequestViews(String subjectId, Collection<Coding> codings,
+                                                                MedicationRequest.MedicationRequestStatus status);
+
+    Mono<List<Task>> getTaskListWithFocus(String patientId, Task.TaskStatus status, String focusType);
+
+    Mono<String> createObservation(String system, String ontologyCoding, Observation.ObservationStatus status);
+
+    Mono<String> createMedicationRequest(MedicationRequest medicationRequest,
+                                         MedicationRequest.MedicationRequestStatus status,
+                                         MedicationRequest.MedicationRequestIntent medicationRequestIntent,
+                                         String patientId);
+
+    Mono<String> createCommunication(Communication.CommunicationStatus status, String referenceId);
+
+    /**
+     * Claims the Communication: updates it only if it was not changed since it was read. The update is never
+     * retried; when it fails without an answer its outcome is unknown and the Communication has to be read again,
+     * see {@link com.capable.physiciandss.hapi.FhirResources#isClaimedBy}.
+     *
+     * @return false when HAPI FHIR answered 412, i.e. the Communication was changed since it was read
+     */
+    Mono<Boolean> updateCommunication(Communication communication, Communication.CommunicationStatus status);
+
+    Mono<List<EntryOutcome>> updateCommunications(List<Communication> communications,
+                                                  Communication.CommunicationStatus status);
+
+    Mono<Void> createTask(Reference patient, Reference resource);
+
+    Mono<Void> updateTask(Task task, Task.TaskStatus status);
+}
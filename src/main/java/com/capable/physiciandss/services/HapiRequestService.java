@@ -3,19 +3,33 @@ package com.capable.physiciandss.services;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.gclient.IQuery;
+import ca.uhn.fhir.rest.gclient.IUpdateExecutable;
+import ca.uhn.fhir.rest.param.DateParam;
+import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ParamPrefixEnum;
+import ca.uhn.fhir.rest.server.exceptions.PreconditionFailedException;
 import ca.uhn.fhir.util.BundleUtil;
-import com.capable.physiciandss.configuration.HapiConnectionConfig;
 import com.capable.physiciandss.hapi.Connection;
+import com.capable.physiciandss.hapi.FhirResources;
+import com.capable.physiciandss.hapi.FhirViews;
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.r4.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class HapiRequestService {
@@ -23,60 +37,119 @@ public class HapiRequestService {
     private final Logger log = LoggerFactory.getLogger(this.getClass().getName());
     private final IGenericClient client;
     private final FhirContext ctx;
-
-    public HapiRequestService() {
-        ApplicationContext context = new AnnotationConfigApplicationContext(HapiConnectionConfig.class);
-        client = context.getBean("connection", Connection.class).getClient();
-        ctx = context.getBean("connection", Connection.class).getCtx();
+    private final int batchSize;
+    private final DownstreamMetrics metrics;
+
+    public HapiRequestService(Connection connection, @Value("${phdss.hapi.batch-size:200}") int batchSize,
+                              DownstreamMetrics metrics) {
+        client = connection.getClient();
+        ctx = connection.getCtx();
+        this.batchSize = batchSize;
+        this.metrics = metrics;
         log.info("HapiRequestService has been created.");
     }
 
     public Patient getPatient(String id) {
         log.info("Reading patient with id: " + id);
-        return client.read()
-                .resource(Patient.class)
-                .withId(id)
-                .execute();
+        return metrics.record(DownstreamMetrics.HAPI, "getPatient", () -> {
+            return client.read()
+                    .resource(Patient.class)
+                    .withId(id)
+                    .execute();
+        });
     }
 
     public Observation getObservation(String id) {
         log.info("Reading observation with id: " + id);
-        return client.read()
-                .resource(Observation.class)
-                .withId(id)
-                .execute();
+        return metrics.record(DownstreamMetrics.HAPI, "getObservation", () -> {
+            return client.read()
+                    .resource(Observation.class)
+                    .withId(id)
+                    .execute();
+        });
     }
 
     public Communication getCommunication(String id) {
         log.info("Reading communication with id: " + id);
-        return client.read()
-                .resource(Communication.class)
-                .withId(id)
-                .execute();
+        return metrics.record(DownstreamMetrics.HAPI, "getCommunication", () -> {
+            return client.read()
+                    .resource(Communication.class)
+                    .withId(id)
+                    .execute();
+        });
     }
 
     public List<Observation> getObservationList(String subjectId) {
         log.info("Getting list of observation for subject with id: " + subjectId);
-        Bundle bundle = client
-                .search()
-                .forResource(Observation.class)
-                .where(Observation.SUBJECT.hasId(subjectId))
-                .returnBundle(Bundle.class)
-                .execute();
-        return getObservations(bundle);
+        return metrics.record(DownstreamMetrics.HAPI, "getObservationList", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(Observation.class)
+                    .where(Observation.SUBJECT.hasId(subjectId))
+                    .returnBundle(Bundle.class)
+                    .execute();
+            return getObservations(bundle);
+        });
     }
 
     public List<Observation> getObservationList(String subjectId, String system, String ontologyCoding) {
         log.info("Getting list of observations with system:" + system + ", ontologyCoding: "
                 + ontologyCoding + " for subject with id: " + subjectId);
-        Bundle bundle = client
-                .search()
-                .forResource(Observation.class)
-                .where(Observation.SUBJECT.hasId(subjectId))
-                .and(Observation.CODE.exactly().systemAndCode(system, ontologyCoding))
-                .returnBundle(Bundle.class)
-                .execute();
-        return getObservations(bundle);
+        return metrics.record(DownstreamMetrics.HAPI, "getObservationList", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(Observation.class)
+                    .where(Observation.SUBJECT.hasId(subjectId))
+                    .and(Observation.CODE.exactly().systemAndCode(system, ontologyCoding))
+                    .returnBundle(Bundle.class)
+                    .execute();
+            return getObservations(bundle);
+        });
+    }
+
+    public List<ObservationView> getObservationViews(String subjectId, Collection<Coding> codings, Date notBefore) {
+        log.info("Getting views of observations with any of " + codings.size() + " codings for subject with id: " + subjectId);
+        return metrics.record(DownstreamMetrics.HAPI, "getObservationViews", () -> {
+            IQuery<Bundle> query = client
+                    .search()
+                    .forResource(Observation.class)
+                    .where(Observation.SUBJECT.hasId(subjectId))
+                    .and(Observation.CODE.exactly().codings(codings.toArray(new Coding[0])))
+                    .elementsSubset(FhirViews.OBSERVATION_ELEMENTS)
+                    .returnBundle(Bundle.class);
+            if (notBefore != null) {
+                query = query.and(Observation.DATE.afterOrEquals().millis(notBefore));
+            }
+            Bundle bundle = query.execute();
+            return getObservations(bundle).stream()
+                    .map(FhirViews::toObservationView)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Newest Observation with the given coding which is not dated in the future, optionally not older than
+     * notBefore. Sorting and limiting happen on the server, so only one resource is transferred.
+     */
+    public Optional<Observation> getLatestObservation(String subjectId, String system, String ontologyCoding,
+                                                      Date notBefore) {
+        log.info("Getting latest observation with system: " + system + ", ontologyCoding: " + ontologyCoding
+                + " for subject with id: " + subjectId);
+        return metrics.record(DownstreamMetrics.HAPI, "getLatestObservation", () -> {
+            IQuery<Bundle> query = client
+                    .search()
+                    .forResource(Observation.class)
+                    .where(Observation.SUBJECT.hasId(subjectId))
+                    .and(Observation.CODE.exactly().systemAndCode(system, ontologyCoding))
+                    .and(Observation.DATE.beforeOrEquals().millis(new Date()))
+                    .sort().descending(Observation.DATE)
+                    .count(1)
+                    .returnBundle(Bundle.class);
+            if (notBefore != null) {
+                query = query.and(Observation.DATE.afterOrEquals().millis(notBefore));
+            }
+            return BundleUtil.toListOfResourcesOfType(ctx, query.execute(), Observation.class).stream().findFirst();
+        });
     }
 
     private List<Observation> getObservations(Bundle bundle) {
@@ -94,36 +167,62 @@ public class HapiRequestService {
 
     public MedicationRequest getMedicationRequest(String id) {
         log.info("Reading medicationRequest with id: " + id);
-        return client.read()
-                .resource(MedicationRequest.class)
-                .withId(id)
-                .execute();
+        return metrics.record(DownstreamMetrics.HAPI, "getMedicationRequest", () -> {
+            return client.read()
+                    .resource(MedicationRequest.class)
+                    .withId(id)
+                    .execute();
+        });
     }
 
     public List<MedicationRequest> getMedicationRequestList(String subjectId) {
         log.info("Getting list of medicationRequests for subject with id: " + subjectId);
-        Bundle bundle = client
-                .search()
-                .forResource(MedicationRequest.class)
-                .where(MedicationRequest.SUBJECT.hasId(subjectId))
-                .returnBundle(Bundle.class)
-                .execute();
-        return getMedicationRequests(bundle);
+        return metrics.record(DownstreamMetrics.HAPI, "getMedicationRequestList", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(MedicationRequest.class)
+                    .where(MedicationRequest.SUBJECT.hasId(subjectId))
+                    .returnBundle(Bundle.class)
+                    .execute();
+            return getMedicationRequests(bundle);
+        });
     }
 
     public List<MedicationRequest> getMedicationRequestList(String subjectId, String system, String ontologyCoding,
                                                             MedicationRequest.MedicationRequestStatus status) {
         log.info("Getting list of medicationRequests with system:" + system + ", ontologyCoding: " + ontologyCoding +
                 ", status: " + status.toCode() + " for subject with id: " + subjectId);
-        Bundle bundle = client
-                .search()
-                .forResource(MedicationRequest.class)
-                .where(MedicationRequest.SUBJECT.hasId(subjectId))
-                .and(MedicationRequest.CODE.exactly().systemAndCode(system, ontologyCoding))
-                .and(MedicationRequest.STATUS.exactly().code(status.toCode()))
-                .returnBundle(Bundle.class)
-                .execute();
-        return getMedicationRequests(bundle);
+        return metrics.record(DownstreamMetrics.HAPI, "getMedicationRequestList", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(MedicationRequest.class)
+                    .where(MedicationRequest.SUBJECT.hasId(subjectId))
+                    .and(MedicationRequest.CODE.exactly().systemAndCode(system, ontologyCoding))
+                    .and(MedicationRequest.STATUS.exactly().code(status.toCode()))
+                    .returnBundle(Bundle.class)
+                    .execute();
+            return getMedicationRequests(bundle);
+        });
+    }
+
+    public List<MedicationRequestView> getMedicationRequestViews(String subjectId, Collection<Coding> codings,
+                                                                 MedicationRequest.MedicationRequestStatus status) {
+        log.info("Getting views of medicationRequests with any of " + codings.size() + " codings, status: "
+                + status.toCode() + " for subject with id: " + subjectId);
+        return metrics.record(DownstreamMetrics.HAPI, "getMedicationRequestViews", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(MedicationRequest.class)
+                    .where(MedicationRequest.SUBJECT.hasId(subjectId))
+                    .and(MedicationRequest.CODE.exactly().codings(codings.toArray(new Coding[0])))
+                    .and(MedicationRequest.STATUS.exactly().code(status.toCode()))
+                    .elementsSubset(FhirViews.MEDICATION_REQUEST_ELEMENTS)
+                    .returnBundle(Bundle.class)
+                    .execute();
+            return getMedicationRequests(bundle).stream()
+                    .map(FhirViews::toMedicationRequestView)
+                    .collect(Collectors.toList());
+        });
     }
 
     private List<MedicationRequest> getMedicationRequests(Bundle bundle) {
@@ -141,53 +240,79 @@ public class HapiRequestService {
 
     public List<Communication> getCommunicationList(Communication.CommunicationStatus status) {
         log.info("Getting list of communications with status: " + status.toCode());
-        Bundle bundle = client
-                .search()
-                .forResource(Communication.class)
-                .where(Communication.STATUS.exactly().code(status.toCode()))
-                .returnBundle(Bundle.class)
-                .execute();
-
-        List<Communication> communications =
-                new ArrayList<>(BundleUtil.toListOfResourcesOfType(ctx, bundle, Communication.class));
-        while (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
-            bundle = client
-                    .loadPage()
-                    .next(bundle)
+        return metrics.record(DownstreamMetrics.HAPI, "getCommunicationList", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(Communication.class)
+                    .where(Communication.STATUS.exactly().code(status.toCode()))
+                    .returnBundle(Bundle.class)
                     .execute();
-            communications.addAll(BundleUtil.toListOfResourcesOfType(ctx, bundle, Communication.class));
-        }
-        return communications;
+
+            List<Communication> communications =
+                    new ArrayList<>(BundleUtil.toListOfResourcesOfType(ctx, bundle, Communication.class));
+            while (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
+                bundle = client
+                        .loadPage()
+                        .next(bundle)
+                        .execute();
+                communications.addAll(BundleUtil.toListOfResourcesOfType(ctx, bundle, Communication.class));
+            }
+            return communications;
+        });
+    }
+
+    public List<Communication> getCommunicationListUpdatedAfter(Communication.CommunicationStatus status,
+                                                                Date lastUpdatedAfter, int pageSize) {
+        log.info("Getting list of communications with status: " + status.toCode() + " updated after: " + lastUpdatedAfter);
+        return metrics.record(DownstreamMetrics.HAPI, "getCommunicationListUpdatedAfter", () -> {
+            IQuery<Bundle> query = client
+                    .search()
+                    .forResource(Communication.class)
+                    .where(Communication.STATUS.exactly().code(status.toCode()))
+                    .sort().ascending("_lastUpdated")
+                    .count(pageSize)
+                    .returnBundle(Bundle.class);
+            if (lastUpdatedAfter != null) {
+                query = query.lastUpdated(new DateRangeParam(new DateParam(ParamPrefixEnum.GREATERTHAN, lastUpdatedAfter), null));
+            }
+            Bundle bundle = query.execute();
+
+            List<Communication> communications =
+                    new ArrayList<>(BundleUtil.toListOfResourcesOfType(ctx, bundle, Communication.class));
+            while (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
+                bundle = client
+                        .loadPage()
+                        .next(bundle)
+                        .execute();
+                communications.addAll(BundleUtil.toListOfResourcesOfType(ctx, bundle, Communication.class));
+            }
+            return communications;
+        });
     }
 
     public String createObservation(String system, String ontologyCoding, Observation.ObservationStatus status) {
         log.info("Creating observation with system: " + system + ", ontologyCoding: " +
                 ontologyCoding + " with status: " + status.toCode());
-        Observation observation = new Observation();
-        CodeableConcept codeableConcept = new CodeableConcept();
-        Coding coding = new Coding();
-        coding.setSystem(system);
-        coding.setCode(ontologyCoding);
-        ArrayList<Coding> codings = new ArrayList<>();
-        codings.add(coding);
-        codeableConcept.setCoding(codings);
-        observation.setCode(codeableConcept);
-        observation.setStatus(status);
-
-        MethodOutcome outcome = client.create().resource(observation).execute();
-
-        log.debug(outcome.toString());
-
-        return outcome.getId().getResourceType() + '/' + outcome.getId().getIdPart();
+        return metrics.record(DownstreamMetrics.HAPI, "createObservation", () -> {
+            Observation observation = FhirResources.newObservation(system, ontologyCoding, status);
+
+            MethodOutcome outcome = client.create().resource(observation).execute();
+
+            log.debug(outcome.toString());
+
+            return outcome.getId().getResourceType() + '/' + outcome.getId().getIdPart();
+        });
     }
 
     public void updateObservation(Observation observation, Observation.ObservationStatus status) {
         log.info("Updating communication status");
-        observation.setStatus(status);
+        metrics.record(DownstreamMetrics.HAPI, "updateObservation", () -> {
+            observation.setStatus(status);
 
-        MethodOutcome outcome = client.update().resource(observation).execute();
+            MethodOutcome outcome = client.update().resource(observation).execute();
 
-        log.debug(outcome.toString());
+            log.debug(outcome.toString());
+        });
     }
 
     public String createMedicationRequest(MedicationRequest medicationRequest,
@@ -195,87 +320,178 @@ public class HapiRequestService {
                                           MedicationRequest.MedicationRequestIntent medicationRequestIntent,
                                           String patientId) {
         log.info("Posting medicationRequest");
-        medicationRequest.setStatus(status);
-        medicationRequest.setIntent(medicationRequestIntent);
-        Reference reference = new Reference(patientId);
-        reference.setIdentifier(new Identifier().setValue(reference.getReference().split("/")[1]));
-        reference.setType(reference.getReference().split("/")[0]);
-        medicationRequest.setSubject(reference);
+        return metrics.record(DownstreamMetrics.HAPI, "createMedicationRequest", () -> {
+            FhirResources.prepareMedicationRequest(medicationRequest, status, medicationRequestIntent, patientId);
 
-        MethodOutcome outcome = client.create().resource(medicationRequest).execute();
+            MethodOutcome outcome = client.create().resource(medicationRequest).execute();
 
-        log.debug(outcome.toString());
+            log.debug(outcome.toString());
 
-        return outcome.getId().getResourceType() + '/' + outcome.getId().getIdPart();
+            return outcome.getId().getResourceType() + '/' + outcome.getId().getIdPart();
+        });
     }
 
     public String createCommunication(Communication.CommunicationStatus status, String referenceId) {
         log.info("Creating communication with status: " + status.toCode() + ", referenceId: " + referenceId);
-        Communication communication = new Communication();
-        communication.setStatus(status);
-        Reference reference = new Reference(referenceId);
-        reference.setIdentifier(new Identifier().setValue(reference.getReference().split("/")[1]));
-        reference.setType(reference.getReference().split("/")[0]);
-        Communication.CommunicationPayloadComponent payloadComponent = new Communication.CommunicationPayloadComponent();
-        payloadComponent.setContent(reference);
-        ArrayList<Communication.CommunicationPayloadComponent> communicationPayloadComponents = new ArrayList<>();
-        communicationPayloadComponents.add(payloadComponent);
-        communication.setPayload(communicationPayloadComponents);
-
-        MethodOutcome outcome = client.create().resource(communication).execute();
-
-        log.debug(outcome.toString());
-
-        return outcome.getId().getResourceType() + '/' + outcome.getId().getIdPart();
+        return metrics.record(DownstreamMetrics.HAPI, "createCommunication", () -> {
+            Communication communication = FhirResources.newCommunication(status, referenceId);
+
+            MethodOutcome outcome = client.create().resource(communication).execute();
+
+            log.debug(outcome.toString());
+
+            return outcome.getId().getResourceType() + '/' + outcome.getId().getIdPart();
+        });
     }
 
-    public void updateCommunication(Communication communication, Communication.CommunicationStatus status) {
+    /**
+     * Updates the Communication conditionally on the version it was read with.
+     *
+     * @return false when the Communication has been changed meanwhile (412)
+     */
+    public boolean updateCommunication(Communication communication, Communication.CommunicationStatus status) {
         log.info("Updating communication status");
-        communication.setStatus(status);
+        return metrics.record(DownstreamMetrics.HAPI, "updateCommunication", () -> {
+            FhirResources.claim(communication, status);
+            IUpdateExecutable update = client.update().resource(communication);
+            String ifMatch = FhirResources.ifMatch(communication);
+            if (ifMatch != null) {
+                update = update.withAdditionalHeader(Constants.HEADER_IF_MATCH, ifMatch);
+            }
+            try {
+                MethodOutcome outcome = update.execute();
+                log.debug(outcome.toString());
+                return true;
+            } catch (PreconditionFailedException e) {
+                log.debug("Communication " + communication.getIdElement().getIdPart() + " was changed meanwhile");
+                return false;
+            }
+        });
+    }
 
-        MethodOutcome outcome = client.update().resource(communication).execute();
+    public Subscription createOrUpdateRestHookSubscription(String criteria, String endpoint, String reason) {
+        log.info("Registering rest-hook subscription with criteria: " + criteria + ", endpoint: " + endpoint);
+        return metrics.record(DownstreamMetrics.HAPI, "createOrUpdateRestHookSubscription", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(Subscription.class)
+                    .where(Subscription.CRITERIA.matchesExactly().value(criteria))
+                    .and(Subscription.URL.matches().value(endpoint))
+                    .returnBundle(Bundle.class)
+                    .execute();
+            List<Subscription> existingSubscriptions =
+                    BundleUtil.toListOfResourcesOfType(ctx, bundle, Subscription.class);
+
+            Subscription subscription = existingSubscriptions.isEmpty() ? new Subscription() : existingSubscriptions.get(0);
+            subscription.setCriteria(criteria);
+            subscription.setReason(reason);
+            subscription.setStatus(Subscription.SubscriptionStatus.REQUESTED);
+            Subscription.SubscriptionChannelComponent channel = new Subscription.SubscriptionChannelComponent();
+            channel.setType(Subscription.SubscriptionChannelType.RESTHOOK);
+            channel.setEndpoint(endpoint);
+            channel.setPayload("application/fhir+json");
+            subscription.setChannel(channel);
+
+            MethodOutcome outcome = existingSubscriptions.isEmpty()
+                    ? client.create().resource(subscription).execute()
+                    : client.update().resource(subscription).execute();
+
+            log.debug(outcome.toString());
+
+            subscription.setId(outcome.getId());
+            return subscription;
+        });
+    }
 
-        log.debug(outcome.toString());
+    public List<EntryOutcome> updateCommunications(List<Communication> communications,
+                                                   Communication.CommunicationStatus status) {
+        log.info("Updating status of " + communications.size() + " communications to: " + status.toCode());
+        return metrics.record(DownstreamMetrics.HAPI, "updateCommunications", () -> {
+            List<EntryOutcome> outcomes = new ArrayList<>(communications.size());
+            for (int from = 0; from < communications.size(); from += batchSize) {
+                List<Communication> chunk = communications.subList(from, Math.min(from + batchSize, communications.size()));
+                outcomes.addAll(executeBatch(FhirResources.newCommunicationStatusBatch(chunk, status), chunk));
+            }
+            return outcomes;
+        });
+    }
+
+    private List<EntryOutcome> executeBatch(Bundle batch, List<? extends Resource> resources) {
+        try {
+            Bundle response = client.transaction().withBundle(batch).execute();
+            return FhirResources.toEntryOutcomes(response, resources);
+        } catch (Exception e) {
+            log.warn("Batch request failed: " + e.getMessage());
+            return FhirResources.toFailedEntryOutcomes(resources, e.getMessage());
+        }
     }
 
     public List<Task> getTaskList(Task.TaskStatus status) {
         log.info("Getting list of tasks with status: " + status.toCode());
-        Bundle bundle = client
-                .search()
-                .forResource(Task.class)
-                .where(Task.STATUS.exactly().code(status.toCode()))
-                .returnBundle(Bundle.class)
-                .execute();
-
-        List<Task> tasks =
-                new ArrayList<>(BundleUtil.toListOfResourcesOfType(ctx, bundle, Task.class));
-        while (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
-            bundle = client
-                    .loadPage()
-                    .next(bundle)
+        return metrics.record(DownstreamMetrics.HAPI, "getTaskList", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(Task.class)
+                    .where(Task.STATUS.exactly().code(status.toCode()))
+                    .returnBundle(Bundle.class)
                     .execute();
-            tasks.addAll(BundleUtil.toListOfResourcesOfType(ctx, bundle, Task.class));
-        }
-        return tasks;
+
+            List<Task> tasks =
+                    new ArrayList<>(BundleUtil.toListOfResourcesOfType(ctx, bundle, Task.class));
+            while (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
+                bundle = client
+                        .loadPage()
+                        .next(bundle)
+                        .execute();
+                tasks.addAll(BundleUtil.toListOfResourcesOfType(ctx, bundle, Task.class));
+            }
+            return tasks;
+        });
+    }
+
+    public List<Task> getTaskListWithFocus(String patientId, Task.TaskStatus status, String focusType) {
+        log.info("Getting list of tasks with status: " + status.toCode() + " and " + focusType
+                + " focus for patient with id: " + patientId);
+        return metrics.record(DownstreamMetrics.HAPI, "getTaskListWithFocus", () -> {
+            Bundle bundle = client
+                    .search()
+                    .forResource(Task.class)
+                    .where(Task.PATIENT.hasId(patientId))
+                    .and(Task.STATUS.exactly().code(status.toCode()))
+                    .include(Task.INCLUDE_FOCUS.withType(focusType))
+                    .returnBundle(Bundle.class)
+                    .execute();
+
+            List<Bundle> pages = new ArrayList<>();
+            pages.add(bundle);
+            while (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
+                bundle = client
+                        .loadPage()
+                        .next(bundle)
+                        .execute();
+                pages.add(bundle);
+            }
+            return FhirResources.toTasksWithFocus(pages);
+        });
     }
 
     public void createTask(Reference patient, Reference resource) {
-        Task task = new Task();
-        task.setIntent(Task.TaskIntent.ORDER);
-        task.setStatus(Task.TaskStatus.REQUESTED);
-        task.setFor(patient);
-        task.setFocus(resource);
+        metrics.record(DownstreamMetrics.HAPI, "createTask", () -> {
+            Task task = FhirResources.newTask(patient, resource);
 
-        MethodOutcome outcome = client.create().resource(task).execute();
+            MethodOutcome outcome = client.create().resource(task).execute();
 
-        log.debug(outcome.toString());
+            log.debug(outcome.toString());
+        });
     }
 
     public void updateTask(Task task, Task.TaskStatus status) {
-        task.setStatus(status);
+        metrics.record(DownstreamMetrics.HAPI, "updateTask", () -> {
+            task.setStatus(status);
 
-        MethodOutcome outcome = client.update().resource(task).execute();
+            MethodOutcome outcome = client.update().resource(task).execute();
 
-        log.debug(outcome.toString());
+            log.debug(outcome.toString());
+        });
     }
 }
@@ -0,0 +1,292 @@
+package com.capable.physiciandss.services;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.BundleUtil;
+import com.capable.physiciandss.hapi.Connection;
+import com.capable.physiciandss.hapi.FhirResources;
+import com.capable.physiciandss.hapi.FhirViews;
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import com.capable.physiciandss.utils.Constants;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking HAPI FHIR client built on WebClient, with resources (de)serialized by the shared FhirContext.
+ * Besides generic read, search, create, update and transaction it serves the {@link FhirGateway}
+ * operations used by the process flow when phdss.flow.mode=reactive.
+ */
+@Service
+public class ReactiveHapiRequestService extends RootService implements FhirGateway {
+
+    private static final MediaType FHIR_JSON = MediaType.parseMediaType(Constants.FHIR_JSON_MEDIA_TYPE);
+    private final WebClient webClient;
+    private final FhirContext ctx;
+    private final int batchSize;
+
+    public ReactiveHapiRequestService(@Qualifier("hapiWebClient") WebClient webClient, Connection connection,
+                                      @Value("${phdss.hapi.batch-size:200}") int batchSize,
+                                      DownstreamMetrics metrics) {
+        log = LoggerFactory.getLogger(this.getClass().getName());
+        this.webClient = webClient;
+        this.metrics = metrics;
+        this.downstream = DownstreamMetrics.HAPI;
+        this.ctx = connection.getCtx();
+        this.batchSize = batchSize;
+        log.info("ReactiveHapiRequestService has been created");
+    }
+
+    public <T extends IBaseResource> Mono<T> read(Class<T> resourceType, String id) {
+        String type = ctx.getResourceType(resourceType);
+        return webClient.get()
+                .uri("/{type}/{id}", type, new IdType(id).getIdPart())
+                .retrieve()
+                .onStatus(HttpStatus::isError, response -> onError(response, "read" + type))
+                .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("read" + type))
+                .bodyToMono(String.class)
+                .map(body -> ctx.newJsonParser().parseResource(resourceType, body));
+    }
+
+    public <T extends IBaseResource> Flux<T> search(Class<T> resourceType, MultiValueMap<String, String> parameters) {
+        return searchPages(resourceType, parameters)
+                .flatMapIterable(bundle -> BundleUtil.toListOfResourcesOfType(ctx, bundle, resourceType));
+    }
+
+    /**
+     * First resource of the first page only, for searches limited with _count.
+     */
+    public <T extends IBaseResource> Mono<T> searchFirst(Class<T> resourceType, MultiValueMap<String, String> parameters) {
+        String type = ctx.getResourceType(resourceType);
+        return getBundle(webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/" + type)
+                        .queryParams(parameters)
+                        .build()), "search" + type)
+                .flatMap(bundle -> Mono.justOrEmpty(BundleUtil.toListOfResourcesOfType(ctx, bundle, resourceType)
+                        .stream()
+                        .findFirst()));
+    }
+
+    public Flux<Bundle> searchPages(Class<? extends IBaseResource> resourceType, MultiValueMap<String, String> parameters) {
+        String type = ctx.getResourceType(resourceType);
+        return getBundle(webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/" + type)
+                        .queryParams(parameters)
+                        .build()), "search" + type)
+                .expand(bundle -> bundle.getLink(IBaseBundle.LINK_NEXT) == null
+                        ? Mono.empty()
+                        : getBundle(webClient.get().uri(URI.create(bundle.getLink(IBaseBundle.LINK_NEXT).getUrl())),
+                        "search" + type));
+    }
+
+    public Mono<String> create(Resource resource) {
+        String type = resource.fhirType();
+        return webClient.post()
+                .uri("/{type}", type)
+                .contentType(FHIR_JSON)
+                .bodyValue(ctx.newJsonParser().encodeResourceToString(resource))
+                .retrieve()
+                .onStatus(HttpStatus::isError, response -> onError(response, "create" + type))
+                .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("create" + type))
+                .toBodilessEntity()
+                .flatMap(entity -> entity.getHeaders().getLocation() == null
+                        ? Mono.error(new IllegalStateException("create" + type + " response has no Location header"))
+                        : Mono.just(new IdType(entity.getHeaders().getLocation().toString())))
+                .map(id -> id.getResourceType() + '/' + id.getIdPart());
+    }
+
+    public Mono<Void> update(Resource resource) {
+        return update(resource, null);
+    }
+
+    /**
+     * Updates the resource only if its current version matches ifMatch, which may be null for an unconditional update.
+     */
+    public Mono<Void> update(Resource resource, String ifMatch) {
+        String type = resource.fhirType();
+        return webClient.put()
+                .uri("/{type}/{id}", type, resource.getIdElement().getIdPart())
+                .headers(headers -> {
+                    if (ifMatch != null) {
+                        headers.setIfMatch(ifMatch);
+                    }
+                })
+                .contentType(FHIR_JSON)
+                .bodyValue(ctx.newJsonParser().encodeResourceToString(resource))
+                .retrieve()
+                .onStatus(HttpStatus::isError, response -> onError(response, "update" + type))
+                .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess("update" + type))
+                .toBodilessEntity()
+                .then();
+    }
+
+    public Mono<Bundle> transaction(Bundle bundle) {
+        return getBundle(webClient.post()
+                .uri("/")
+                .contentType(FHIR_JSON)
+                .bodyValue(ctx.newJsonParser().encodeResourceToString(bundle)), "transaction");
+    }
+
+    @Override
+    public Mono<Observation> getObservation(String id) {
+        return timed("getObservation", read(Observation.class, id));
+    }
+
+    @Override
+    public Mono<MedicationRequest> getMedicationRequest(String id) {
+        return timed("getMedicationRequest", read(MedicationRequest.class, id));
+    }
+
+    @Override
+    public Mono<Communication> getCommunication(String id) {
+        return timed("getCommunication", read(Communication.class, id));
+    }
+
+    @Override
+    public Mono<Observation> getLatestObservation(String subjectId, String system, String ontologyCoding,
+                                                  Date notBefore) {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("subject", subjectId);
+        parameters.add("code", system + "|" + ontologyCoding);
+        parameters.add("date", "le" + toSearchDate(new Date()));
+        if (notBefore != null) {
+            parameters.add("date", "ge" + toSearchDate(notBefore));
+        }
+        parameters.add("_sort", "-date");
+        parameters.add("_count", "1");
+        return timed("getLatestObservation", searchFirst(Observation.class, parameters));
+    }
+
+    @Override
+    public Mono<List<ObservationView>> getObservationViews(String subjectId, Collection<Coding> codings,
+                                                           Date notBefore) {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("subject", subjectId);
+        parameters.add("code", toTokenList(codings));
+        if (notBefore != null) {
+            parameters.add("date", "ge" + toSearchDate(notBefore));
+        }
+        parameters.add("_elements", String.join(",", FhirViews.OBSERVATION_ELEMENTS));
+        return timed("getObservationViews", search(Observation.class, parameters)
+                .map(FhirViews::toObservationView)
+                .collectList());
+    }
+
+    @Override
+    public Mono<List<MedicationRequestView>> getMedicationRequestViews(String subjectId, Collection<Coding> codings,
+                                                                       MedicationRequest.MedicationRequestStatus status) {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("subject", subjectId);
+        parameters.add("code", toTokenList(codings));
+        parameters.add("status", status.toCode());
+        parameters.add("_elements", String.join(",", FhirViews.MEDICATION_REQUEST_ELEMENTS));
+        return timed("getMedicationRequestViews", search(MedicationRequest.class, parameters)
+                .map(FhirViews::toMedicationRequestView)
+                .collectList());
+    }
+
+    @Override
+    public Mono<List<Task>> getTaskListWithFocus(String patientId, Task.TaskStatus status, String focusType) {
+        MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+        parameters.add("patient", patientId);
+        parameters.add("status", status.toCode());
+        parameters.add("_include", Task.INCLUDE_FOCUS.withType(focusType).getValue());
+        return timed("getTaskListWithFocus", searchPages(Task.class, parameters).collectList().map(FhirResources::toTasksWithFocus));
+    }
+
+    @Override
+    public Mono<String> createObservation(String system, String ontologyCoding, Observation.ObservationStatus status) {
+        return timed("createObservation", create(FhirResources.newObservation(system, ontologyCoding, status)));
+    }
+
+    @Override
+    public Mono<String> createMedicationRequest(MedicationRequest medicationRequest,
+                                                MedicationRequest.MedicationRequestStatus status,
+                                                MedicationRequest.MedicationRequestIntent medicationRequestIntent,
+                                                String patientId) {
+        return timed("createMedicationRequest", create(FhirResources.prepareMedicationRequest(medicationRequest, status, medicationRequestIntent, patientId)));
+    }
+
+    @Override
+    public Mono<String> createCommunication(Communication.CommunicationStatus status, String referenceId) {
+        return timed("createCommunication", create(FhirResources.newCommunication(status, referenceId)));
+    }
+
+    @Override
+    public Mono<Boolean> updateCommunication(Communication communication, Communication.CommunicationStatus status) {
+        FhirResources.claim(communication, status);
+        return timed("updateCommunication", update(communication, FhirResources.ifMatch(communication))
+                .thenReturn(true)
+                .onErrorResume(e -> e instanceof DownstreamRequestException
+                                && ((DownstreamRequestException) e).getStatus() == HttpStatus.PRECONDITION_FAILED,
+                        e -> Mono.just(false)));
+    }
+
+    @Override
+    public Mono<List<EntryOutcome>> updateCommunications(List<Communication> communications,
+                                                         Communication.CommunicationStatus status) {
+        List<List<Communication>> chunks = new ArrayList<>();
+        for (int from = 0; from < communications.size(); from += batchSize) {
+            chunks.add(communications.subList(from, Math.min(from + batchSize, communications.size())));
+        }
+        return timed("updateCommunications", Flux.fromIterable(chunks)
+                .concatMap(chunk -> transaction(FhirResources.newCommunicationStatusBatch(chunk, status))
+                        .map(response -> FhirResources.toEntryOutcomes(response, chunk))
+                        .onErrorResume(e -> Mono.just(FhirResources.toFailedEntryOutcomes(chunk, e.getMessage()))))
+                .flatMapIterable(outcomes -> outcomes)
+                .collectList());
+    }
+
+    @Override
+    public Mono<Void> createTask(Reference patient, Reference resource) {
+        return timed("createTask", create(FhirResources.newTask(patient, resource)).then());
+    }
+
+    @Override
+    public Mono<Void> updateTask(Task task, Task.TaskStatus status) {
+        task.setStatus(status);
+        return timed("updateTask", update(task));
+    }
+
+    private static String toSearchDate(Date date) {
+        DateTimeType dateTime = new DateTimeType(date);
+        dateTime.setTimeZoneZulu(true);
+        return dateTime.getValueAsString();
+    }
+
+    private static String toTokenList(Collection<Coding> codings) {
+        return codings.stream()
+                .map(coding -> coding.getSystem() + "|" + coding.getCode())
+                .collect(Collectors.joining(","));
+    }
+
+    private Mono<Bundle> getBundle(WebClient.RequestHeadersSpec<?> request, String methodName) {
+        return request
+                .retrieve()
+                .onStatus(HttpStatus::isError, response -> onError(response, methodName))
+                .onStatus(HttpStatus::is2xxSuccessful, response -> onSuccess(methodName))
+                .bodyToMono(String.class)
+                .map(body -> ctx.newJsonParser().parseResource(Bundle.class, body));
+    }
+}
@@ -1,5 +1,6 @@
 package com.capable.physiciandss.services;
 
+import com.capable.physiciandss.tracing.Tracer;
 import com.capable.physiciandss.utils.Constants;
 import org.slf4j.Logger;
 import org.springframework.web.reactive.function.client.ClientResponse;
@@ -8,16 +9,29 @@ import reactor.core.publisher.Mono;
 public class RootService {
 
     protected Logger log;
+    protected DownstreamMetrics metrics;
+    protected String downstream;
+
+    /**
+     * Records the call in the downstream metrics of the service under the given method name.
+     */
+    protected <T> Mono<T> timed(String methodName, Mono<T> call) {
+        return metrics.time(downstream, methodName, call);
+    }
 
     protected Mono<? extends Throwable> onError(ClientResponse response, String methodName) {
-        IllegalStateException ex = new IllegalStateException(methodName + Constants.REQUEST_FAILED_MESSAGE
-                + response.statusCode());
-        log.debug(ex.getMessage());
-        return Mono.error(ex);
+        DownstreamRequestException ex = new DownstreamRequestException(methodName + Constants.REQUEST_FAILED_MESSAGE
+                + response.statusCode(), response.statusCode());
+        return Mono.subscriberContext().flatMap(context -> {
+            Tracer.withMdc(context, () -> log.debug(ex.getMessage()));
+            return Mono.error(ex);
+        });
     }
 
     protected Mono<? extends Throwable> onSuccess(String postEnact) {
-        log.info(postEnact + Constants.REQUEST_SUCCEDED_MESSAGE);
-        return Mono.empty();
+        return Mono.subscriberContext().flatMap(context -> {
+            Tracer.withMdc(context, () -> log.info(postEnact + Constants.REQUEST_SUCCEDED_MESSAGE));
+            return Mono.empty();
+        });
     }
 }
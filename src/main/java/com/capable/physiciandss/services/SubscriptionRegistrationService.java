@@ -0,0 +1,41 @@
+package com.capable.physiciandss.services;
+
+import com.capable.physiciandss.utils.Constants;
+import org.hl7.fhir.r4.model.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Registers the Communication rest-hook subscription in HAPI FHIR when push ingestion is enabled.
+ * If registration fails, the scheduler keeps polling so no data is lost.
+ */
+@Service
+@ConditionalOnProperty(name = "phdss.ingestion.mode", havingValue = "push")
+public class SubscriptionRegistrationService {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass().getName());
+    private final HapiRequestService hapiRequestService;
+    private final String webhookUrl;
+
+    public SubscriptionRegistrationService(HapiRequestService hapiRequestService,
+                                           @Value("${phdss.ingestion.webhook-url}") String webhookUrl) {
+        this.hapiRequestService = hapiRequestService;
+        this.webhookUrl = webhookUrl;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerCommunicationSubscription() {
+        try {
+            Subscription subscription = hapiRequestService.createOrUpdateRestHookSubscription(
+                    Constants.COMMUNICATION_SUBSCRIPTION_CRITERIA, webhookUrl, Constants.COMMUNICATION_SUBSCRIPTION_REASON);
+            log.info("Communication subscription registered with id: " + subscription.getIdElement().getIdPart());
+        } catch (Exception e) {
+            log.error("Could not register communication subscription, falling back to polling only", e);
+        }
+    }
+}
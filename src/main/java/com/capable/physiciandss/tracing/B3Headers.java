@@ -0,0 +1,21 @@
+package com.capable.physiciandss.tracing;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Propagates a span to downstream services in the B3 multi-header format understood by Zipkin and
+ * OpenTelemetry.
+ */
+class B3Headers {
+
+    static final String CLIENT = "CLIENT";
+
+    static void inject(Span span, BiConsumer<String, String> headers) {
+        headers.accept("X-B3-TraceId", span.getTraceId());
+        headers.accept("X-B3-SpanId", span.getId());
+        if (span.getParentId() != null) {
+            headers.accept("X-B3-ParentSpanId", span.getParentId());
+        }
+        headers.accept("X-B3-Sampled", span.isSampled() ? "1" : "0");
+    }
+}
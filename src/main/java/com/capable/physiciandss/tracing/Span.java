@@ -0,0 +1,49 @@
+package com.capable.physiciandss.tracing;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed operation of a trace, serialized in the Zipkin v2 JSON format. Timestamp and duration are in
+ * microseconds.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Span {
+    private String traceId;
+    private String id;
+    private String parentId;
+    private String name;
+    private String kind;
+    private Long timestamp;
+    private Long duration;
+    private Endpoint localEndpoint;
+    private Endpoint remoteEndpoint;
+    private Map<String, String> tags;
+    @JsonIgnore
+    private boolean sampled;
+    @JsonIgnore
+    private long startNanos;
+
+    public Span tag(String key, String value) {
+        if (tags == null) {
+            tags = new LinkedHashMap<>();
+        }
+        tags.put(key, value);
+        return this;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Endpoint {
+        private String serviceName;
+    }
+}
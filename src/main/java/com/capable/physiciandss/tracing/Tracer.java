@@ -0,0 +1,222 @@
+package com.capable.physiciandss.tracing;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.util.context.Context;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Starts and finishes the spans of a trace. Reactive code finds its current span in the Reactor Context,
+ * blocking code in a thread local which also puts the ids in the MDC as traceId and spanId. Finished spans of
+ * sampled traces are handed to the {@link ZipkinSpanExporter}.
+ */
+@Component
+public class Tracer {
+
+    public static final String TRACE_ID = "traceId";
+    public static final String SPAN_ID = "spanId";
+    private static final String SERVICE_NAME = "phdss";
+    private static final Class<Span> CONTEXT_KEY = Span.class;
+    private static final ThreadLocal<Span> currentSpan = new ThreadLocal<>();
+    private static final ThreadLocal<Span> pendingClientSpan = new ThreadLocal<>();
+    private final ZipkinSpanExporter exporter;
+    private final double sampleRate;
+
+    public Tracer(ZipkinSpanExporter exporter, @Value("${phdss.tracing.sample-rate:1.0}") double sampleRate) {
+        this.exporter = exporter;
+        this.sampleRate = sampleRate;
+    }
+
+    public Span newTrace(String name) {
+        String traceId = newId();
+        return start(traceId, traceId, null, name, ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public Span newChild(Span parent, String name) {
+        return start(parent.getTraceId(), newId(), parent.getId(), name, parent.isSampled());
+    }
+
+    public void finish(Span span) {
+        span.setDuration(Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - span.getStartNanos())));
+        if (span.isSampled()) {
+            exporter.export(span);
+        }
+    }
+
+    public Span currentSpan() {
+        return currentSpan.get();
+    }
+
+    /**
+     * Keeps the client span of a blocking request made by the thread until its response arrives; a request which
+     * fails without a response finishes it when it leaves the scope of the blocking work.
+     */
+    public void startClientSpan(Span span) {
+        pendingClientSpan.set(span);
+    }
+
+    /**
+     * @return the client span of the last request of the thread which is still waiting for a response, or null
+     */
+    public Span takeClientSpan() {
+        Span span = pendingClientSpan.get();
+        pendingClientSpan.remove();
+        return span;
+    }
+
+    public static Optional<Span> spanOf(Context context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    /**
+     * Makes the span the current one of the mono and of everything it subscribes to.
+     */
+    public <T> Mono<T> withSpan(Span span, Mono<T> mono) {
+        return mono.subscriberContext(context -> context.put(CONTEXT_KEY, span));
+    }
+
+    /**
+     * Runs the mono in a new child span of its current span; without a current span the mono is not traced.
+     */
+    public <T> Mono<T> trace(String name, Mono<T> mono) {
+        return Mono.subscriberContext().flatMap(context -> {
+            Optional<Span> parent = spanOf(context);
+            if (!parent.isPresent()) {
+                return mono;
+            }
+            Span span = newChild(parent.get(), name);
+            return withSpan(span, mono)
+                    .doOnError(exception -> span.tag("error", String.valueOf(exception.getMessage())))
+                    .doFinally(signal -> finish(span));
+        });
+    }
+
+    /**
+     * Runs blocking work with the span as the current span of the thread.
+     */
+    public <T> T inScope(Span span, Supplier<T> work) {
+        Span previous = currentSpan.get();
+        setCurrentSpan(span);
+        try {
+            return work.get();
+        } catch (RuntimeException exception) {
+            failClientSpan(exception);
+            throw exception;
+        } finally {
+            setCurrentSpan(previous);
+        }
+    }
+
+    /**
+     * Runs blocking work with the current span of the Reactor Context as the current span of the thread.
+     */
+    public <T> T inScope(Context context, Callable<T> work) throws Exception {
+        Span previous = currentSpan.get();
+        setCurrentSpan(spanOf(context).orElse(null));
+        try {
+            return work.call();
+        } catch (Exception exception) {
+            failClientSpan(exception);
+            throw exception;
+        } finally {
+            setCurrentSpan(previous);
+        }
+    }
+
+    /**
+     * Logs with the ids of the current span of the Reactor Context in the MDC.
+     */
+    public static void withMdc(Context context, Runnable logging) {
+        Optional<Span> span = spanOf(context);
+        if (!span.isPresent()) {
+            logging.run();
+            return;
+        }
+        String previousTraceId = MDC.get(TRACE_ID);
+        String previousSpanId = MDC.get(SPAN_ID);
+        putMdc(span.get().getTraceId(), span.get().getId());
+        try {
+            logging.run();
+        } finally {
+            putMdc(previousTraceId, previousSpanId);
+        }
+    }
+
+    /**
+     * Builds the mono when it is subscribed to, with the ids of the current span of the Reactor Context in the
+     * MDC, so what is logged while building it is correlated with the trace.
+     */
+    public static <T> Mono<T> deferWithMdc(Supplier<Mono<T>> mono) {
+        return Mono.subscriberContext().flatMap(context -> {
+            AtomicReference<Mono<T>> built = new AtomicReference<>();
+            withMdc(context, () -> built.set(mono.get()));
+            return built.get();
+        });
+    }
+
+    /**
+     * Logs every value of a mono, for doOnEach, with the ids of the current span of its Reactor Context in the MDC.
+     */
+    public static <T> Consumer<Signal<T>> onNextWithMdc(Consumer<T> logging) {
+        return signal -> {
+            if (signal.isOnNext()) {
+                withMdc(signal.getContext(), () -> logging.accept(signal.get()));
+            }
+        };
+    }
+
+    private void failClientSpan(Exception exception) {
+        Span span = takeClientSpan();
+        if (span != null) {
+            span.tag("error", String.valueOf(exception.getMessage()));
+            finish(span);
+        }
+    }
+
+    private static void setCurrentSpan(Span span) {
+        if (span == null) {
+            currentSpan.remove();
+            putMdc(null, null);
+        } else {
+            currentSpan.set(span);
+            putMdc(span.getTraceId(), span.getId());
+        }
+    }
+
+    private static void putMdc(String traceId, String spanId) {
+        if (traceId == null) {
+            MDC.remove(TRACE_ID);
+            MDC.remove(SPAN_ID);
+        } else {
+            MDC.put(TRACE_ID, traceId);
+            MDC.put(SPAN_ID, spanId);
+        }
+    }
+
+    private static Span start(String traceId, String id, String parentId, String name, boolean sampled) {
+        Span span = new Span();
+        span.setTraceId(traceId);
+        span.setId(id);
+        span.setParentId(parentId);
+        span.setName(name);
+        span.setSampled(sampled);
+        span.setLocalEndpoint(new Span.Endpoint(SERVICE_NAME));
+        span.setTimestamp(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+        span.setStartNanos(System.nanoTime());
+        return span;
+    }
+
+    private static String newId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+}
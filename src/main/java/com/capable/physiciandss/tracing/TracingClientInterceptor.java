@@ -0,0 +1,61 @@
+package com.capable.physiciandss.tracing;
+
+import ca.uhn.fhir.rest.client.api.IClientInterceptor;
+import ca.uhn.fhir.rest.client.api.IHttpRequest;
+import ca.uhn.fhir.rest.client.api.IHttpResponse;
+
+/**
+ * Records every HAPI FHIR client request made within a trace as a client span of the current span of the
+ * calling thread and passes the trace on in B3 headers. The client calls the interceptor for request and
+ * response on the same thread, so the span in progress is kept by the {@link Tracer} for the thread. Requests
+ * failing without a response never reach the interceptor again; their span is finished by the {@link Tracer}
+ * scope of the blocking call.
+ */
+public class TracingClientInterceptor implements IClientInterceptor {
+
+    private static final String REMOTE_SERVICE_NAME = "hapi-fhir";
+    private final Tracer tracer;
+    private final String baseUrl;
+
+    public TracingClientInterceptor(Tracer tracer, String baseUrl) {
+        this.tracer = tracer;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    }
+
+    @Override
+    public void interceptRequest(IHttpRequest request) {
+        Span parent = tracer.currentSpan();
+        if (parent == null) {
+            tracer.takeClientSpan();
+            return;
+        }
+        Span span = tracer.newChild(parent, request.getHttpVerbName().toLowerCase() + " /" + resourceType(request.getUri()));
+        span.setKind(B3Headers.CLIENT);
+        span.setRemoteEndpoint(new Span.Endpoint(REMOTE_SERVICE_NAME));
+        span.tag("http.method", request.getHttpVerbName()).tag("http.url", request.getUri());
+        B3Headers.inject(span, request::addHeader);
+        tracer.startClientSpan(span);
+    }
+
+    @Override
+    public void interceptResponse(IHttpResponse response) {
+        Span span = tracer.takeClientSpan();
+        if (span == null) {
+            return;
+        }
+        span.tag("http.status_code", String.valueOf(response.getStatus()));
+        if (response.getStatus() >= 400) {
+            span.tag("error", String.valueOf(response.getStatus()));
+        }
+        tracer.finish(span);
+    }
+
+    private String resourceType(String uri) {
+        String path = uri.startsWith(baseUrl) ? uri.substring(baseUrl.length()) : uri;
+        int end = 0;
+        while (end < path.length() && "/?".indexOf(path.charAt(end)) < 0) {
+            end++;
+        }
+        return path.substring(0, end);
+    }
+}
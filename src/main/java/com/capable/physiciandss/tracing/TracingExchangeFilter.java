@@ -0,0 +1,48 @@
+package com.capable.physiciandss.tracing;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records every WebClient exchange made within a trace as a client span of the current span of the Reactor
+ * Context and passes the trace on in B3 headers.
+ */
+public class TracingExchangeFilter implements ExchangeFilterFunction {
+
+    private final Tracer tracer;
+    private final String remoteServiceName;
+
+    public TracingExchangeFilter(Tracer tracer, String remoteServiceName) {
+        this.tracer = tracer;
+        this.remoteServiceName = remoteServiceName;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.subscriberContext().flatMap(context -> {
+            if (!Tracer.spanOf(context).isPresent()) {
+                return next.exchange(request);
+            }
+            Span span = tracer.newChild(Tracer.spanOf(context).get(),
+                    request.method().name().toLowerCase() + " " + request.url().getPath());
+            span.setKind(B3Headers.CLIENT);
+            span.setRemoteEndpoint(new Span.Endpoint(remoteServiceName));
+            span.tag("http.method", request.method().name()).tag("http.path", request.url().getPath());
+            ClientRequest tracedRequest = ClientRequest.from(request)
+                    .headers(headers -> B3Headers.inject(span, headers::set))
+                    .build();
+            return next.exchange(tracedRequest)
+                    .doOnSuccess(response -> {
+                        span.tag("http.status_code", String.valueOf(response.rawStatusCode()));
+                        if (response.rawStatusCode() >= 400) {
+                            span.tag("error", String.valueOf(response.rawStatusCode()));
+                        }
+                    })
+                    .doOnError(exception -> span.tag("error", String.valueOf(exception.getMessage())))
+                    .doFinally(signal -> tracer.finish(span));
+        });
+    }
+}
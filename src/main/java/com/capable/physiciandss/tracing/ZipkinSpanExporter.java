@@ -0,0 +1,70 @@
+package com.capable.physiciandss.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues finished spans and posts them in batches to a Zipkin compatible collector (Zipkin, Jaeger with
+ * its Zipkin endpoint or an OpenTelemetry Collector with the zipkin receiver). Spans are dropped when no
+ * endpoint is configured or the queue is full, so tracing never slows the process flow down.
+ */
+@Component
+public class ZipkinSpanExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(ZipkinSpanExporter.class);
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final Duration EXPORT_TIMEOUT = Duration.ofSeconds(10);
+    private final BlockingQueue<Span> queue;
+    private final WebClient webClient;
+    private final AtomicLong droppedSpans = new AtomicLong();
+
+    public ZipkinSpanExporter(@Value("${phdss.tracing.zipkin.endpoint:}") String endpoint,
+                              @Value("${phdss.tracing.zipkin.queue-size:10000}") int queueSize) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.webClient = endpoint.isEmpty() ? null : WebClient.create(endpoint);
+        log.info("ZipkinSpanExporter has been created" + (endpoint.isEmpty() ? ", spans will not be exported"
+                : " with endpoint: " + endpoint));
+    }
+
+    public void export(Span span) {
+        if (webClient == null || !queue.offer(span)) {
+            droppedSpans.incrementAndGet();
+        }
+    }
+
+    public long getDroppedSpanCount() {
+        return droppedSpans.get();
+    }
+
+    @Scheduled(fixedDelayString = "${phdss.tracing.zipkin.flush-interval-ms:1000}")
+    public void flush() {
+        while (webClient != null && !queue.isEmpty()) {
+            List<Span> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            queue.drainTo(batch, MAX_BATCH_SIZE);
+            try {
+                webClient.post()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(batch)
+                        .retrieve()
+                        .toBodilessEntity()
+                        .block(EXPORT_TIMEOUT);
+            } catch (RuntimeException e) {
+                log.debug("[flush]\tCould not export " + batch.size() + " spans: " + e.getMessage());
+                droppedSpans.addAndGet(batch.size());
+                return;
+            }
+        }
+    }
+}
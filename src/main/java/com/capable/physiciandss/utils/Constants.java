@@ -4,6 +4,7 @@ public class Constants {
     //public static final String HAPI_BASE_URL = "http://10.131.46.196:8080/baseR4/";
     public static final String HAPI_BASE_URL = "http://localhost:9000/baseR4/";
     public static final String GOCOM_BASE_URL = "localhost:9000";
+    public static final String FHIR_JSON_MEDIA_TYPE = "application/fhir+json";
 
 
     public static final String X_APIKEY = "";
@@ -18,6 +19,9 @@ public class Constants {
     public static final String SCHEDULER_TASK_BAD_PAYLOAD_TYPE = "Wrong payload type";
     public static final String SCHEDULER_TASK_BAD_DEONTIC_TASKS_TYPE = "Wrong deontic task's type";
 
+    public static final String COMMUNICATION_SUBSCRIPTION_CRITERIA = "Communication?status=in-progress";
+    public static final String COMMUNICATION_SUBSCRIPTION_REASON = "PhDSS push ingestion of in-progress communications";
+
     public static final String DEONTICS_IN_PROGRESS_STATUS = "in_progress";
     public static final String DEONTICS_ENQUIRY_TASK_TYPE = "enquiry";
     public static final String DEONTICS_ACTION_TASK_TYPE = "action";
@@ -0,0 +1,96 @@
+package com.capable.physiciandss.utils;
+
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import org.hl7.fhir.r4.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * Selects resources by time. Every resource is turned into a primitive epoch millisecond key once and the
+ * selection is a single pass over the list, which is never modified. Resources without the timestamp
+ * (key {@link #MISSING}) are never selected.
+ */
+public class TemporalSelection {
+
+    public static final long MISSING = Long.MIN_VALUE;
+
+    public static <T> Optional<T> newest(List<T> resources, ToLongFunction<T> epochKey) {
+        T newest = null;
+        long newestKey = MISSING;
+        for (T resource : resources) {
+            long key = epochKey.applyAsLong(resource);
+            if (key != MISSING && (newest == null || key > newestKey)) {
+                newest = resource;
+                newestKey = key;
+            }
+        }
+        return Optional.ofNullable(newest);
+    }
+
+    /**
+     * Resources whose key is in [fromInclusive, toExclusive), in the order of the input list.
+     */
+    public static <T> List<T> within(List<T> resources, ToLongFunction<T> epochKey, long fromInclusive, long toExclusive) {
+        List<T> selected = new ArrayList<>();
+        for (T resource : resources) {
+            long key = epochKey.applyAsLong(resource);
+            if (key != MISSING && key >= fromInclusive && key < toExclusive) {
+                selected.add(resource);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Dosage bounds period which ends latest among all dosages of the MedicationRequests, empty when none
+     * has an end.
+     */
+    public static Optional<Period> latestDosageBounds(List<MedicationRequestView> medicationRequests) {
+        Period latest = null;
+        for (MedicationRequestView medicationRequest : medicationRequests) {
+            for (Period period : medicationRequest.getDosageBounds()) {
+                if (period.getEnd() != null && (latest == null || period.getEnd().after(latest.getEnd()))) {
+                    latest = period;
+                }
+            }
+        }
+        return Optional.ofNullable(latest);
+    }
+
+    public static boolean isRunning(Period period, long nowMillis) {
+        return period.getStart() != null && period.getStart().getTime() < nowMillis
+                && nowMillis < period.getEnd().getTime();
+    }
+
+    public static long effectiveMillis(Observation observation) {
+        if (!observation.hasEffectiveDateTimeType()) {
+            return MISSING;
+        }
+        return toMillis(observation.getEffectiveDateTimeType());
+    }
+
+    public static long dosageStartMillis(MedicationRequest medicationRequest) {
+        Period period = getDosageBounds(medicationRequest);
+        return period == null ? MISSING : toMillis(period.getStartElement());
+    }
+
+    public static long dosageEndMillis(MedicationRequest medicationRequest) {
+        Period period = getDosageBounds(medicationRequest);
+        return period == null ? MISSING : toMillis(period.getEndElement());
+    }
+
+    private static Period getDosageBounds(MedicationRequest medicationRequest) {
+        if (!medicationRequest.hasDosageInstruction()) {
+            return null;
+        }
+        Timing.TimingRepeatComponent repeat = medicationRequest.getDosageInstructionFirstRep().getTiming().getRepeat();
+        return repeat.hasBoundsPeriod() ? repeat.getBoundsPeriod() : null;
+    }
+
+    private static long toMillis(BaseDateTimeType dateTime) {
+        return dateTime == null || dateTime.getValue() == null ? MISSING : dateTime.getValue().getTime();
+    }
+}
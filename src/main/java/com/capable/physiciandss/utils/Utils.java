@@ -4,16 +4,10 @@ import org.hl7.fhir.r4.model.DateTimeType;
 import org.hl7.fhir.r4.model.MedicationRequest;
 import org.hl7.fhir.r4.model.Observation;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
-import static com.capable.physiciandss.utils.Constants.HAPI_DATETIMETYPE_FORMAT_MR;
-import static com.capable.physiciandss.utils.Constants.HAPI_DATETIMETYPE_FORMAT_OBS;
-
 public class Utils {
     public static boolean isCodingMatching(String code, String code2, String system, String system2) {
         if (code == null || code2 == null || system == null || system2 == null)
@@ -40,36 +34,32 @@ public class Utils {
         return yesterdayDate;
     }
 
+    /**
+     * MedicationRequest with the latest dosage end, present only when its dosage period contains now.
+     */
     public static Optional<MedicationRequest> getNewestMedicationRequestFromList
-            (ArrayList<MedicationRequest> medicationRequests) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(HAPI_DATETIMETYPE_FORMAT_MR);
-        if (medicationRequests.size() == 0)
+            (List<MedicationRequest> medicationRequests) {
+        Optional<MedicationRequest> newest = TemporalSelection.newest(medicationRequests, TemporalSelection::dosageEndMillis);
+        if (!newest.isPresent())
             return Optional.empty();
-        medicationRequests.sort(Comparator.comparing(mR -> LocalDate.parse(mR.getDosageInstruction()
-                .get(0).getTiming().getRepeat().getBoundsPeriod()
-                .getEndElement().asStringValue(), formatter)));
-
-        DateTimeType dosageStartDate = medicationRequests.get(medicationRequests.size() - 1).getDosageInstruction()
-                .get(0).getTiming().getRepeat().getBoundsPeriod().getStartElement();
-
-        DateTimeType dosageEndDate = medicationRequests.get(medicationRequests.size() - 1).getDosageInstruction()
-                .get(0).getTiming().getRepeat().getBoundsPeriod().getEndElement();
-        if (Utils.isBetweenDates(new DateTimeType(new Date()), dosageStartDate, dosageEndDate)) {
-            return Optional.of(medicationRequests.get(0));
+        long now = System.currentTimeMillis();
+        long dosageStart = TemporalSelection.dosageStartMillis(newest.get());
+        long dosageEnd = TemporalSelection.dosageEndMillis(newest.get());
+        if (dosageStart != TemporalSelection.MISSING && dosageStart < now && now < dosageEnd) {
+            return newest;
         } else {
             return Optional.empty();
         }
     }
 
+    /**
+     * Observation with the latest effective date, present only when that date is not in the future.
+     */
     public static Optional<Observation> getNewestObservationFromList
-            (ArrayList<Observation> observations) {
-        if (observations.size() == 0)
-            return Optional.empty();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(HAPI_DATETIMETYPE_FORMAT_OBS);
-        observations.sort(Comparator.comparing(o ->
-                LocalDate.parse(o.getEffectiveDateTimeType().asStringValue(), formatter)));
-        if (observations.get(observations.size() - 1).getEffectiveDateTimeType().before(new DateTimeType(new Date()))) {
-            return Optional.of(observations.get(0));
+            (List<Observation> observations) {
+        Optional<Observation> newest = TemporalSelection.newest(observations, TemporalSelection::effectiveMillis);
+        if (newest.isPresent() && TemporalSelection.effectiveMillis(newest.get()) < System.currentTimeMillis()) {
+            return newest;
         } else {
             return Optional.empty();
         }
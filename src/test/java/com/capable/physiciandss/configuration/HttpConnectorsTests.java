@@ -0,0 +1,93 @@
+package com.capable.physiciandss.configuration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpConnectorsTests {
+
+    private static final String BODY = "{\"pathways\":\"" + new String(new char[4096]).replace('\0', 'x') + "\"}";
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final HttpClientProperties properties = new HttpClientProperties();
+    private DisposableServer server;
+    private ConnectionProvider provider;
+
+    @BeforeEach
+    void startServer() {
+        server = HttpServer.create()
+                .port(0)
+                .compress(true)
+                .route(routes -> routes
+                        .get("/fast", (request, response) -> response.sendString(Mono.just(BODY)))
+                        .get("/slow", (request, response) -> response.sendString(
+                                Mono.just(BODY).delayElement(Duration.ofSeconds(5)))))
+                .bindNow();
+        properties.setResponseTimeoutMs(1500);
+        provider = HttpConnectors.connectionProvider("test", properties, registry);
+    }
+
+    @AfterEach
+    void stopServer() {
+        provider.dispose();
+        server.disposeNow();
+    }
+
+    @Test
+    void recordsAcquireTimeAndDecompressesResponses() {
+        WebClient webClient = webClient();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(BODY, webClient.get().uri("/fast").retrieve().bodyToMono(String.class).block());
+        }
+
+        assertEquals(3, registry.get("phdss.http.client.pool.acquire").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void recordsAcquireTimeouts() {
+        properties.setMaxConnections(1);
+        properties.setPendingAcquireTimeoutMs(100);
+        ConnectionProvider singleConnection = HttpConnectors.connectionProvider("single", properties, registry);
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + server.port())
+                .clientConnector(HttpConnectors.connector(singleConnection, properties))
+                .build();
+        try {
+            webClient.get().uri("/slow").retrieve().bodyToMono(String.class).subscribe(body -> { }, error -> { });
+
+            assertThrows(RuntimeException.class,
+                    () -> webClient.get().uri("/fast").retrieve().bodyToMono(String.class).block());
+
+            assertEquals(1, registry.get("phdss.http.client.pool.acquire")
+                    .tags("pool", "single", "outcome", "timeout").timer().count());
+        } finally {
+            singleConnection.dispose();
+        }
+    }
+
+    @Test
+    void failsWhenResponseTakesTooLong() {
+        Mono<String> slow = webClient().get().uri("/slow").retrieve().bodyToMono(String.class);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, slow::block);
+        assertTrue(exception.getCause() instanceof TimeoutException);
+    }
+
+    private WebClient webClient() {
+        return WebClient.builder()
+                .baseUrl("http://localhost:" + server.port())
+                .clientConnector(HttpConnectors.connector(provider, properties))
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.capable.physiciandss.flow;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PatientPartitionedExecutorTests {
+
+    private final PatientPartitionedExecutor executor = new PatientPartitionedExecutor(4, 100, 1000, "blocking");
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void keepsSubmissionOrderForOnePatient() {
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int step = i;
+            futures.add(executor.submit("Patient/1", () -> processed.add(step)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, processed.get(i));
+        }
+    }
+
+    @Test
+    void slowPatientDoesNotBlockOtherLanes() throws InterruptedException {
+        CountDownLatch slowPatientReleased = new CountDownLatch(1);
+        CountDownLatch otherPatientProcessed = new CountDownLatch(1);
+        String slowPatient = "Patient/1";
+        String otherPatient = "Patient/2";
+        for (int i = 3; Math.floorMod(otherPatient.hashCode(), 4) == Math.floorMod(slowPatient.hashCode(), 4); i++) {
+            otherPatient = "Patient/" + i;
+        }
+
+        executor.submit(slowPatient, () -> {
+            try {
+                slowPatientReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.submit(otherPatient, otherPatientProcessed::countDown);
+
+        assertTrue(otherPatientProcessed.await(5, TimeUnit.SECONDS));
+        slowPatientReleased.countDown();
+    }
+}
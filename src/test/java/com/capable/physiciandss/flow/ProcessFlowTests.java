@@ -0,0 +1,89 @@
+package com.capable.physiciandss.flow;
+
+import com.capable.physiciandss.hapi.FhirResources;
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.resilience.DownstreamUnavailableException;
+import com.capable.physiciandss.services.DeonticsRequestService;
+import com.capable.physiciandss.services.FhirGateway;
+import com.capable.physiciandss.tracing.Tracer;
+import com.capable.physiciandss.tracing.ZipkinSpanExporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hl7.fhir.r4.model.Communication;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProcessFlowTests {
+
+    private final FhirGateway fhirGateway = mock(FhirGateway.class);
+    private final ProcessFlow processFlow = new ProcessFlow(fhirGateway, null, null, null, null, null, null,
+            null, null, null, 0);
+
+    @Test
+    void readsCommunicationsAgainWhenClaimOutcomeIsUnknown() {
+        Communication stale = communication("1", 3);
+        Communication claimedElsewhere = communication("2", 1);
+        Communication unreadable = communication("3", 1);
+        Communication current = communication("1", 4);
+        current.setStatus(Communication.CommunicationStatus.INPROGRESS);
+        Communication completed = communication("2", 2);
+        completed.setStatus(Communication.CommunicationStatus.COMPLETED);
+        when(fhirGateway.updateCommunications(anyList(), any())).thenAnswer(invocation -> {
+            FhirResources.newCommunicationStatusBatch(invocation.getArgument(0), invocation.getArgument(1));
+            return Mono.just(Arrays.asList(
+                    new EntryOutcome("Communication/1", "412 Precondition Failed", false, null),
+                    new EntryOutcome("Communication/2", null, false, "Read timed out"),
+                    new EntryOutcome("Communication/3", null, false, "Read timed out")));
+        });
+        when(fhirGateway.getCommunication("1")).thenReturn(Mono.just(current));
+        when(fhirGateway.getCommunication("2")).thenReturn(Mono.just(completed));
+        when(fhirGateway.getCommunication("3")).thenReturn(Mono.error(new IllegalStateException("HAPI unavailable")));
+
+        List<Communication> toRetry = processFlow.processCommunications(Arrays.asList(stale, claimedElsewhere, unreadable));
+
+        assertEquals(2, toRetry.size());
+        assertSame(current, toRetry.get(0));
+        assertSame(unreadable, toRetry.get(1));
+        assertTrue(FhirResources.hasPendingClaim(toRetry.get(1)));
+    }
+
+    @Test
+    void countsStepsDroppedAfterFailure() {
+        DeonticsRequestService deonticsRequestService = mock(DeonticsRequestService.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProcessFlow flow = new ProcessFlow(fhirGateway, deonticsRequestService, null,
+                new PatientPartitionedExecutor(0, 100, 1000, "blocking"), null, null, null, new FlowMetrics(registry),
+                new Tracer(new ZipkinSpanExporter("", 10), 1.0), null, 0);
+        Communication newPatient = communication("1", 1);
+        newPatient.addPayload().setContent(new Reference("Patient/1").setType("Patient"));
+        when(fhirGateway.updateCommunications(anyList(), any())).thenReturn(Mono.just(Collections.singletonList(
+                new EntryOutcome("Communication/1", "200 OK", true, null))));
+        when(deonticsRequestService.getPathwayByName(any()))
+                .thenReturn(Mono.error(new DownstreamUnavailableException("Circuit breaker of deontics is open")));
+
+        flow.processCommunications(Collections.singletonList(newPatient));
+
+        assertEquals(1, registry.get("phdss.flow.dropped")
+                .tag("step", "getPathwayByName")
+                .tag("exception", "DownstreamUnavailableException")
+                .counter().count());
+    }
+
+    private static Communication communication(String id, int version) {
+        Communication communication = new Communication();
+        communication.setId("Communication/" + id + "/_history/" + version);
+        return communication;
+    }
+}
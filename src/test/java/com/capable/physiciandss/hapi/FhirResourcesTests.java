@@ -0,0 +1,65 @@
+package com.capable.physiciandss.hapi;
+
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Communication;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FhirResourcesTests {
+
+    @Test
+    void communicationStatusBatchIsConditionalOnReadVersion() {
+        Communication versioned = new Communication();
+        versioned.setId("Communication/1/_history/3");
+        Communication unversioned = new Communication();
+        unversioned.setId("Communication/2");
+
+        Bundle batch = FhirResources.newCommunicationStatusBatch(Arrays.asList(versioned, unversioned),
+                Communication.CommunicationStatus.COMPLETED);
+
+        assertEquals("Communication/1", batch.getEntry().get(0).getRequest().getUrl());
+        assertEquals("W/\"3\"", batch.getEntry().get(0).getRequest().getIfMatch());
+        assertNull(batch.getEntry().get(1).getRequest().getIfMatch());
+    }
+
+    @Test
+    void preconditionFailedEntryIsNotSuccessful() {
+        Communication claimed = new Communication();
+        claimed.setId("Communication/1/_history/3");
+        Communication updated = new Communication();
+        updated.setId("Communication/2/_history/1");
+        Bundle response = new Bundle();
+        response.addEntry().getResponse().setStatus("412 Precondition Failed");
+        response.addEntry().getResponse().setStatus("200 OK");
+
+        List<EntryOutcome> outcomes = FhirResources.toEntryOutcomes(response, Arrays.asList(claimed, updated));
+
+        assertFalse(outcomes.get(0).isSuccessful());
+        assertEquals("412 Precondition Failed", outcomes.get(0).getStatus());
+        assertTrue(outcomes.get(1).isSuccessful());
+    }
+
+    @Test
+    void recognisesClaimWhoseResponseWasLost() {
+        Communication sent = new Communication();
+        sent.setId("Communication/1/_history/3");
+        FhirResources.newCommunicationStatusBatch(Collections.singletonList(sent),
+                Communication.CommunicationStatus.COMPLETED);
+        Communication current = sent.copy();
+        current.setId("Communication/1/_history/4");
+        Communication resent = sent.copy();
+        FhirResources.claim(sent, Communication.CommunicationStatus.COMPLETED);
+
+        assertTrue(FhirResources.hasPendingClaim(sent));
+        assertTrue(FhirResources.isClaimedBy(current, sent));
+        assertFalse(FhirResources.isClaimedBy(current, resent));
+        current.setStatus(Communication.CommunicationStatus.INPROGRESS);
+        assertFalse(FhirResources.isClaimedBy(current, sent));
+    }
+}
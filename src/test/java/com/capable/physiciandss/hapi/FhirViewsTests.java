@@ -0,0 +1,81 @@
+package com.capable.physiciandss.hapi;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FhirViewsTests {
+
+    private static final FhirContext CTX = FhirContext.forR4();
+    private final Date now = new Date();
+
+    @Test
+    void observationViewKeepsRequestedElements() {
+        Observation observation = new Observation();
+        observation.setId("Observation/1");
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+        observation.getCode().addCoding(new Coding("http://snomed.info/sct", "symptom", null));
+        observation.setSubject(new Reference("Patient/1"));
+        observation.setEffective(new DateTimeType(now));
+        observation.setValue(new Quantity(3).setUnit("mg"));
+        observation.addNote().setText("Not needed by the flow");
+
+        Observation subsetted = subset(observation, "Observation", FhirViews.OBSERVATION_ELEMENTS);
+        ObservationView view = FhirViews.toObservationView(subsetted);
+
+        assertFalse(subsetted.hasNote());
+        assertEquals("Observation/1", view.getId());
+        assertEquals("Patient/1", view.getSubject());
+        assertEquals("final", view.getStatus());
+        assertEquals("symptom", view.getCodings().get(0).getCode());
+        assertEquals(now.getTime() / 1000, view.getEffective().getTime() / 1000);
+        assertEquals(new BigDecimal(3), view.getValue());
+        assertEquals("mg", view.getUnit());
+    }
+
+    @Test
+    void medicationRequestViewKeepsDosageBounds() {
+        MedicationRequest medicationRequest = new MedicationRequest();
+        medicationRequest.setId("MedicationRequest/1");
+        medicationRequest.setStatus(MedicationRequest.MedicationRequestStatus.ACTIVE);
+        medicationRequest.setMedication(new CodeableConcept().addCoding(new Coding("http://snomed.info/sct", "drug", null)));
+        medicationRequest.setSubject(new Reference("Patient/1"));
+        medicationRequest.setAuthoredOn(now);
+        medicationRequest.addDosageInstruction().setText("Without bounds");
+        medicationRequest.addDosageInstruction().getTiming().getRepeat().setBounds(new Period().setStart(now).setEnd(now));
+        medicationRequest.addNote().setText("Not needed by the flow");
+
+        MedicationRequest subsetted = subset(medicationRequest, "MedicationRequest", FhirViews.MEDICATION_REQUEST_ELEMENTS);
+        MedicationRequestView view = FhirViews.toMedicationRequestView(subsetted);
+
+        assertFalse(subsetted.hasNote());
+        assertEquals("active", view.getStatus());
+        assertEquals("drug", view.getCodings().get(0).getCode());
+        assertNotNull(view.getAuthoredOn());
+        assertEquals(1, view.getDosageBounds().size());
+    }
+
+    /**
+     * Encodes the resource the way HAPI FHIR answers a search with _elements.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends IBaseResource> T subset(T resource, String type, String[] elements) {
+        IParser parser = CTX.newJsonParser();
+        parser.setEncodeElements(new HashSet<>(Arrays.stream(elements)
+                .map(element -> type + "." + element)
+                .collect(Collectors.toList())));
+        return (T) CTX.newJsonParser().parseResource(resource.getClass(), parser.encodeResourceToString(resource));
+    }
+}
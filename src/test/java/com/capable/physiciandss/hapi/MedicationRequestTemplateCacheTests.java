@@ -0,0 +1,39 @@
+package com.capable.physiciandss.hapi;
+
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MedicationRequestTemplateCacheTests {
+
+    private static final String TEMPLATE = "{\"resourceType\":\"MedicationRequest\",\"status\":\"draft\","
+            + "\"medicationCodeableConcept\":{\"coding\":[{\"system\":\"http://snomed.info/sct\",\"code\":\"drug\"}]}}";
+    private final MedicationRequestTemplateCache cache =
+            new MedicationRequestTemplateCache(new Connection("http://localhost:9000/baseR4/"), 2);
+
+    @Test
+    void parsesEachTemplateOnceAndHandsOutCopies() {
+        MedicationRequest first = cache.get(TEMPLATE);
+        first.setStatus(MedicationRequest.MedicationRequestStatus.ACTIVE);
+        first.getMedicationCodeableConcept().getCodingFirstRep().setCode("changed");
+
+        MedicationRequest second = cache.get(TEMPLATE);
+
+        assertNotSame(first, second);
+        assertEquals(MedicationRequest.MedicationRequestStatus.DRAFT, second.getStatus());
+        assertEquals("drug", second.getMedicationCodeableConcept().getCodingFirstRep().getCode());
+        assertEquals(1, cache.getStats().missCount());
+        assertEquals(1, cache.getStats().hitCount());
+    }
+
+    @Test
+    void keysTemplatesByContent() {
+        MedicationRequest drug = cache.get(TEMPLATE);
+        MedicationRequest otherDrug = cache.get(TEMPLATE.replace("\"drug\"", "\"other-drug\""));
+
+        assertEquals("drug", drug.getMedicationCodeableConcept().getCodingFirstRep().getCode());
+        assertEquals("other-drug", otherDrug.getMedicationCodeableConcept().getCodingFirstRep().getCode());
+        assertEquals(2, cache.getStats().missCount());
+    }
+}
@@ -0,0 +1,88 @@
+package com.capable.physiciandss.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 50, 10, 4, 1000, 1, now::get);
+
+    @Test
+    void opensWhenFailureRateReachesThresholdAfterMinimumCalls() {
+        succeed(1);
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void forgetsCallsWhichLeftTheWindow() {
+        fail(2);
+        succeed(8);
+        fail(2);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        fail(3);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void letsOneProbeThroughAfterOpenDuration() {
+        fail(4);
+        now.addAndGet(1000);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void failedProbeOpensAgain() {
+        fail(4);
+        now.addAndGet(1000);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void cancelledProbeIsReleased() {
+        fail(4);
+        now.addAndGet(1000);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.release();
+
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess();
+        }
+    }
+}
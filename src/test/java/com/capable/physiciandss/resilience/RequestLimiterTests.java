@@ -0,0 +1,109 @@
+package com.capable.physiciandss.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLimiterTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void queuesRequestsAboveConcurrencyLimitUntilPermitIsReleased() {
+        RequestLimiter limiter = new RequestLimiter("test", definition(2, 10), registry);
+        RequestLimiter.Permit first = limiter.acquire().block();
+        limiter.acquire().block();
+        AtomicReference<RequestLimiter.Permit> third = new AtomicReference<>();
+
+        Disposable waiting = limiter.acquire().subscribe(third::set);
+        assertNull(third.get());
+        assertEquals(1, limiter.getQueued());
+
+        first.release(false, true);
+        assertNotNull(third.get());
+        assertEquals(0, limiter.getQueued());
+        assertEquals(2, limiter.getInFlight());
+        waiting.dispose();
+    }
+
+    @Test
+    void rejectsRequestsWhenQueueIsFull() {
+        RequestLimiter limiter = new RequestLimiter("test", definition(1, 1), registry);
+        limiter.acquire().block();
+        Disposable waiting = limiter.acquire().subscribe();
+
+        assertThrows(DownstreamUnavailableException.class, () -> limiter.acquire().block());
+        assertEquals(1, registry.get("phdss.limiter.rejected").counter().count());
+        waiting.dispose();
+    }
+
+    @Test
+    void cancelledRequestLeavesQueue() {
+        RequestLimiter limiter = new RequestLimiter("test", definition(1, 10), registry);
+        RequestLimiter.Permit first = limiter.acquire().block();
+        limiter.acquire().subscribe().dispose();
+
+        first.release(false, true);
+
+        assertEquals(0, limiter.getQueued());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void waitsForTokens() {
+        ResilienceProperties.LimiterDefinition definition = definition(10, 10);
+        definition.setRatePerSecond(20);
+        definition.setBurst(1);
+        RequestLimiter limiter = new RequestLimiter("test", definition, registry);
+        limiter.acquire().block();
+
+        long start = System.nanoTime();
+        limiter.acquire().block(Duration.ofSeconds(1));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    void limitShrinksOnOverloadAndGrowsWhileUsed() {
+        AimdLimit limit = new AimdLimit(10, 1, 20, 0.5, 2.0);
+        long now = 0;
+        limit.onSample(1000, true, 10, now);
+        assertEquals(5, limit.getLimit());
+
+        limit.onSample(1000, true, 5, now + 10);
+        assertEquals(5, limit.getLimit(), "decreases at most once per round trip");
+
+        for (int i = 0; i < 30; i++) {
+            limit.onSample(1000, false, 5, now + 10000 + i);
+        }
+        assertTrue(limit.getLimit() > 5);
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRises() {
+        AimdLimit limit = new AimdLimit(10, 1, 20, 0.5, 2.0);
+        limit.onSample(1000, false, 0, 0);
+        for (int i = 1; i <= 20 && limit.getLimit() == 10; i++) {
+            limit.onSample(100000, false, 0, i * 1000000L);
+        }
+
+        assertEquals(5, limit.getLimit());
+    }
+
+    private static ResilienceProperties.LimiterDefinition definition(int concurrency, int queueSize) {
+        ResilienceProperties.LimiterDefinition definition = new ResilienceProperties.LimiterDefinition();
+        definition.setRatePerSecond(0);
+        definition.setInitialLimit(concurrency);
+        definition.setMinLimit(concurrency);
+        definition.setMaxLimit(concurrency);
+        definition.setQueueSize(queueSize);
+        return definition;
+    }
+}
@@ -0,0 +1,77 @@
+package com.capable.physiciandss.resilience;
+
+import com.capable.physiciandss.services.DownstreamRequestException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResiliencePoliciesTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExchangeFilterFunction filter = new ResiliencePolicies(new ResilienceProperties(), registry)
+            .deonticsFilter();
+
+    @Test
+    void limitsOnlyDeonticsRequests() {
+        Disposable gocom = send("http://deontics/gocom/api/messages");
+        assertEquals(0, inFlight());
+
+        Disposable dre = send("http://deontics/dreapi/v1/Data");
+        assertEquals(1, inFlight());
+
+        gocom.dispose();
+        dre.dispose();
+    }
+
+    @Test
+    void goComOverloadDoesNotShrinkDeonticsLimit() {
+        double initialLimit = registry.get("phdss.limiter.limit").gauge().value();
+
+        ClientRequest request = ClientRequest.create(HttpMethod.POST, URI.create("http://deontics/gocom/api/messages"))
+                .build();
+        assertThrows(DownstreamRequestException.class, () -> filter
+                .filter(request, sent -> Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).build()))
+                .block());
+
+        assertEquals(initialLimit, registry.get("phdss.limiter.limit").gauge().value());
+    }
+
+    @Test
+    void doesNotRetryConditionalUpdates() {
+        ExchangeFilterFunction hapiFilter = new ResiliencePolicies(new ResilienceProperties(), new SimpleMeterRegistry())
+                .hapiFilter();
+        AtomicInteger attempts = new AtomicInteger();
+        ClientRequest conditional = ClientRequest.create(HttpMethod.PUT, URI.create("http://hapi/baseR4/Communication/1"))
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .build();
+
+        assertThrows(DownstreamRequestException.class, () -> hapiFilter.filter(conditional, sent -> {
+            attempts.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        }).block());
+
+        assertEquals(1, attempts.get());
+    }
+
+    private Disposable send(String url) {
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create(url)).build();
+        return filter.filter(request, sent -> Mono.never()).subscribe();
+    }
+
+    private double inFlight() {
+        return registry.get("phdss.limiter.in-flight").gauge().value();
+    }
+}
@@ -0,0 +1,84 @@
+package com.capable.physiciandss.resilience;
+
+import com.capable.physiciandss.services.DownstreamRequestException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResiliencePolicyTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ResiliencePolicy policy = new ResiliencePolicy("test", definition(), registry);
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    void retriesTransientFailuresOfIdempotentCalls() {
+        Mono<String> call = Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new DownstreamRequestException("getPlanTasks", HttpStatus.SERVICE_UNAVAILABLE))
+                : Mono.just("tasks"));
+
+        assertEquals("tasks", policy.apply(call, true).block());
+        assertEquals(3, attempts.get());
+        assertEquals(2, registry.get("phdss.resilience.retries").counter().count());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new DownstreamRequestException("getPlanTasks", HttpStatus.NOT_FOUND));
+        });
+
+        assertThrows(DownstreamRequestException.class, () -> policy.apply(call, true).block());
+        assertEquals(1, attempts.get());
+        assertEquals(CircuitBreaker.State.CLOSED, policy.getCircuitBreaker().getState());
+    }
+
+    @Test
+    void retriesNonIdempotentCallsOnlyWhenConnectionWasRefused() {
+        Mono<String> unavailable = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new DownstreamRequestException("postEnact", HttpStatus.BAD_GATEWAY));
+        });
+        assertThrows(DownstreamRequestException.class, () -> policy.apply(unavailable, false).block());
+        assertEquals(1, attempts.get());
+
+        Mono<String> refused = Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new IllegalStateException(new ConnectException("Connection refused")))
+                : Mono.just("enacted"));
+        assertEquals("enacted", policy.apply(refused, false).block());
+    }
+
+    @Test
+    void stopsRetryingAndRejectsCallsOnceBreakerOpens() {
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new DownstreamRequestException("getData", HttpStatus.INTERNAL_SERVER_ERROR));
+        });
+        assertThrows(DownstreamRequestException.class, () -> policy.apply(call, true).block());
+        assertEquals(3, attempts.get());
+
+        assertThrows(DownstreamUnavailableException.class, () -> policy.apply(call, true).block());
+        assertEquals(4, attempts.get());
+        assertThrows(DownstreamUnavailableException.class, () -> policy.apply(call, true).block());
+        assertEquals(4, attempts.get());
+        assertEquals(2, registry.get("phdss.resilience.rejected").counter().count());
+    }
+
+    private static ResilienceProperties.PolicyDefinition definition() {
+        ResilienceProperties.PolicyDefinition definition = new ResilienceProperties.PolicyDefinition();
+        definition.setInitialBackoffMs(1);
+        definition.setMaxBackoffMs(2);
+        definition.setSlidingWindowSize(4);
+        definition.setMinimumCalls(4);
+        definition.setOpenDurationMs(60000);
+        return definition;
+    }
+}
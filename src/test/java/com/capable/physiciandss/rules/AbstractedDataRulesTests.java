@@ -0,0 +1,162 @@
+package com.capable.physiciandss.rules;
+
+import com.capable.physiciandss.flow.PatientSnapshot;
+import com.capable.physiciandss.hapi.FhirViews;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import org.hl7.fhir.r4.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AbstractedDataRulesTests {
+
+    private static final String SNOMED = "http://snomed.info/sct";
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private final Date now = new Date();
+
+    private final AbstractedDataRules rules = new AbstractedDataRules(properties(
+            rule("persistent", "Observation", Aggregation.CONSECUTIVE_DAYS, 3, 1, "symptom"),
+            rule("recent", "Observation", Aggregation.EXISTS, 1, 1, "symptom", "strong-symptom"),
+            rule("frequent", "Observation", Aggregation.COUNT_PER_DAY, 2, 2, "symptom"),
+            rule("therapy", "MedicationRequest", Aggregation.ACTIVE_DOSAGE, 0, 1, "drug")));
+
+    @Test
+    void evaluatesAllRequestedRulesInOnePass() {
+        PatientSnapshot snapshot = new PatientSnapshot(Arrays.asList(
+                observation("symptom", 2), observation("symptom", 3),
+                observation("symptom", 30), observation("symptom", 60)),
+                Collections.singletonList(medicationRequest("drug", -48, 48)));
+
+        PatientDayBuckets dayBuckets = new PatientDayBuckets();
+        dayBuckets.record(SNOMED, "symptom", today());
+        dayBuckets.record(SNOMED, "symptom", today().minusDays(1));
+        dayBuckets.record(SNOMED, "symptom", today().minusDays(2));
+
+        Map<String, String> values = rules.evaluate(snapshot, dayBuckets, Arrays.asList(
+                concept("persistent"), concept("recent"), concept("frequent"), concept("therapy")), now);
+
+        assertEquals("1", values.get(concept("persistent")));
+        assertEquals("1", values.get(concept("recent")));
+        assertEquals("1", values.get(concept("frequent")));
+        assertEquals("1", values.get(concept("therapy")));
+    }
+
+    @Test
+    void missingDayOrExpiredDosageGivesZero() {
+        PatientSnapshot snapshot = new PatientSnapshot(Arrays.asList(
+                observation("strong-symptom", 30), observation("symptom", 2), observation("symptom", 60)),
+                Collections.singletonList(medicationRequest("drug", -96, -48)));
+
+        PatientDayBuckets dayBuckets = new PatientDayBuckets();
+        dayBuckets.record(SNOMED, "symptom", today());
+        dayBuckets.record(SNOMED, "symptom", today().minusDays(2));
+
+        Map<String, String> values = rules.evaluate(snapshot, dayBuckets, Arrays.asList(
+                concept("persistent"), concept("recent"), concept("frequent"), concept("therapy"), concept("unknown")), now);
+
+        assertEquals("0", values.get(concept("persistent")));
+        assertEquals("1", values.get(concept("recent")));
+        assertEquals("0", values.get(concept("frequent")));
+        assertEquals("0", values.get(concept("therapy")));
+        assertFalse(values.containsKey(concept("unknown")));
+    }
+
+    @Test
+    void requestsOnlyCodingsOfTheRule() {
+        PatientSnapshot.Request request = new PatientSnapshot.Request();
+        rules.addRequirements(SNOMED, "recent", request);
+        rules.addRequirements(SNOMED, "therapy", request);
+        rules.addRequirements(SNOMED, "persistent", request);
+
+        assertEquals(2, request.getObservationCodings().size());
+        assertEquals(1, request.getMedicationRequestCodings().size());
+        assertEquals(1, rules.getDayBucketCodings().size());
+        assertTrue(rules.needsDayBuckets(Collections.singletonList(concept("persistent"))));
+    }
+
+    @Test
+    void requestsWidestObservationWindow() {
+        PatientSnapshot.Request request = new PatientSnapshot.Request();
+        rules.addRequirements(SNOMED, "recent", request);
+        rules.addRequirements(SNOMED, "frequent", request);
+        rules.addRequirements(SNOMED, "therapy", request);
+        assertEquals(2, request.getObservationWindowDays());
+
+        AbstractedDataRules unbounded = new AbstractedDataRules(properties(
+                rule("recent", "Observation", Aggregation.EXISTS, 1, 1, "symptom"),
+                rule("ever", "Observation", Aggregation.EXISTS, 0, 1, "symptom")));
+        unbounded.addRequirements(SNOMED, "ever", request);
+        unbounded.addRequirements(SNOMED, "recent", request);
+        assertEquals(0, request.getObservationWindowDays());
+    }
+
+    @Test
+    void dayBucketsFollowCalendarDays() {
+        PatientDayBuckets dayBuckets = new PatientDayBuckets();
+        List<Coding> symptom = Collections.singletonList(new Coding(SNOMED, "symptom", null));
+        dayBuckets.record(SNOMED, "symptom", today().minusDays(2));
+        dayBuckets.record(SNOMED, "symptom", today().minusDays(1));
+        assertTrue(dayBuckets.hasEachOfLastDays(symptom, 2, today().minusDays(1)));
+        assertFalse(dayBuckets.hasEachOfLastDays(symptom, 2, today()));
+
+        PatientDayBuckets history = new PatientDayBuckets();
+        history.record(SNOMED, "symptom", today());
+        history.record(SNOMED, "symptom", today().minusDays(100));
+        dayBuckets.merge(history);
+        assertTrue(dayBuckets.hasEachOfLastDays(symptom, 3, today()));
+        assertFalse(dayBuckets.hasEachOfLastDays(symptom, 4, today()));
+    }
+
+    private LocalDate today() {
+        return now.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private ObservationView observation(String code, int hoursAgo) {
+        Observation observation = new Observation();
+        observation.getCode().addCoding(new Coding(SNOMED, code, null));
+        observation.setEffective(new DateTimeType(new Date(now.getTime() - hoursAgo * HOUR_MS)));
+        return FhirViews.toObservationView(observation);
+    }
+
+    private MedicationRequestView medicationRequest(String code, int startHours, int endHours) {
+        MedicationRequest medicationRequest = new MedicationRequest();
+        medicationRequest.setMedication(new CodeableConcept().addCoding(new Coding(SNOMED, code, null)));
+        medicationRequest.addDosageInstruction().getTiming().getRepeat().setBounds(new Period()
+                .setStart(new Date(now.getTime() + startHours * HOUR_MS))
+                .setEnd(new Date(now.getTime() + endHours * HOUR_MS)));
+        return FhirViews.toMedicationRequestView(medicationRequest);
+    }
+
+    private static String concept(String code) {
+        return AbstractedDataRules.key(SNOMED, code);
+    }
+
+    private static AbstractedDataRuleProperties.RuleDefinition rule(String concept, String resourceType,
+                                                                   Aggregation aggregation, int windowDays,
+                                                                   int threshold, String... codes) {
+        AbstractedDataRuleProperties.RuleDefinition definition = new AbstractedDataRuleProperties.RuleDefinition();
+        definition.setConcept(concept(concept));
+        definition.setResourceType(resourceType);
+        definition.setAggregation(aggregation);
+        definition.setWindowDays(windowDays);
+        definition.setThreshold(threshold);
+        for (String code : codes) {
+            definition.getCodes().add(concept(code));
+        }
+        return definition;
+    }
+
+    private static AbstractedDataRuleProperties properties(AbstractedDataRuleProperties.RuleDefinition... definitions) {
+        AbstractedDataRuleProperties properties = new AbstractedDataRuleProperties();
+        properties.setAbstracted(new ArrayList<>(Arrays.asList(definitions)));
+        return properties;
+    }
+}
@@ -0,0 +1,102 @@
+package com.capable.physiciandss.schedulers;
+
+import com.capable.physiciandss.flow.ProcessFlow;
+import com.capable.physiciandss.services.HapiRequestService;
+import org.hl7.fhir.r4.model.Communication;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TickCoordinatorTests {
+
+    private final ProcessFlow processFlow = mock(ProcessFlow.class);
+    private final HapiRequestService hapiRequestService = mock(HapiRequestService.class);
+    private final WatermarkStore watermarkStore = mock(WatermarkStore.class);
+
+    @Test
+    void keepsBacklogWhenChunkProcessingFails() {
+        when(hapiRequestService.getCommunicationList(any())).thenReturn(communications(5));
+        when(processFlow.processCommunications(anyList()))
+                .thenReturn(Collections.emptyList())
+                .thenThrow(new IllegalStateException("HAPI unavailable"));
+        TickCoordinator coordinator = coordinator("full");
+
+        coordinator.runTick();
+
+        assertEquals(3, coordinator.getBacklogSize());
+    }
+
+    @Test
+    void keepsWatermarkBeforeCommunicationsOfFailedChunk() {
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        when(watermarkStore.load()).thenReturn(Optional.empty());
+        when(hapiRequestService.getCommunicationList(any())).thenReturn(communications(5, start));
+        when(hapiRequestService.getCommunicationListUpdatedAfter(any(), any(), anyInt()))
+                .thenReturn(Collections.emptyList());
+        when(processFlow.processCommunications(anyList()))
+                .thenReturn(Collections.emptyList())
+                .thenThrow(new IllegalStateException("HAPI unavailable"))
+                .thenReturn(Collections.emptyList());
+        TickCoordinator coordinator = coordinator("incremental");
+
+        coordinator.runTick();
+
+        ArgumentCaptor<Instant> saved = ArgumentCaptor.forClass(Instant.class);
+        verify(watermarkStore).save(saved.capture());
+        assertTrue(saved.getValue().isBefore(start.plusSeconds(2)));
+
+        coordinator.runTick();
+
+        verify(watermarkStore, times(2)).save(saved.capture());
+        assertEquals(start.plusSeconds(4), saved.getValue());
+        assertEquals(0, coordinator.getBacklogSize());
+    }
+
+    @Test
+    void resumesFromPersistedWatermark() {
+        Instant persisted = Instant.parse("2026-01-01T00:00:00Z");
+        when(watermarkStore.load()).thenReturn(Optional.of(persisted));
+        when(hapiRequestService.getCommunicationListUpdatedAfter(any(), any(), anyInt()))
+                .thenReturn(communications(2, persisted.plusSeconds(1)));
+        when(processFlow.processCommunications(anyList())).thenReturn(Collections.emptyList());
+        TickCoordinator coordinator = coordinator("incremental");
+
+        coordinator.runTick();
+
+        verify(hapiRequestService, never()).getCommunicationList(any());
+        verify(hapiRequestService).getCommunicationListUpdatedAfter(any(),
+                eq(Date.from(persisted.minusMillis(1000))), eq(200));
+        verify(processFlow).processCommunications(anyList());
+        verify(watermarkStore).save(persisted.plusSeconds(2));
+    }
+
+    private TickCoordinator coordinator(String pollingMode) {
+        return new TickCoordinator(processFlow, hapiRequestService, watermarkStore,
+                1000, 8000, 2, pollingMode, 200, 1000);
+    }
+
+    private static List<Communication> communications(int count) {
+        return communications(count, Instant.EPOCH);
+    }
+
+    private static List<Communication> communications(int count, Instant firstUpdated) {
+        List<Communication> communications = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Communication communication = new Communication();
+            communication.setId("Communication/" + i);
+            communication.getMeta().setLastUpdated(Date.from(firstUpdated.plusSeconds(i)));
+            communications.add(communication);
+        }
+        return communications;
+    }
+}
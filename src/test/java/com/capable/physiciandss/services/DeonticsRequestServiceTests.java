@@ -0,0 +1,44 @@
+package com.capable.physiciandss.services;
+
+import com.capable.physiciandss.tracing.Span;
+import com.capable.physiciandss.tracing.Tracer;
+import com.capable.physiciandss.tracing.ZipkinSpanExporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DeonticsRequestServiceTests {
+
+    private final Tracer tracer = new Tracer(new ZipkinSpanExporter("", 10), 1.0);
+
+    @Test
+    void loadsPathwayCacheMissWithinCallerContext() {
+        AtomicReference<Optional<Span>> requestSpan = new AtomicReference<>();
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.subscriberContext().map(context -> {
+                    requestSpan.set(Tracer.spanOf(context));
+                    return ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("[]")
+                            .build();
+                }))
+                .build();
+        DeonticsRequestService service = new DeonticsRequestService(webClient, 600000, 300000, 100,
+                new DownstreamMetrics(new SimpleMeterRegistry()));
+        Span span = tracer.newTrace("communication");
+
+        tracer.withSpan(span, service.getPathwayByName("pathway")).block();
+
+        assertEquals(Optional.of(span), requestSpan.get());
+    }
+}
@@ -0,0 +1,66 @@
+package com.capable.physiciandss.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DownstreamMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DownstreamMetrics metrics = new DownstreamMetrics(registry);
+
+    @Test
+    void timesEverySubscriptionOfReactiveCall() {
+        Mono<String> call = metrics.time(DownstreamMetrics.DEONTICS, "getData", Mono.just("data"));
+        call.block();
+        call.block();
+
+        assertEquals(2, registry.get("phdss.downstream.requests")
+                .tags("downstream", "deontics", "method", "getData", "outcome", "success")
+                .timer().count());
+        assertNull(registry.find("phdss.downstream.errors").counter());
+    }
+
+    @Test
+    void countsErrorsByResponseStatus() {
+        Mono<String> call = metrics.time(DownstreamMetrics.DEONTICS, "getTask",
+                Mono.error(new DownstreamRequestException("getTask request failed", HttpStatus.NOT_FOUND)));
+        assertThrows(DownstreamRequestException.class, call::block);
+
+        assertEquals(1, registry.get("phdss.downstream.requests")
+                .tags("method", "getTask", "outcome", "error").timer().count());
+        assertEquals(1, registry.get("phdss.downstream.errors")
+                .tags("downstream", "deontics", "method", "getTask", "status", "404").counter().count());
+    }
+
+    @Test
+    void recordsCancelledCalls() {
+        Mono<String> call = metrics.time(DownstreamMetrics.DEONTICS, "putDataValues", Mono.never());
+        call.timeout(Duration.ofMillis(10), Mono.empty()).block();
+
+        assertEquals(1, registry.get("phdss.downstream.requests")
+                .tags("method", "putDataValues", "outcome", "cancelled").timer().count());
+        assertNull(registry.find("phdss.downstream.errors").counter());
+    }
+
+    @Test
+    void recordsBlockingCallsAndRethrows() {
+        assertEquals("Patient/1", metrics.record(DownstreamMetrics.HAPI, "getPatient", () -> "Patient/1"));
+        assertThrows(IllegalStateException.class, () -> metrics.record(DownstreamMetrics.HAPI, "updateTask",
+                (Runnable) () -> {
+                    throw new IllegalStateException("connection refused");
+                }));
+
+        assertEquals(1, registry.get("phdss.downstream.requests")
+                .tags("downstream", "hapi", "method", "getPatient", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("phdss.downstream.errors")
+                .tags("method", "updateTask", "status", "IllegalStateException").counter().count());
+    }
+}
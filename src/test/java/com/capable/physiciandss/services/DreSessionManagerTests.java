@@ -0,0 +1,74 @@
+package com.capable.physiciandss.services;
+
+import com.capable.physiciandss.tracing.Span;
+import com.capable.physiciandss.tracing.Tracer;
+import com.capable.physiciandss.tracing.ZipkinSpanExporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DreSessionManagerTests {
+
+    private final AtomicInteger connects = new AtomicInteger();
+    private final AtomicReference<Optional<Span>> connectSpan = new AtomicReference<>();
+    private final DreSessionManager sessionManager = new DreSessionManager(deonticsRequestService(), 300000, 1000);
+
+    @Test
+    void keepsSessionWhenThrottledOrTimedOut() {
+        sessionManager.getSessionId("enactment").block();
+
+        sessionManager.invalidateOnSessionError("enactment",
+                new DownstreamRequestException("getData request failed", HttpStatus.TOO_MANY_REQUESTS));
+        sessionManager.invalidateOnSessionError("enactment",
+                new DownstreamRequestException("getData request failed", HttpStatus.REQUEST_TIMEOUT));
+        sessionManager.getSessionId("enactment").block();
+
+        assertEquals(1, connects.get());
+    }
+
+    @Test
+    void dropsSessionRejectedByDre() {
+        sessionManager.getSessionId("enactment").block();
+
+        sessionManager.invalidateOnSessionError("enactment",
+                new DownstreamRequestException("putConfirmTask request failed", HttpStatus.UNAUTHORIZED));
+        sessionManager.getSessionId("enactment").block();
+
+        assertEquals(2, connects.get());
+    }
+
+    @Test
+    void opensSessionWithinCallerContext() {
+        Tracer tracer = new Tracer(new ZipkinSpanExporter("", 10), 1.0);
+        Span span = tracer.newTrace("communication");
+
+        tracer.withSpan(span, sessionManager.getSessionId("enactment")).block();
+
+        assertEquals(Optional.of(span), connectSpan.get());
+    }
+
+    private DeonticsRequestService deonticsRequestService() {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.subscriberContext().map(context -> {
+                    connectSpan.set(Tracer.spanOf(context));
+                    return ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"dresessionid\":\"session-" + connects.incrementAndGet() + "\"}")
+                            .build();
+                }))
+                .build();
+        return new DeonticsRequestService(webClient, 600000, 300000, 100,
+                new DownstreamMetrics(new SimpleMeterRegistry()));
+    }
+}
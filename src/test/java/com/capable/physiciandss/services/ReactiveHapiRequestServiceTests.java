@@ -0,0 +1,152 @@
+package com.capable.physiciandss.services;
+
+import com.capable.physiciandss.hapi.Connection;
+import com.capable.physiciandss.model.hapi.EntryOutcome;
+import com.capable.physiciandss.model.hapi.ObservationView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Communication;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveHapiRequestServiceTests {
+
+    private static final String BASE_URL = "http://hapi/baseR4";
+    private final Connection connection = new Connection(BASE_URL);
+    private final List<ClientRequest> requests = new ArrayList<>();
+
+    @Test
+    void searchFollowsNextLinks() {
+        ReactiveHapiRequestService service = service(200, request -> {
+            boolean secondPage = request.url().getQuery().contains("_getpagesoffset=1");
+            Bundle page = new Bundle().setType(Bundle.BundleType.SEARCHSET);
+            page.addEntry().setResource(new Observation().setStatus(Observation.ObservationStatus.FINAL));
+            if (!secondPage) {
+                page.addLink().setRelation(IBaseBundle.LINK_NEXT)
+                        .setUrl(BASE_URL + "?_getpages=search&_getpagesoffset=1");
+            }
+            return fhirResponse(HttpStatus.OK, page);
+        });
+
+        List<ObservationView> views = service.getObservationViews("Patient/1",
+                Collections.singletonList(new Coding("http://snomed.info/sct", "62315008", null)), null).block();
+
+        assertEquals(2, views.size());
+        assertEquals(2, requests.size());
+        assertEquals("/baseR4/Observation", requests.get(0).url().getPath());
+        assertEquals("_getpages=search&_getpagesoffset=1", requests.get(1).url().getQuery());
+    }
+
+    @Test
+    void claimIsRejectedWhenVersionChanged() {
+        ReactiveHapiRequestService service = service(200,
+                request -> Mono.just(ClientResponse.create(HttpStatus.PRECONDITION_FAILED).build()));
+
+        assertFalse(service.updateCommunication(communication("1", 3), Communication.CommunicationStatus.COMPLETED)
+                .block());
+
+        assertEquals(HttpMethod.PUT, requests.get(0).method());
+        assertEquals("W/\"3\"", requests.get(0).headers().getFirst(HttpHeaders.IF_MATCH));
+    }
+
+    @Test
+    void claimFailsOnOtherErrors() {
+        ReactiveHapiRequestService service = service(200,
+                request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()));
+
+        assertThrows(DownstreamRequestException.class, () -> service
+                .updateCommunication(communication("1", 3), Communication.CommunicationStatus.COMPLETED).block());
+    }
+
+    @Test
+    void mapsBatchOutcomesOfEveryChunk() {
+        ReactiveHapiRequestService service = service(2, request -> {
+            if (requests.size() > 1) {
+                return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+            }
+            Bundle response = new Bundle().setType(Bundle.BundleType.BATCHRESPONSE);
+            response.addEntry().getResponse().setStatus("200 OK");
+            response.addEntry().getResponse().setStatus("412 Precondition Failed");
+            return fhirResponse(HttpStatus.OK, response);
+        });
+
+        List<EntryOutcome> outcomes = service.updateCommunications(Arrays.asList(
+                communication("1", 1), communication("2", 1), communication("3", 1)),
+                Communication.CommunicationStatus.COMPLETED).block();
+
+        assertEquals(2, requests.size());
+        assertEquals(3, outcomes.size());
+        assertTrue(outcomes.get(0).isSuccessful());
+        assertEquals("Communication/2", outcomes.get(1).getResourceId());
+        assertEquals("412 Precondition Failed", outcomes.get(1).getStatus());
+        assertFalse(outcomes.get(1).isSuccessful());
+        assertEquals("Communication/3", outcomes.get(2).getResourceId());
+        assertFalse(outcomes.get(2).isSuccessful());
+        assertNotNull(outcomes.get(2).getDiagnostics());
+    }
+
+    @Test
+    void createReturnsIdFromLocationHeader() {
+        ReactiveHapiRequestService service = service(200, request -> Mono.just(ClientResponse.create(HttpStatus.CREATED)
+                .header(HttpHeaders.LOCATION, BASE_URL + "/Communication/5/_history/1")
+                .build()));
+
+        assertEquals("Communication/5", service.createCommunication(
+                Communication.CommunicationStatus.PREPARATION, "Observation/1").block());
+    }
+
+    @Test
+    void createFailsWithoutLocationHeader() {
+        ReactiveHapiRequestService service = service(200,
+                request -> Mono.just(ClientResponse.create(HttpStatus.CREATED).build()));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> service
+                .createCommunication(Communication.CommunicationStatus.PREPARATION, "Observation/1").block());
+        assertEquals("createCommunication response has no Location header", exception.getMessage());
+    }
+
+    private ReactiveHapiRequestService service(int batchSize, Function<ClientRequest, Mono<ClientResponse>> hapi) {
+        ExchangeFunction exchange = request -> {
+            requests.add(request);
+            return hapi.apply(request);
+        };
+        WebClient webClient = WebClient.builder()
+                .baseUrl(BASE_URL)
+                .exchangeFunction(exchange)
+                .build();
+        return new ReactiveHapiRequestService(webClient, connection, batchSize,
+                new DownstreamMetrics(new SimpleMeterRegistry()));
+    }
+
+    private Mono<ClientResponse> fhirResponse(HttpStatus status, Resource resource) {
+        return Mono.just(ClientResponse.create(status)
+                .header(HttpHeaders.CONTENT_TYPE, "application/fhir+json")
+                .body(connection.getCtx().newJsonParser().encodeResourceToString(resource))
+                .build());
+    }
+
+    private static Communication communication(String id, int version) {
+        Communication communication = new Communication();
+        communication.setId("Communication/" + id + "/_history/" + version);
+        return communication;
+    }
+}
@@ -0,0 +1,91 @@
+package com.capable.physiciandss.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracerTests {
+
+    private final ZipkinSpanExporter exporter = new ZipkinSpanExporter("", 10);
+    private final Tracer tracer = new Tracer(exporter, 1.0);
+
+    @Test
+    void tracedMonoIsChildOfSpanInContext() {
+        Span root = tracer.newTrace("communication");
+
+        Span child = tracer.withSpan(root, tracer.trace("patient",
+                Mono.subscriberContext().map(context -> Tracer.spanOf(context).get()))).block();
+
+        assertEquals(root.getTraceId(), child.getTraceId());
+        assertEquals(root.getId(), child.getParentId());
+        assertNotEquals(root.getId(), child.getId());
+        assertNotNull(child.getDuration());
+    }
+
+    @Test
+    void monoWithoutSpanIsNotTraced() {
+        assertFalse(tracer.trace("patient", Mono.subscriberContext().map(Tracer::spanOf)).block().isPresent());
+        assertEquals(0, exporter.getDroppedSpanCount());
+    }
+
+    @Test
+    void scopeSetsAndRestoresMdc() {
+        Span span = tracer.newTrace("communication");
+
+        String traceIdInScope = tracer.inScope(span, () -> MDC.get(Tracer.TRACE_ID));
+
+        assertEquals(span.getTraceId(), traceIdInScope);
+        assertNull(MDC.get(Tracer.TRACE_ID));
+        assertNull(tracer.currentSpan());
+    }
+
+    @Test
+    void failedBlockingRequestFinishesItsClientSpan() {
+        Span root = tracer.newTrace("communication");
+        Context context = tracer.withSpan(root, Mono.subscriberContext()).block();
+        Span request = tracer.newChild(root, "get /Observation");
+
+        assertThrows(IllegalStateException.class, () -> tracer.inScope(context, () -> {
+            tracer.startClientSpan(request);
+            throw new IllegalStateException("Read timed out");
+        }));
+
+        assertNotNull(request.getDuration());
+        assertEquals("Read timed out", request.getTags().get("error"));
+        assertNull(tracer.takeClientSpan());
+    }
+
+    @Test
+    void buildsMonoWithIdsOfSpanInMdc() {
+        Span span = tracer.newTrace("communication");
+
+        String traceIdWhileBuilding = tracer.withSpan(span,
+                Tracer.deferWithMdc(() -> Mono.just(MDC.get(Tracer.TRACE_ID)))).block();
+
+        assertEquals(span.getTraceId(), traceIdWhileBuilding);
+        assertNull(MDC.get(Tracer.TRACE_ID));
+    }
+
+    @Test
+    void serializesSpanInZipkinFormat() {
+        Span span = tracer.newChild(tracer.newTrace("communication"), "get /prsapi/v1/Enactments");
+        span.setKind("CLIENT");
+        span.tag("http.status_code", "200");
+        tracer.finish(span);
+
+        JsonNode json = new ObjectMapper().valueToTree(span);
+
+        assertEquals(16, json.get("traceId").asText().length());
+        assertEquals("phdss", json.get("localEndpoint").get("serviceName").asText());
+        assertEquals("200", json.get("tags").get("http.status_code").asText());
+        assertTrue(json.get("timestamp").asLong() > 0);
+        assertFalse(json.has("sampled"));
+        assertFalse(json.has("remoteEndpoint"));
+        assertEquals(1, exporter.getDroppedSpanCount());
+    }
+}
@@ -0,0 +1,86 @@
+package com.capable.physiciandss.utils;
+
+import com.capable.physiciandss.hapi.FhirViews;
+import com.capable.physiciandss.model.hapi.MedicationRequestView;
+import org.hl7.fhir.r4.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemporalSelectionTests {
+
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private final long now = System.currentTimeMillis();
+
+    @Test
+    void selectsNewestWithoutModifyingTheList() {
+        Observation oldest = observation(now - 3 * DAY_MS);
+        Observation newest = observation(now - DAY_MS);
+        Observation middle = observation(now - 2 * DAY_MS);
+        List<Observation> observations = Arrays.asList(oldest, newest, new Observation(), middle);
+        List<Observation> before = new ArrayList<>(observations);
+
+        assertSame(newest, TemporalSelection.newest(observations, TemporalSelection::effectiveMillis).get());
+        assertSame(newest, Utils.getNewestObservationFromList(observations).get());
+        assertEquals(before, observations);
+    }
+
+    @Test
+    void selectsWindowInInputOrder() {
+        Observation first = observation(now - 3 * DAY_MS);
+        Observation second = observation(now - DAY_MS);
+        Observation third = observation(now - 2 * DAY_MS);
+
+        List<Observation> selected = TemporalSelection.within(Arrays.asList(first, second, third),
+                TemporalSelection::effectiveMillis, now - 2 * DAY_MS, now);
+
+        assertEquals(Arrays.asList(second, third), selected);
+    }
+
+    @Test
+    void newestMedicationRequestMustHaveActiveDosage() {
+        MedicationRequest finished = medicationRequest(now - 10 * DAY_MS, now - 5 * DAY_MS);
+        MedicationRequest active = medicationRequest(now - DAY_MS, now + DAY_MS);
+
+        assertSame(active, Utils.getNewestMedicationRequestFromList(Arrays.asList(finished, active)).get());
+        assertFalse(Utils.getNewestMedicationRequestFromList(Arrays.asList(finished)).isPresent());
+        assertFalse(Utils.getNewestMedicationRequestFromList(new ArrayList<>()).isPresent());
+    }
+
+    @Test
+    void latestDosageIsNotHiddenByNewerFinishedMedicationRequest() {
+        MedicationRequest running = medicationRequest(now - 10 * DAY_MS, now + DAY_MS);
+        running.setAuthoredOn(new Date(now - 10 * DAY_MS));
+        MedicationRequest finished = medicationRequest(now - 3 * DAY_MS, now - DAY_MS);
+        finished.setAuthoredOn(new Date(now - 3 * DAY_MS));
+        List<MedicationRequestView> views = Arrays.asList(
+                FhirViews.toMedicationRequestView(finished), FhirViews.toMedicationRequestView(running));
+
+        Period latest = TemporalSelection.latestDosageBounds(views).get();
+
+        assertEquals(now + DAY_MS, latest.getEnd().getTime());
+        assertTrue(TemporalSelection.isRunning(latest, now));
+        assertFalse(TemporalSelection.isRunning(latest, now + 2 * DAY_MS));
+        assertFalse(TemporalSelection.latestDosageBounds(new ArrayList<>()).isPresent());
+    }
+
+    private static Observation observation(long effectiveMillis) {
+        Observation observation = new Observation();
+        observation.setEffective(new DateTimeType(new Date(effectiveMillis)));
+        return observation;
+    }
+
+    private static MedicationRequest medicationRequest(long startMillis, long endMillis) {
+        MedicationRequest medicationRequest = new MedicationRequest();
+        medicationRequest.addDosageInstruction().getTiming().getRepeat().setBounds(new Period()
+                .setStart(new Date(startMillis))
+                .setEnd(new Date(endMillis)));
+        return medicationRequest;
+    }
+}